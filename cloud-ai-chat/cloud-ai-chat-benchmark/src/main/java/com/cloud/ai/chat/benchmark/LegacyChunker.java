@@ -0,0 +1,160 @@
+package com.cloud.ai.chat.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * @author shengjie.tang
+ * @version 1.0.0
+ * @description: 原 DocumentService.chunkTextBySemantic 及分块编号（chunks.indexOf）的副本，作为基准对照
+ * @date 2025/11/28 10:00
+ */
+final class LegacyChunker {
+
+    private static final Pattern SENTENCE_PATTERN = Pattern.compile("[。！？；]");
+
+    private LegacyChunker() {
+    }
+
+    /**
+     * 分块并按原实现用 indexOf 取块序号
+     *
+     * @return 各块序号之和（避免结果被优化掉）
+     */
+    static long chunkAndNumber(String text, int maxChunkSize, int overlap) {
+        List<String> chunks = chunkTextBySemantic(text, maxChunkSize, overlap);
+        long sum = 0;
+        for (String chunk : chunks) {
+            sum += chunks.indexOf(chunk);
+        }
+        return sum;
+    }
+
+    static List<String> chunkTextBySemantic(String text, int maxChunkSize, int overlap) {
+        if (text == null || text.trim().isEmpty()) {
+            return new ArrayList<>();
+        }
+        text = text.replaceAll("\\s+", " ").trim();
+        String[] paragraphs = text.split("\n\\s*\n");
+
+        List<String> chunks = new ArrayList<>();
+        StringBuilder currentChunk = new StringBuilder();
+        int currentSize = 0;
+        for (String paragraph : paragraphs) {
+            paragraph = paragraph.trim();
+            if (paragraph.isEmpty()) {
+                continue;
+            }
+            if (paragraph.length() > maxChunkSize) {
+                if (!currentChunk.isEmpty()) {
+                    chunks.add(currentChunk.toString());
+                    currentChunk = new StringBuilder();
+                    currentSize = 0;
+                }
+                chunks.addAll(splitLargeParagraph(paragraph, maxChunkSize, overlap));
+                continue;
+            }
+            if (currentSize + paragraph.length() > maxChunkSize && !currentChunk.isEmpty()) {
+                chunks.add(currentChunk.toString());
+                String overlapText = extractOverlapFromChunk(currentChunk.toString(), overlap);
+                currentChunk = new StringBuilder(overlapText).append(paragraph);
+                currentSize = currentChunk.length();
+            } else {
+                if (!currentChunk.isEmpty()) {
+                    currentChunk.append("\n\n");
+                    currentSize += 2;
+                }
+                currentChunk.append(paragraph);
+                currentSize += paragraph.length();
+            }
+        }
+        if (!currentChunk.isEmpty()) {
+            chunks.add(currentChunk.toString());
+        }
+        return chunks;
+    }
+
+    private static List<String> splitLargeParagraph(String paragraph, int maxChunkSize, int overlap) {
+        List<String> chunks = new ArrayList<>();
+        String[] sentences = SENTENCE_PATTERN.split(paragraph);
+
+        StringBuilder currentChunk = new StringBuilder();
+        int currentSize = 0;
+        for (int i = 0; i < sentences.length; i++) {
+            String sentence = sentences[i];
+            if (i < sentences.length - 1) {
+                sentence += paragraph.substring(
+                        paragraph.indexOf(sentence) + sentence.length(),
+                        Math.min(paragraph.indexOf(sentence) + sentence.length() + 1, paragraph.length()));
+            }
+            sentence = sentence.trim();
+            if (sentence.isEmpty()) {
+                continue;
+            }
+            if (sentence.length() > maxChunkSize) {
+                if (currentChunk.length() > 0) {
+                    chunks.add(currentChunk.toString());
+                    currentChunk = new StringBuilder();
+                    currentSize = 0;
+                }
+                chunks.addAll(chunkText(sentence, maxChunkSize, overlap));
+                continue;
+            }
+            if (currentSize + sentence.length() > maxChunkSize && currentChunk.length() > 0) {
+                chunks.add(currentChunk.toString());
+                String overlapText = extractOverlapFromChunk(currentChunk.toString(), overlap);
+                currentChunk = new StringBuilder(overlapText).append(sentence);
+                currentSize = currentChunk.length();
+            } else {
+                if (!currentChunk.isEmpty()) {
+                    currentChunk.append(" ");
+                    currentSize += 1;
+                }
+                currentChunk.append(sentence);
+                currentSize += sentence.length();
+            }
+        }
+        if (!currentChunk.isEmpty()) {
+            chunks.add(currentChunk.toString());
+        }
+        return chunks;
+    }
+
+    private static List<String> chunkText(String text, int chunkSize, int overlap) {
+        List<String> chunks = new ArrayList<>();
+        int start = 0;
+        while (start < text.length()) {
+            int end = Math.min(start + chunkSize, text.length());
+            chunks.add(text.substring(start, end));
+            start = Math.max(end - overlap, end);
+            if (start >= text.length()) {
+                break;
+            }
+        }
+        return chunks;
+    }
+
+    private static String extractOverlapFromChunk(String chunk, int overlapSize) {
+        if (chunk.length() <= overlapSize) {
+            return chunk;
+        }
+        String[] sentences = chunk.split("[。！？；]");
+        StringBuilder overlap = new StringBuilder();
+        for (int i = sentences.length - 1; i >= 0; i--) {
+            if (overlap.length() + sentences[i].length() <= overlapSize) {
+                if (!overlap.isEmpty()) {
+                    overlap.insert(0, sentences[i] + "。");
+                } else {
+                    overlap.append(sentences[i]).append("。");
+                }
+            } else {
+                break;
+            }
+        }
+        if (overlap.isEmpty()) {
+            return chunk.substring(Math.max(0, chunk.length() - overlapSize));
+        }
+        return overlap.toString();
+    }
+}
@@ -0,0 +1,73 @@
+package com.cloud.ai.chat.benchmark;
+
+import com.cloud.ai.chat.document.SemanticChunker;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author shengjie.tang
+ * @version 1.0.0
+ * @description: 文档分块基准：单次遍历的 SemanticChunker 与原 chunkTextBySemantic + indexOf 编号对比
+ * <p>
+ * 原实现按句子 indexOf 回查分隔符、按块 indexOf 取序号，耗时随文档长度平方增长，大文档单次可达数分钟，
+ * 因此按单次执行计时；只看新实现时用 -p megaChars=16 -e legacy
+ * @date 2025/11/28 10:00
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class SemanticChunkerBenchmark {
+
+    private static final int MAX_CHUNK_SIZE = 1000;
+    private static final int OVERLAP = 200;
+
+    /**
+     * 文档长度（百万字符）
+     */
+    @Param({"1", "4"})
+    public int megaChars;
+
+    private String text;
+
+    @Setup
+    public void setup() {
+        text = SyntheticDocument.generate(megaChars * 1_000_000, 42);
+    }
+
+    @Benchmark
+    public List<String> semanticChunker() {
+        return SemanticChunker.split(text, MAX_CHUNK_SIZE, OVERLAP);
+    }
+
+    /**
+     * 流式输出，不保存分块列表（入库时的用法）
+     */
+    @Benchmark
+    public int semanticChunkerStreaming(Blackhole blackhole) {
+        SemanticChunker chunker = new SemanticChunker(MAX_CHUNK_SIZE, OVERLAP, blackhole::consume);
+        chunker.append(text);
+        chunker.finish();
+        return chunker.getChunkCount();
+    }
+
+    @Benchmark
+    public long legacy() {
+        return LegacyChunker.chunkAndNumber(text, MAX_CHUNK_SIZE, OVERLAP);
+    }
+}
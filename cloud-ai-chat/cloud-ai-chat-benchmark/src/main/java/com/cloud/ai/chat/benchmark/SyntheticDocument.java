@@ -0,0 +1,63 @@
+package com.cloud.ai.chat.benchmark;
+
+import java.util.Random;
+
+/**
+ * @author shengjie.tang
+ * @version 1.0.0
+ * @description: 基准测试用的合成文档：中英文句子组成段落，段落以空行分隔，偶有单个换行和连续空格，
+ * 同一种子生成的文档相同
+ * @date 2025/11/28 10:00
+ */
+final class SyntheticDocument {
+
+    private static final String CJK = "的一是在不了有和人这中大为上个国我以要他时来用们生到作地于出就分对成会可主发年动同工也能下过子说产种面而方后多定行学法所民得经十三之进着等部度家电力里如水化高自二理起小物现实加量都两体制机当使点从业本去把性好应开它合还因由其些然前外天政四日那社义事平形相全表间样与关各重新线内数正心反你明看原又么利比或但质气第向道命此变条只没结解问意建月公无系军很情者最立代想已通并提直题党程展五果料象员革位入常文总次品式活设及管特件长求老头基资边流路级少图山统接知较将组见计别她手角期根论运农指几九区强放决西被干做必战先回则任取据处理府研质";
+    private static final String[] WORDS = {"vector", "index", "chunk", "query", "embedding", "document", "model",
+            "search", "token", "latency", "cache", "stream", "parser", "context", "memory", "session"};
+
+    private SyntheticDocument() {
+    }
+
+    /**
+     * @param length 文档字符数
+     * @param seed   随机种子
+     */
+    static String generate(int length, long seed) {
+        Random random = new Random(seed);
+        StringBuilder text = new StringBuilder(length + 200);
+        while (text.length() < length) {
+            int sentences = 3 + random.nextInt(6);
+            for (int i = 0; i < sentences; i++) {
+                if (random.nextInt(4) == 0) {
+                    appendEnglishSentence(text, random);
+                } else {
+                    appendChineseSentence(text, random);
+                }
+                int separator = random.nextInt(10);
+                text.append(separator == 0 ? "\n" : separator == 1 ? "   " : "");
+            }
+            text.append("\n\n");
+        }
+        text.setLength(length);
+        return text.toString();
+    }
+
+    private static void appendChineseSentence(StringBuilder text, Random random) {
+        int length = 10 + random.nextInt(40);
+        for (int i = 0; i < length; i++) {
+            text.append(CJK.charAt(random.nextInt(CJK.length())));
+        }
+        text.append(random.nextInt(5) == 0 ? '！' : '。');
+    }
+
+    private static void appendEnglishSentence(StringBuilder text, Random random) {
+        int words = 5 + random.nextInt(15);
+        for (int i = 0; i < words; i++) {
+            if (i > 0) {
+                text.append(' ');
+            }
+            text.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        text.append(". ");
+    }
+}
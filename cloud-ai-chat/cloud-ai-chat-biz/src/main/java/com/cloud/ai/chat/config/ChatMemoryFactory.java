@@ -2,11 +2,20 @@ package com.cloud.ai.chat.config;
 
 
 import com.alibaba.cloud.ai.memory.redis.RedissonRedisChatMemoryRepository;
+import com.cloud.ai.chat.memory.ChatMemoryProperties;
+import com.cloud.ai.chat.memory.ChatMemorySummarizer;
+import com.cloud.ai.chat.memory.NearCachedChatMemoryRepository;
+import com.cloud.ai.chat.memory.TokenBudgetChatMemory;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
-import org.springframework.ai.chat.memory.MessageWindowChatMemory;
+import org.redisson.api.RedissonClient;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.data.redis.RedisProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+import java.time.Duration;
 
 /**
  * @author shengjie.tang
@@ -18,8 +27,17 @@ import org.springframework.context.annotation.Configuration;
 @RequiredArgsConstructor
 public class ChatMemoryFactory {
 
-    private static final int MAX_MEMORY_MESSAGES = 20;
     private final RedisProperties redisProperties;
+    private final RedissonClient redissonClient;
+    private final MeterRegistry meterRegistry;
+    private final ChatMemoryProperties chatMemoryProperties;
+    private final ChatMemorySummarizer chatMemorySummarizer;
+
+    @Value("${ai.chat.memory.near-cache.maximum-size:2000}")
+    private long nearCacheMaximumSize;
+
+    @Value("${ai.chat.memory.near-cache.expire-after-access-minutes:10}")
+    private long nearCacheExpireMinutes;
 
     @Bean
     public RedissonRedisChatMemoryRepository redisChatMemoryRepository() {
@@ -30,12 +48,33 @@ public class ChatMemoryFactory {
                 .build();
     }
 
+    /**
+     * Redis记忆仓库 + 本地近缓存
+     */
     @Bean
-    public MessageWindowChatMemory chatMemory(RedissonRedisChatMemoryRepository redisChatMemoryRepository) {
-        return MessageWindowChatMemory.builder()
-                .chatMemoryRepository(redisChatMemoryRepository)
-                .maxMessages(MAX_MEMORY_MESSAGES)
-                .build();
+    @Primary
+    public NearCachedChatMemoryRepository chatMemoryRepository() {
+        return new NearCachedChatMemoryRepository(redisChatMemoryRepository(), redissonClient, meterRegistry,
+                nearCacheMaximumSize, Duration.ofMinutes(nearCacheExpireMinutes),
+                Duration.ofDays(chatMemoryProperties.getExpireDays()));
+    }
+
+    /**
+     * 默认token预算的对话记忆
+     */
+    @Bean
+    public TokenBudgetChatMemory chatMemory() {
+        return modelChatMemory(null);
+    }
+
+    /**
+     * 按模型token预算创建对话记忆（各模型共享同一份记忆存储与摘要）
+     *
+     * @param modelName 模型名称，为null时使用默认预算
+     */
+    public TokenBudgetChatMemory modelChatMemory(String modelName) {
+        return new TokenBudgetChatMemory(chatMemoryRepository(), chatMemorySummarizer,
+                chatMemoryProperties.tokenBudget(modelName), chatMemoryProperties.getMaxMessages());
     }
 
 }
@@ -0,0 +1,216 @@
+package com.cloud.ai.chat.config;
+
+import com.alibaba.ttl.TtlRunnable;
+import com.cloud.ai.chat.document.DocumentIngestProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.boot.task.ThreadPoolTaskExecutorBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.scheduling.annotation.AsyncAnnotationBeanPostProcessor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * @author shengjie.tang
+ * @version 1.0.0
+ * @description: 线程池配置
+ * <p>
+ * 注意：一旦自定义了Executor类型的Bean，Spring Boot将不再自动装配applicationTaskExecutor，
+ * 因此这里显式声明默认线程池，保证@Async与MVC异步请求仍然使用有界线程池
+ * @date 2025/11/20 10:00
+ */
+@Slf4j
+@Configuration
+public class ThreadPoolConfig {
+
+    /**
+     * 默认线程池（@Async、MVC异步请求）
+     * 参数沿用 spring.task.execution.* 配置，并通过TTL透传用户上下文
+     */
+    @Lazy
+    @Bean(name = {TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME,
+            AsyncAnnotationBeanPostProcessor.DEFAULT_TASK_EXECUTOR_BEAN_NAME})
+    public ThreadPoolTaskExecutor applicationTaskExecutor(ThreadPoolTaskExecutorBuilder builder) {
+        return builder.taskDecorator(TtlRunnable::get).build();
+    }
+
+    /**
+     * 对话预处理线程池
+     * 会话检查、OCR增强、向量检索在流式输出前并发执行
+     */
+    @Bean("chatPrepareExecutor")
+    public ThreadPoolTaskExecutor chatPrepareExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+
+        // 核心线程数
+        executor.setCorePoolSize(16);
+
+        // 最大线程数
+        executor.setMaxPoolSize(64);
+
+        // 队列容量
+        executor.setQueueCapacity(200);
+
+        // 线程名前缀
+        executor.setThreadNamePrefix("chat-prepare-");
+
+        // 拒绝策略：调用者运行（线程池打满时退化为串行执行）
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+
+        // 线程空闲时间
+        executor.setKeepAliveSeconds(60);
+
+        // 透传用户上下文
+        executor.setTaskDecorator(TtlRunnable::get);
+
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(10);
+
+        executor.initialize();
+
+        log.info("对话预处理线程池初始化完成 - 核心线程数: {}, 最大线程数: {}",
+                executor.getCorePoolSize(), executor.getMaxPoolSize());
+
+        return executor;
+    }
+
+    /**
+     * 对话后处理worker线程池
+     * 每个线程运行一个队列消费循环，线程数即worker数
+     */
+    @Bean("chatPostProcessExecutor")
+    public ThreadPoolTaskExecutor chatPostProcessExecutor(@Value("${ai.chat.post-process.workers:4}") int workers) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(workers);
+        executor.setMaxPoolSize(workers);
+        executor.setQueueCapacity(0);
+        executor.setThreadNamePrefix("chat-post-process-");
+        // 等待worker处理完当前任务后再关闭
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        executor.initialize();
+
+        log.info("对话后处理线程池初始化完成 - worker数: {}", workers);
+
+        return executor;
+    }
+
+    /**
+     * 对话记忆摘要线程池
+     * 队列满时拒绝（不回退到调用方线程，避免在请求链路上调用模型），被拒绝的摘要任务记录日志后丢弃
+     */
+    @Bean("chatSummaryExecutor")
+    public ThreadPoolTaskExecutor chatSummaryExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(2);
+        executor.setMaxPoolSize(4);
+        executor.setQueueCapacity(500);
+        executor.setThreadNamePrefix("chat-summary-");
+        executor.setKeepAliveSeconds(60);
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(10);
+        executor.initialize();
+
+        log.info("对话记忆摘要线程池初始化完成 - 核心线程数: {}, 最大线程数: {}",
+                executor.getCorePoolSize(), executor.getMaxPoolSize());
+
+        return executor;
+    }
+
+    /**
+     * 文档解析线程池（大PDF按页并行解析）
+     * 队列满时由提交解析的线程自己执行，并行度不超过线程数
+     */
+    @Bean("documentParseExecutor")
+    public ThreadPoolTaskExecutor documentParseExecutor(DocumentIngestProperties documentIngestProperties) {
+        int threads = documentIngestProperties.getPdfParallel().getThreads();
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(threads * 4);
+        executor.setThreadNamePrefix("document-parse-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        executor.initialize();
+
+        log.info("文档解析线程池初始化完成 - 线程数: {}", threads);
+
+        return executor;
+    }
+
+    /**
+     * 检索线程池
+     * 混合检索的全文检索与向量检索并行执行；调用方本身运行在预处理线程池中，单独建池避免互相等待
+     */
+    @Bean("chatRetrievalExecutor")
+    public ThreadPoolTaskExecutor chatRetrievalExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(8);
+        executor.setMaxPoolSize(32);
+        executor.setQueueCapacity(100);
+        executor.setThreadNamePrefix("chat-retrieval-");
+        // 线程池打满时在调用线程执行，退化为两路串行
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setKeepAliveSeconds(60);
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(10);
+        executor.initialize();
+
+        log.info("检索线程池初始化完成 - 核心线程数: {}, 最大线程数: {}",
+                executor.getCorePoolSize(), executor.getMaxPoolSize());
+
+        return executor;
+    }
+
+    /**
+     * 文档入库任务线程池
+     * 每个线程执行一个入库任务（落盘文件的解析与分块），队列满时拒绝提交
+     */
+    @Bean("documentIngestExecutor")
+    public ThreadPoolTaskExecutor documentIngestExecutor(DocumentIngestProperties documentIngestProperties) {
+        int workers = documentIngestProperties.getJobWorkers();
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(workers);
+        executor.setMaxPoolSize(workers);
+        executor.setQueueCapacity(documentIngestProperties.getJobQueueCapacity());
+        executor.setThreadNamePrefix("document-ingest-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        executor.initialize();
+
+        log.info("文档入库任务线程池初始化完成 - worker数: {}, 队列容量: {}",
+                workers, documentIngestProperties.getJobQueueCapacity());
+
+        return executor;
+    }
+
+    /**
+     * 文档分块写入向量库线程池（生成向量）
+     * 线程数即全局写入并发数；每个任务在写入的批次数有上限，队列容量按 任务数 * 批次数 预留
+     */
+    @Bean("documentStoreExecutor")
+    public ThreadPoolTaskExecutor documentStoreExecutor(DocumentIngestProperties documentIngestProperties) {
+        int parallelism = documentIngestProperties.getStoreParallelism();
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(parallelism);
+        executor.setMaxPoolSize(parallelism);
+        executor.setQueueCapacity(Math.max(1, (documentIngestProperties.getJobWorkers() + 1)
+                * documentIngestProperties.getStoreInFlightBatches()));
+        executor.setThreadNamePrefix("document-store-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        executor.initialize();
+
+        log.info("文档写入线程池初始化完成 - 并发数: {}", parallelism);
+
+        return executor;
+    }
+}
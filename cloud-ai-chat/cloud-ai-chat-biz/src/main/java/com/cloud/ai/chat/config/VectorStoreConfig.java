@@ -1,6 +1,7 @@
 package com.cloud.ai.chat.config;
 
 
+import com.cloud.ai.chat.retrieval.VectorStoreProperties;
 import lombok.RequiredArgsConstructor;
 import org.springframework.ai.embedding.EmbeddingModel;
 import org.springframework.ai.vectorstore.pgvector.PgVectorStore;
@@ -23,8 +24,22 @@ public class VectorStoreConfig {
 
     private final EmbeddingModel model;
 
+    private final VectorStoreProperties properties;
+
+    /**
+     * 向量索引由 {@link com.cloud.ai.chat.retrieval.VectorIndexInitializer} 按构建参数创建，这里不让PgVectorStore建索引
+     */
     @Bean
     public PgVectorStore vectorStore() {
-        return PgVectorStore.builder(jdbcTemplate, model).build();
+        PgVectorStore.PgVectorStoreBuilder builder = PgVectorStore.builder(jdbcTemplate, model)
+                .schemaName(properties.getSchemaName())
+                .vectorTableName(properties.getTableName())
+                .distanceType(properties.getDistanceType())
+                .indexType(PgVectorStore.PgIndexType.NONE)
+                .initializeSchema(properties.isInitializeSchema());
+        if (properties.getDimensions() > 0) {
+            builder.dimensions(properties.getDimensions());
+        }
+        return builder.build();
     }
 }
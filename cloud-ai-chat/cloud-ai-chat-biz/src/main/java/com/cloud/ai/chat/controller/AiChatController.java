@@ -1,6 +1,7 @@
 package com.cloud.ai.chat.controller;
 
 
+import com.cloud.ai.chat.retrieval.VectorSearchOptions;
 import com.cloud.ai.chat.service.impl.AIChatService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -55,7 +56,11 @@ public class AiChatController {
             @RequestParam(value = "isWithEnableSearch", defaultValue = "false") Boolean isWithEnableSearch,
             @RequestParam(value = "isDeepThinking", defaultValue = "false") Boolean isDeepThinking,
             @RequestParam(value = "longitude", required = false) String longitude,
-            @RequestParam(value = "latitude", required = false) String latitude) {
-        return aiChatService.ragStreamChat(query, sessionId, dialogueId, imageUrlList, isWithEnableSearch, isDeepThinking, longitude, latitude);
+            @RequestParam(value = "latitude", required = false) String latitude,
+            @RequestParam(value = "topK", required = false) Integer topK,
+            @RequestParam(value = "similarityThreshold", required = false) Double similarityThreshold,
+            @RequestParam(value = "searchEffort", required = false) Integer searchEffort) {
+        return aiChatService.ragStreamChat(query, sessionId, dialogueId, imageUrlList, isWithEnableSearch, isDeepThinking, longitude, latitude,
+                new VectorSearchOptions(topK, similarityThreshold, searchEffort));
     }
 }
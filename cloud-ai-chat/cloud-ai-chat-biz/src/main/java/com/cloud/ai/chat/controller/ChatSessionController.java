@@ -1,16 +1,16 @@
 package com.cloud.ai.chat.controller;
 
 
-import com.cloud.ai.chat.domain.ChatSession;
-import com.cloud.ai.chat.repository.ChatSessionRepository;
+import com.cloud.ai.chat.domain.ChatSessionPage;
+import com.cloud.ai.chat.service.impl.ChatSessionService;
 import com.cloud.common.security.SecurityUtils;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
-import java.util.List;
-
 /**
  * @author shengjie.tang
  * @version 1.0.0
@@ -22,11 +22,19 @@ import java.util.List;
 @RequiredArgsConstructor
 public class ChatSessionController {
 
-    private final ChatSessionRepository chatSessionRepository;
+    private final ChatSessionService chatSessionService;
 
+    /**
+     * 获取当前用户的会话列表（游标分页）
+     * 首次请求不传cursor，加载更多时传入上一页返回的nextCursor
+     */
     @GetMapping("/user")
-    public List<ChatSession> getUserSessions() {
+    public ResponseEntity<ChatSessionPage> getUserSessions(@RequestParam(required = false) String cursor) {
         Long userId = SecurityUtils.getCurrentUserId();
-        return chatSessionRepository.findByUserIdOrderByUpdatedAtDesc(userId);
+        try {
+            return ResponseEntity.ok(chatSessionService.getUserSessions(userId, cursor));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
     }
 }
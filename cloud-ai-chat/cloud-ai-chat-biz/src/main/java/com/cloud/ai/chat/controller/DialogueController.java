@@ -1,19 +1,19 @@
 package com.cloud.ai.chat.controller;
 
 
-import com.cloud.ai.chat.domain.ChatMessage;
+import com.cloud.ai.chat.domain.ConversationPage;
+import com.cloud.ai.chat.domain.ConversationTurn;
 import com.cloud.ai.chat.repository.ChatSessionRepository;
 import com.cloud.ai.chat.service.impl.ChatDialogueService;
 import com.cloud.ai.chat.service.impl.ChatMessageService;
+import com.cloud.ai.chat.service.impl.ChatSessionService;
+import com.cloud.common.security.SecurityUtils;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
-import java.util.stream.Collectors;
 
 /**
  * @author shengjie.tang
@@ -29,65 +29,43 @@ public class DialogueController {
     private final ChatDialogueService chatDialogueService;
     private final ChatMessageService chatMessageService;
     private final ChatSessionRepository chatSessionRepository;
+    private final ChatSessionService chatSessionService;
 
     /**
-     * 获取对话历史
+     * 每页最大对话轮数
      */
+    private static final int MAX_PAGE_SIZE = 50;
+
+    /**
+     * 获取完整对话历史（旧接口，响应仍为按时间升序的对话列表）
+     * 已废弃：前端改用 /dialogue/v2/history/{sessionId} 分页加载（响应改为ConversationPage，
+     * 对话列表在turns字段中，向上翻页时传入nextCursor），全部切换后下线本接口
+     *
+     * @param sessionId 会话ID
+     */
+    @Deprecated
     @GetMapping("/history/{sessionId}")
     public List<ConversationTurn> getConversationHistory(@PathVariable String sessionId) {
-        List<ChatMessage> history = chatMessageService.getSessionHistory(sessionId);
-        if (history == null || history.isEmpty()) {
-            return new ArrayList<>();
-        }
-
-        Map<String, List<ChatMessage>> grouped = history.stream()
-                .collect(Collectors.groupingBy(ChatMessage::getDialogueId));
-
-        return grouped.entrySet().stream()
-                .sorted((a, b) -> {
-                    ChatMessage aFirst = a.getValue().stream().findFirst().orElse(null);
-                    ChatMessage bFirst = b.getValue().stream().findFirst().orElse(null);
-                    if (aFirst == null || bFirst == null) {
-                        return 0;
-                    }
-                    if (aFirst.getCreatedAt() == null || bFirst.getCreatedAt() == null) {
-                        return 0;
-                    }
-                    return aFirst.getCreatedAt().compareTo(bFirst.getCreatedAt());
-                })
-                .map(entry -> {
-                    String dialogueId = entry.getKey();
-                    ChatMessage user = null;
-                    ChatMessage assistant = null;
-                    ChatMessage recommendations = null;
-                    for (ChatMessage m : entry.getValue()) {
-                        if (m == null || m.getMessageType() == null) {
-                            continue;
-                        }
-                        if (ChatMessage.MessageType.USER.equals(m.getMessageType())) {
-                            user = m;
-                        } else if (ChatMessage.MessageType.ASSISTANT.equals(m.getMessageType())) {
-                            assistant = m;
-                        } else if (ChatMessage.MessageType.RECOMMENDATIONS.equals(m.getMessageType())) {
-                            recommendations = m;
-                        }
-                    }
-                    return new ConversationTurn(dialogueId, user, assistant, recommendations);
-                })
-                .collect(Collectors.toList());
+        return chatMessageService.getConversationHistory(sessionId, MAX_PAGE_SIZE);
     }
 
-    public static class ConversationTurn {
-        public String dialogueId;
-        public ChatMessage user;
-        public ChatMessage assistant;
-        public ChatMessage recommendations;
-
-        public ConversationTurn(String dialogueId, ChatMessage user, ChatMessage assistant, ChatMessage recommendations) {
-            this.dialogueId = dialogueId;
-            this.user = user;
-            this.assistant = assistant;
-            this.recommendations = recommendations;
+    /**
+     * 获取对话历史（游标分页）
+     * 首次请求不传cursor，返回最新的一页；向上翻页时传入上一页返回的nextCursor
+     *
+     * @param sessionId 会话ID
+     * @param cursor    分页游标
+     * @param size      每页对话轮数
+     */
+    @GetMapping("/v2/history/{sessionId}")
+    public ResponseEntity<ConversationPage> getConversationPage(@PathVariable String sessionId,
+                                                                @RequestParam(required = false) String cursor,
+                                                                @RequestParam(defaultValue = "20") int size) {
+        int pageSize = Math.min(Math.max(size, 1), MAX_PAGE_SIZE);
+        try {
+            return ResponseEntity.ok(chatMessageService.getConversationPage(sessionId, cursor, pageSize));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
         }
     }
 
@@ -97,6 +75,7 @@ public class DialogueController {
         chatSessionRepository.deleteBySessionId(sessionId);
         chatDialogueService.clearConversationMemory(sessionId);
         chatMessageService.deleteSessionMessages(sessionId);
+        chatSessionService.evictFirstPage(SecurityUtils.getCurrentUserId());
         return ResponseEntity.ok().build();
     }
 }
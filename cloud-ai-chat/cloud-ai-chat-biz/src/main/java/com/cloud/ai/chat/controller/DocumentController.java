@@ -1,9 +1,13 @@
 package com.cloud.ai.chat.controller;
 
 
+import com.cloud.ai.chat.domain.DocumentIngestJob;
 import com.cloud.ai.chat.service.impl.DocumentService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
@@ -27,9 +31,19 @@ public class DocumentController {
     @PostMapping("/upload")
     public DocumentService.DocumentUploadResult uploadDocument(
             @RequestParam("file") MultipartFile file,
+            @RequestParam(value = "documentId", required = false) String documentId,
             @RequestParam(value = "title", required = false) String title,
             @RequestParam(value = "description", required = false) String description,
             @RequestParam(value = "tags", required = false) String tags) {
-        return documentService.uploadAndProcessDocument(file, title, description, tags);
+        return documentService.uploadAndProcessDocument(file, documentId, title, description, tags);
+    }
+
+    /**
+     * 查询入库任务进度
+     */
+    @GetMapping("/jobs/{jobId}")
+    public ResponseEntity<DocumentIngestJob> getIngestJob(@PathVariable String jobId) {
+        DocumentIngestJob job = documentService.getIngestJob(jobId);
+        return job == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(job);
     }
 }
@@ -0,0 +1,111 @@
+package com.cloud.ai.chat.document;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.helpers.DefaultHandler;
+
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * @author shengjie.tang
+ * @version 1.0.0
+ * @description: 边解析边分块的SAX处理器
+ * <p>
+ * 1. Tika输出的XHTML块级元素（段落、标题、列表项、表格行、PDF页等）转换为段落边界，br转换为换行，
+ *    文本直接送入 {@link SemanticChunker}，不在内存中拼接整篇文档
+ * 2. 开头最多缓存smallDocumentChars个字符：文档在此之前结束则按短文档的分块大小分块，
+ *    超出后才确定分块大小并开始输出，内存占用与文档大小无关
+ * @date 2025/11/27 10:00
+ */
+public class ChunkingContentHandler extends DefaultHandler {
+
+    private static final Set<String> BLOCK_ELEMENTS = Set.of("p", "div", "h1", "h2", "h3", "h4", "h5", "h6",
+            "li", "tr", "table", "pre", "blockquote", "section", "article", "dd", "dt");
+
+    private final DocumentIngestProperties properties;
+    private final Consumer<String> sink;
+
+    /**
+     * 确定分块大小前缓存的开头部分
+     */
+    private StringBuilder head = new StringBuilder();
+    private SemanticChunker chunker;
+    private long contentLength;
+
+    public ChunkingContentHandler(DocumentIngestProperties properties, Consumer<String> sink) {
+        this.properties = properties;
+        this.sink = sink;
+    }
+
+    @Override
+    public void startElement(String uri, String localName, String qName, Attributes attributes) {
+        String name = localName.isEmpty() ? qName : localName;
+        if (BLOCK_ELEMENTS.contains(name)) {
+            append("\n\n");
+        } else if ("br".equals(name)) {
+            append("\n");
+        }
+    }
+
+    @Override
+    public void endElement(String uri, String localName, String qName) {
+        String name = localName.isEmpty() ? qName : localName;
+        if (BLOCK_ELEMENTS.contains(name)) {
+            append("\n\n");
+        } else if ("td".equals(name) || "th".equals(name)) {
+            append(" ");
+        }
+    }
+
+    @Override
+    public void characters(char[] ch, int start, int length) {
+        contentLength += length;
+        if (chunker != null) {
+            chunker.append(ch, start, length);
+            return;
+        }
+        head.append(ch, start, length);
+        if (head.length() > properties.getSmallDocumentChars()) {
+            startChunker(properties.getChunkSize());
+        }
+    }
+
+    @Override
+    public void ignorableWhitespace(char[] ch, int start, int length) {
+        append(new String(ch, start, length));
+    }
+
+    /**
+     * 输出剩余分块，解析结束后调用
+     */
+    public void finish() {
+        if (chunker == null) {
+            if (head.toString().isBlank()) {
+                return;
+            }
+            startChunker(properties.getSmallChunkSize());
+        }
+        chunker.finish();
+    }
+
+    /**
+     * 解析出的文本字符数
+     */
+    public long getContentLength() {
+        return contentLength;
+    }
+
+    private void append(String text) {
+        if (chunker != null) {
+            chunker.append(text);
+        } else {
+            head.append(text);
+        }
+    }
+
+    private void startChunker(int chunkSize) {
+        chunker = new SemanticChunker(chunkSize, properties.getChunkOverlap(), sink);
+        chunker.append(head);
+        head = null;
+    }
+}
@@ -0,0 +1,78 @@
+package com.cloud.ai.chat.document;
+
+import com.cloud.ai.chat.retrieval.VectorStoreProperties;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * @author shengjie.tang
+ * @version 1.0.0
+ * @description: 文档分块内容哈希索引
+ * <p>
+ * 每个分块的metadata中保存所属文档ID和内容哈希，分块ID由二者确定性生成；
+ * 重新入库同一文档时，哈希已存在的分块直接复用，不再生成向量；按文档ID查询使用包含条件（@>），可走metadata上的GIN索引
+ * @date 2025/11/28 10:00
+ */
+@Component
+@RequiredArgsConstructor
+public class DocumentChunkIndex {
+
+    public static final String DOCUMENT_ID = "documentId";
+    public static final String CONTENT_HASH = "contentHash";
+
+    private static final String FIND_CHUNK_HASHES_SQL = """
+            SELECT id::text AS id, metadata->>'contentHash' AS content_hash
+            FROM %s.%s
+            WHERE metadata @> jsonb_build_object('documentId', ?::text)
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final VectorStoreProperties vectorStoreProperties;
+
+    /**
+     * 查询文档已入库的分块
+     *
+     * @return 内容哈希 -> 分块ID
+     */
+    public Map<String, String> findChunkIds(String documentId) {
+        Map<String, String> chunkIds = new HashMap<>();
+        String sql = FIND_CHUNK_HASHES_SQL.formatted(vectorStoreProperties.getSchemaName(),
+                vectorStoreProperties.getTableName());
+        jdbcTemplate.query(sql, rs -> {
+            String hash = rs.getString("content_hash");
+            if (hash != null) {
+                chunkIds.putIfAbsent(hash, rs.getString("id"));
+            }
+        }, documentId);
+        return chunkIds;
+    }
+
+    /**
+     * 分块内容哈希，空白差异不影响结果
+     */
+    public static String contentHash(String chunk) {
+        String normalized = chunk.strip().replaceAll("\\s+", " ");
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(normalized.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 分块ID：同一文档中内容相同的分块ID相同
+     */
+    public static String chunkId(String documentId, String contentHash) {
+        return UUID.nameUUIDFromBytes((documentId + ":" + contentHash).getBytes(StandardCharsets.UTF_8)).toString();
+    }
+}
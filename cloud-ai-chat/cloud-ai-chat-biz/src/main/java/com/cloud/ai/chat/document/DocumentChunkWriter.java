@@ -0,0 +1,223 @@
+package com.cloud.ai.chat.document;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.VectorStore;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * @author shengjie.tang
+ * @version 1.0.0
+ * @description: 分块写入向量库
+ * <p>
+ * 1. 分块器逐个输出的分块凑满一个批次后，提交到写入线程池生成向量并写入向量库
+ * 2. 同时在写入的批次数有上限，解析超前时阻塞解析线程，内存中缓存的分块不超过 批次数 * 批次大小
+ * 3. 线程安全，按页并行解析时多个分块器共用一个写入器；任一批次失败后，后续提交和 {@link #finish()} 抛出异常
+ * 4. 按内容哈希去重：文档中已入库的分块直接复用，同一文档内重复的分块只写入一次
+ * 5. 记录本次提交写入的新分块ID，入库失败时通过 {@link #abort()} 取回，由调用方删除已写入的部分批次
+ * @date 2025/11/27 10:00
+ */
+@Slf4j
+public class DocumentChunkWriter implements Consumer<String> {
+
+    /**
+     * 过短的分块不写入（空白页、页眉页脚等）
+     */
+    private static final int MIN_CHUNK_LENGTH = 10;
+
+    private final VectorStore vectorStore;
+    private final Map<String, Object> metadata;
+    private final String documentId;
+    private final Set<String> existingHashes;
+    private final int batchSize;
+    private final Executor executor;
+    private final int maxInFlightBatches;
+    private final Progress progress;
+
+    private final Semaphore inFlight;
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+    private final Set<String> seenHashes = new HashSet<>();
+
+    /**
+     * 本次提交写入的新分块ID（不含复用的分块）
+     */
+    private final List<String> submittedIds = new ArrayList<>();
+
+    private List<Document> batch;
+    private int chunkCount;
+    private long chunkChars;
+    private int reusedCount;
+    private int pendingReused;
+
+    /**
+     * @param vectorStore        向量库
+     * @param metadata           文档元数据（复制到每个分块，需包含文档ID）
+     * @param existingHashes     文档已入库分块的内容哈希
+     * @param batchSize          每批写入的分块数
+     * @param executor           写入线程池
+     * @param maxInFlightBatches 同时在写入的批次数
+     * @param progress           进度回调
+     */
+    public DocumentChunkWriter(VectorStore vectorStore, Map<String, Object> metadata, Set<String> existingHashes,
+                               int batchSize, Executor executor, int maxInFlightBatches, Progress progress) {
+        this.vectorStore = vectorStore;
+        this.metadata = metadata;
+        this.documentId = (String) metadata.get(DocumentChunkIndex.DOCUMENT_ID);
+        this.existingHashes = existingHashes;
+        this.batchSize = batchSize;
+        this.executor = executor;
+        this.maxInFlightBatches = maxInFlightBatches;
+        this.progress = progress;
+        this.inFlight = new Semaphore(maxInFlightBatches);
+        this.batch = new ArrayList<>(batchSize);
+    }
+
+    @Override
+    public synchronized void accept(String chunk) {
+        if (chunk.length() < MIN_CHUNK_LENGTH) {
+            log.debug("分块过短，跳过: {}", chunk);
+            return;
+        }
+        String hash = DocumentChunkIndex.contentHash(chunk);
+        if (!seenHashes.add(hash)) {
+            log.debug("文档内重复分块，跳过: {}", hash);
+            return;
+        }
+        if (existingHashes.contains(hash)) {
+            // 已入库的分块不再生成向量
+            chunkCount++;
+            reusedCount++;
+            if (++pendingReused >= batchSize) {
+                reportReused();
+            }
+            return;
+        }
+        // 为每个chunk添加块序号，便于后续追踪
+        Map<String, Object> chunkMetadata = new HashMap<>(metadata);
+        chunkMetadata.put("chunkIndex", chunkCount++);
+        chunkMetadata.put("chunkSize", chunk.length());
+        chunkMetadata.put(DocumentChunkIndex.CONTENT_HASH, hash);
+        batch.add(new Document(DocumentChunkIndex.chunkId(documentId, hash), chunk, chunkMetadata));
+        chunkChars += chunk.length();
+        if (batch.size() >= batchSize) {
+            submitBatch();
+        }
+    }
+
+    /**
+     * 提交剩余分块并等待全部批次写入完成，解析成功后调用
+     */
+    public synchronized void finish() {
+        if (!batch.isEmpty()) {
+            submitBatch();
+        }
+        reportReused();
+        inFlight.acquireUninterruptibly(maxInFlightBatches);
+        inFlight.release(maxInFlightBatches);
+        throwIfFailed();
+    }
+
+    /**
+     * 入库失败后调用：等待在写入的批次结束，返回本次提交写入的新分块ID（可能只写入了一部分）
+     */
+    public synchronized List<String> abort() {
+        inFlight.acquireUninterruptibly(maxInFlightBatches);
+        inFlight.release(maxInFlightBatches);
+        return List.copyOf(submittedIds);
+    }
+
+    public synchronized int getChunkCount() {
+        return chunkCount;
+    }
+
+    public synchronized long getChunkChars() {
+        return chunkChars;
+    }
+
+    /**
+     * 复用已入库向量的分块数
+     */
+    public synchronized int getReusedCount() {
+        return reusedCount;
+    }
+
+    /**
+     * 本次解析出的全部分块内容哈希（含复用的分块），finish后用于清理过期分块
+     */
+    public synchronized Set<String> getSeenHashes() {
+        return Set.copyOf(seenHashes);
+    }
+
+    private void reportReused() {
+        if (pendingReused > 0) {
+            progress.onParsed(pendingReused);
+            progress.onStored(pendingReused);
+            pendingReused = 0;
+        }
+    }
+
+    private void submitBatch() {
+        List<Document> documents = batch;
+        batch = new ArrayList<>(batchSize);
+        progress.onParsed(documents.size());
+
+        inFlight.acquireUninterruptibly();
+        if (failure.get() != null) {
+            inFlight.release();
+            throwIfFailed();
+        }
+        documents.forEach(document -> submittedIds.add(document.getId()));
+        try {
+            executor.execute(() -> store(documents));
+        } catch (RejectedExecutionException e) {
+            inFlight.release();
+            throw e;
+        }
+    }
+
+    private void store(List<Document> documents) {
+        try {
+            vectorStore.add(documents);
+            progress.onStored(documents.size());
+        } catch (Throwable e) {
+            failure.compareAndSet(null, e);
+        } finally {
+            inFlight.release();
+        }
+    }
+
+    private void throwIfFailed() {
+        Throwable error = failure.get();
+        if (error != null) {
+            throw new IllegalStateException("分块写入向量库失败: " + error.getMessage(), error);
+        }
+    }
+
+    /**
+     * 入库进度回调
+     */
+    public interface Progress {
+
+        /**
+         * 一批分块解析完成（提交写入前）
+         */
+        void onParsed(int chunks);
+
+        /**
+         * 一批分块写入完成
+         */
+        void onStored(int chunks);
+    }
+}
@@ -0,0 +1,208 @@
+package com.cloud.ai.chat.document;
+
+import com.cloud.ai.chat.domain.DocumentIngestJob;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RMap;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * @author shengjie.tang
+ * @version 1.0.0
+ * @description: 文档入库任务状态（Redis哈希）
+ * <p>
+ * 进度计数在Redis中原子累加，解析线程和写入线程可以并发更新；状态写入失败只记录日志，不影响入库本身。
+ * 任务记录执行实例，实例定时为本实例未结束的任务写心跳；排队或执行中的任务心跳超时，说明执行实例已停止，
+ * 查询时标记为失败，轮询方不会一直看到PENDING/RUNNING
+ * @date 2025/11/27 15:00
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class DocumentIngestJobStore {
+
+    private static final String JOB_KEY_PREFIX = "document:ingest:job:";
+
+    private static final String STATUS = "status";
+    private static final String FILE_NAME = "fileName";
+    private static final String FILE_SIZE = "fileSize";
+    private static final String DOCUMENT_TYPE = "documentType";
+    private static final String PARSED_CHUNKS = "parsedChunks";
+    private static final String STORED_CHUNKS = "storedChunks";
+    private static final String CONTENT_LENGTH = "contentLength";
+    private static final String ERROR = "error";
+    private static final String SUBMITTED_AT = "submittedAt";
+    private static final String STARTED_AT = "startedAt";
+    private static final String FINISHED_AT = "finishedAt";
+    private static final String OWNER = "owner";
+    private static final String HEARTBEAT_AT = "heartbeatAt";
+
+    private final RedissonClient redissonClient;
+    private final DocumentIngestProperties properties;
+
+    @Value("${spring.application.name:cloud-ai-chat}")
+    private String applicationName;
+
+    /**
+     * 实例ID：每个JVM唯一
+     */
+    private String instanceId;
+
+    /**
+     * 本实例已提交、未结束的任务
+     */
+    private final Set<String> localJobs = ConcurrentHashMap.newKeySet();
+
+    @PostConstruct
+    public void init() {
+        instanceId = applicationName + ":" + UUID.randomUUID();
+    }
+
+    public void create(DocumentIngestJob job) {
+        Map<String, String> fields = new HashMap<>();
+        fields.put(STATUS, DocumentIngestJob.Status.PENDING.name());
+        fields.put(FILE_NAME, Objects.toString(job.getFileName(), ""));
+        fields.put(FILE_SIZE, String.valueOf(job.getFileSize()));
+        fields.put(DOCUMENT_TYPE, job.getDocumentType());
+        fields.put(PARSED_CHUNKS, "0");
+        fields.put(STORED_CHUNKS, "0");
+        fields.put(SUBMITTED_AT, String.valueOf(System.currentTimeMillis()));
+        fields.put(OWNER, instanceId);
+        fields.put(HEARTBEAT_AT, String.valueOf(System.currentTimeMillis()));
+        RMap<String, String> map = jobMap(job.getJobId());
+        map.putAll(fields);
+        map.expire(Duration.ofHours(properties.getJobRetentionHours()));
+        localJobs.add(job.getJobId());
+    }
+
+    public void start(String jobId) {
+        update(jobId, Map.of(STATUS, DocumentIngestJob.Status.RUNNING.name(),
+                STARTED_AT, String.valueOf(System.currentTimeMillis())));
+    }
+
+    public void addParsed(String jobId, int chunks) {
+        increment(jobId, PARSED_CHUNKS, chunks);
+    }
+
+    public void addStored(String jobId, int chunks) {
+        increment(jobId, STORED_CHUNKS, chunks);
+    }
+
+    public void complete(String jobId, long contentLength) {
+        localJobs.remove(jobId);
+        update(jobId, Map.of(STATUS, DocumentIngestJob.Status.COMPLETED.name(),
+                CONTENT_LENGTH, String.valueOf(contentLength),
+                FINISHED_AT, String.valueOf(System.currentTimeMillis())));
+    }
+
+    public void fail(String jobId, String error) {
+        localJobs.remove(jobId);
+        update(jobId, Map.of(STATUS, DocumentIngestJob.Status.FAILED.name(),
+                ERROR, Objects.toString(error, "未知错误"),
+                FINISHED_AT, String.valueOf(System.currentTimeMillis())));
+    }
+
+    /**
+     * 为本实例未结束的任务写心跳
+     */
+    @Scheduled(fixedDelayString = "${document.ingest.job-heartbeat-interval-ms:10000}")
+    public void heartbeat() {
+        String now = String.valueOf(System.currentTimeMillis());
+        for (String jobId : localJobs) {
+            try {
+                jobMap(jobId).fastPut(HEARTBEAT_AT, now);
+            } catch (Exception e) {
+                log.warn("写入入库任务心跳失败，jobId: {}", jobId, e);
+            }
+        }
+    }
+
+    /**
+     * 查询任务状态，任务不存在或已过期时返回null；未结束且心跳超时的任务标记为失败
+     */
+    public DocumentIngestJob get(String jobId) {
+        Map<String, String> fields = jobMap(jobId).readAllMap();
+        if (fields.isEmpty()) {
+            return null;
+        }
+        DocumentIngestJob job = DocumentIngestJob.builder()
+                .jobId(jobId)
+                .status(DocumentIngestJob.Status.valueOf(fields.get(STATUS)))
+                .fileName(fields.get(FILE_NAME))
+                .fileSize(toLong(fields.get(FILE_SIZE)))
+                .documentType(fields.get(DOCUMENT_TYPE))
+                .parsedChunks(Objects.requireNonNullElse(toLong(fields.get(PARSED_CHUNKS)), 0L))
+                .storedChunks(Objects.requireNonNullElse(toLong(fields.get(STORED_CHUNKS)), 0L))
+                .contentLength(toLong(fields.get(CONTENT_LENGTH)))
+                .error(fields.get(ERROR))
+                .submittedAt(toLong(fields.get(SUBMITTED_AT)))
+                .startedAt(toLong(fields.get(STARTED_AT)))
+                .finishedAt(toLong(fields.get(FINISHED_AT)))
+                .owner(fields.get(OWNER))
+                .heartbeatAt(toLong(fields.get(HEARTBEAT_AT)))
+                .build();
+
+        if (isOrphaned(job)) {
+            log.warn("入库任务的执行实例已停止，标记为失败，jobId: {}, owner: {}", jobId, job.getOwner());
+            String error = "处理实例已停止，请重新上传";
+            fail(jobId, error);
+            job.setStatus(DocumentIngestJob.Status.FAILED);
+            job.setError(error);
+            job.setFinishedAt(System.currentTimeMillis());
+        }
+
+        if (job.getStartedAt() != null) {
+            long end = job.getFinishedAt() != null ? job.getFinishedAt() : System.currentTimeMillis();
+            long elapsed = Math.max(1, end - job.getStartedAt());
+            job.setThroughput(job.getStoredChunks() * 1000d / elapsed);
+        }
+        return job;
+    }
+
+    private boolean isOrphaned(DocumentIngestJob job) {
+        boolean unfinished = job.getStatus() == DocumentIngestJob.Status.PENDING
+                || job.getStatus() == DocumentIngestJob.Status.RUNNING;
+        return unfinished && job.getHeartbeatAt() != null && !localJobs.contains(job.getJobId())
+                && System.currentTimeMillis() - job.getHeartbeatAt() > properties.getJobHeartbeatTimeoutMs();
+    }
+
+    private void update(String jobId, Map<String, String> fields) {
+        try {
+            RMap<String, String> map = jobMap(jobId);
+            map.putAll(fields);
+            map.expire(Duration.ofHours(properties.getJobRetentionHours()));
+        } catch (Exception e) {
+            log.warn("更新入库任务状态失败，jobId: {}", jobId, e);
+        }
+    }
+
+    private void increment(String jobId, String field, int delta) {
+        try {
+            jobMap(jobId).addAndGet(field, delta);
+        } catch (Exception e) {
+            log.warn("更新入库任务进度失败，jobId: {}", jobId, e);
+        }
+    }
+
+    private static Long toLong(String value) {
+        return value == null || value.isEmpty() || "null".equals(value) ? null : new BigDecimal(value).longValue();
+    }
+
+    private RMap<String, String> jobMap(String jobId) {
+        return redissonClient.getMap(JOB_KEY_PREFIX + jobId, StringCodec.INSTANCE);
+    }
+}
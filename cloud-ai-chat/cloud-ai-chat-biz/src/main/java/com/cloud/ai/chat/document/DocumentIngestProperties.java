@@ -0,0 +1,116 @@
+package com.cloud.ai.chat.document;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * @author shengjie.tang
+ * @version 1.0.0
+ * @description: 文档入库配置 - 分块、落盘与向量写入批次
+ * @date 2025/11/27 10:00
+ */
+@Component
+@ConfigurationProperties(prefix = "document.ingest")
+@Data
+public class DocumentIngestProperties {
+
+    /**
+     * 分块最大字符数
+     */
+    private int chunkSize = 1000;
+
+    /**
+     * 短文档的分块最大字符数（短文档用更小的块）
+     */
+    private int smallChunkSize = 500;
+
+    /**
+     * 短文档阈值（字符数），解析出的内容不超过该长度时使用smallChunkSize
+     */
+    private int smallDocumentChars = 5000;
+
+    /**
+     * 相邻分块的最大重叠字符数
+     */
+    private int chunkOverlap = 200;
+
+    /**
+     * 每次写入向量库（生成向量）的分块数
+     */
+    private int storeBatchSize = 32;
+
+    /**
+     * 每个入库任务同时在写入的批次数，解析超前时阻塞等待，内存中缓存的分块不超过 批次数 * 批次大小
+     */
+    private int storeInFlightBatches = 2;
+
+    /**
+     * 全局写入向量库的并发数（所有入库任务共用，按向量接口配额调整）
+     */
+    private int storeParallelism = 4;
+
+    /**
+     * 同时执行的入库任务数
+     */
+    private int jobWorkers = 2;
+
+    /**
+     * 排队等待的入库任务上限，超出时拒绝提交
+     */
+    private int jobQueueCapacity = 100;
+
+    /**
+     * 入库任务状态保留时间（小时）
+     */
+    private long jobRetentionHours = 24;
+
+    /**
+     * 执行实例为未结束的任务写心跳的间隔（毫秒）
+     */
+    private long jobHeartbeatIntervalMs = 10000;
+
+    /**
+     * 排队或执行中的任务超过该时间（毫秒）没有心跳时，查询时标记为失败
+     */
+    private long jobHeartbeatTimeoutMs = 60000;
+
+    /**
+     * 同一文档已有任务在入库时，等待其结束的最长时间（秒），超时则本次任务失败
+     */
+    private long documentLockWaitSeconds = 0;
+
+    /**
+     * 上传文件落盘目录，为空时使用系统临时目录
+     */
+    private String spoolDir;
+
+    /**
+     * 大PDF按页并行解析
+     */
+    private PdfParallel pdfParallel = new PdfParallel();
+
+    @Data
+    public static class PdfParallel {
+
+        /**
+         * 是否开启
+         */
+        private boolean enabled = false;
+
+        /**
+         * 页数达到该值的PDF才并行解析
+         */
+        private int minPages = 50;
+
+        /**
+         * 每个解析任务的页数
+         */
+        private int pagesPerTask = 20;
+
+        /**
+         * 解析线程数
+         */
+        private int threads = 4;
+    }
+}
@@ -0,0 +1,138 @@
+package com.cloud.ai.chat.document;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
+
+/**
+ * @author shengjie.tang
+ * @version 1.0.0
+ * @description: 大PDF按页并行解析
+ * <p>
+ * 按页数切分为多个页段，每个页段由独立的PDDocument（临时文件缓存，不占堆内存）解析、独立的分块器分块，
+ * 分块直接写入共用的写入器；页段之间不做重叠，分块序号按输出顺序分配
+ * @date 2025/11/27 10:00
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class PdfPageParallelExtractor {
+
+    private final DocumentIngestProperties properties;
+    private final ThreadPoolTaskExecutor documentParseExecutor;
+
+    /**
+     * 是否按页并行解析该PDF（未开启或页数不足时返回false）
+     */
+    public boolean supports(Path pdf) throws IOException {
+        DocumentIngestProperties.PdfParallel config = properties.getPdfParallel();
+        if (!config.isEnabled()) {
+            return false;
+        }
+        try (PDDocument document = PDDocument.load(pdf.toFile(), MemoryUsageSetting.setupTempFileOnly())) {
+            return document.getNumberOfPages() >= config.getMinPages();
+        }
+    }
+
+    /**
+     * 按页并行解析并分块
+     *
+     * @return 解析出的文本字符数
+     */
+    public long extract(Path pdf, Consumer<String> sink) throws IOException {
+        int pages;
+        try (PDDocument document = PDDocument.load(pdf.toFile(), MemoryUsageSetting.setupTempFileOnly())) {
+            pages = document.getNumberOfPages();
+        }
+
+        int pagesPerTask = properties.getPdfParallel().getPagesPerTask();
+        List<CompletableFuture<Long>> futures = new ArrayList<>();
+        for (int startPage = 1; startPage <= pages; startPage += pagesPerTask) {
+            int from = startPage;
+            int to = Math.min(startPage + pagesPerTask - 1, pages);
+            futures.add(CompletableFuture.supplyAsync(() -> extractPages(pdf, from, to, sink), documentParseExecutor));
+        }
+        try {
+            CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).join();
+        } catch (CompletionException e) {
+            futures.forEach(future -> future.cancel(false));
+            if (e.getCause() instanceof UncheckedPdfException pdfException) {
+                throw pdfException.getCause();
+            }
+            throw e;
+        }
+
+        long contentLength = futures.stream().mapToLong(CompletableFuture::join).sum();
+        log.info("PDF按页并行解析完成: {}, 页数: {}, 任务数: {}", pdf.getFileName(), pages, futures.size());
+        return contentLength;
+    }
+
+    private long extractPages(Path pdf, int from, int to, Consumer<String> sink) {
+        SemanticChunker chunker = new SemanticChunker(properties.getChunkSize(), properties.getChunkOverlap(), sink);
+        ChunkerWriter writer = new ChunkerWriter(chunker);
+        try (PDDocument document = PDDocument.load(pdf.toFile(), MemoryUsageSetting.setupTempFileOnly())) {
+            PDFTextStripper stripper = new PDFTextStripper();
+            stripper.setStartPage(from);
+            stripper.setEndPage(to);
+            stripper.setParagraphEnd("\n\n");
+            stripper.setPageEnd("\n\n");
+            stripper.writeText(document, writer);
+        } catch (IOException e) {
+            throw new UncheckedPdfException(e);
+        }
+        chunker.finish();
+        return writer.length;
+    }
+
+    /**
+     * 将文本直接送入分块器的Writer
+     */
+    private static class ChunkerWriter extends Writer {
+
+        private final SemanticChunker chunker;
+        private long length;
+
+        ChunkerWriter(SemanticChunker chunker) {
+            this.chunker = chunker;
+        }
+
+        @Override
+        public void write(char[] chars, int off, int len) {
+            chunker.append(chars, off, len);
+            length += len;
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static class UncheckedPdfException extends RuntimeException {
+
+        UncheckedPdfException(IOException cause) {
+            super(cause);
+        }
+
+        @Override
+        public synchronized IOException getCause() {
+            return (IOException) super.getCause();
+        }
+    }
+}
@@ -0,0 +1,293 @@
+package com.cloud.ai.chat.document;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * @author shengjie.tang
+ * @version 1.0.0
+ * @description: 单次遍历的语义分块器
+ * <p>
+ * 1. 逐字符规整空白：连续空格合并为一个，单个换行保留为行边界，空行保留为段落边界（"\n\n"），不破坏文档结构
+ * 2. 以句子（。！？；及后跟空白的 .!?;）、行、段落为最小单元贪心装箱，块长度不超过maxChunkSize；
+ *    新块以上一块末尾不超过overlap个字符的完整单元开头作为重叠，找不到单元边界时退回按字符重叠
+ * 3. 单个单元超过maxChunkSize时按字符切分，相邻切片重叠不超过overlap个字符（切点不拆开代理对，每次至少前进一个字符）
+ * 4. 只缓存当前窗口（不超过maxChunkSize个字符），每个字符只被处理常数次，总时间与文本长度成线性；
+ *    可以边解析边追加，分块通过回调逐个输出
+ * @date 2025/11/26 16:00
+ */
+public final class SemanticChunker {
+
+    private static final int NO_SENTENCE_END = 0;
+    private static final int CJK_SENTENCE_END = 1;
+    private static final int ASCII_SENTENCE_END = 2;
+
+    private final int maxChunkSize;
+    private final int overlap;
+    private final Consumer<String> sink;
+
+    /**
+     * 当前窗口：已装入块的完整单元 + 分隔符 + 正在读取的单元
+     */
+    private final StringBuilder window;
+
+    /**
+     * 窗口中各单元的起始位置（最后一个是正在读取的单元）
+     */
+    private int[] unitStarts = new int[16];
+    private int unitCount;
+
+    /**
+     * 窗口中已装入块的完整单元的结束位置
+     */
+    private int committedEnd;
+
+    /**
+     * 窗口开头已随上一个块输出过的长度（重叠部分）
+     */
+    private int emittedEnd;
+
+    private int pendingNewlines;
+    private boolean pendingSpace;
+    private int sentenceEnd = NO_SENTENCE_END;
+    private int chunkCount;
+
+    /**
+     * @param maxChunkSize 块的最大字符数
+     * @param overlap      相邻块的最大重叠字符数，必须小于maxChunkSize
+     * @param sink         分块输出
+     */
+    public SemanticChunker(int maxChunkSize, int overlap, Consumer<String> sink) {
+        if (maxChunkSize <= 0 || overlap < 0 || overlap >= maxChunkSize) {
+            throw new IllegalArgumentException("分块大小必须为正数，且重叠长度必须小于分块大小");
+        }
+        this.maxChunkSize = maxChunkSize;
+        this.overlap = overlap;
+        this.sink = sink;
+        this.window = new StringBuilder(maxChunkSize + 2);
+    }
+
+    /**
+     * 对完整文本分块
+     */
+    public static List<String> split(CharSequence text, int maxChunkSize, int overlap) {
+        List<String> chunks = new ArrayList<>();
+        if (text == null) {
+            return chunks;
+        }
+        SemanticChunker chunker = new SemanticChunker(maxChunkSize, overlap, chunks::add);
+        chunker.append(text);
+        chunker.finish();
+        return chunks;
+    }
+
+    public void append(CharSequence text) {
+        for (int i = 0, length = text.length(); i < length; i++) {
+            append(text.charAt(i));
+        }
+    }
+
+    public void append(char[] chars, int start, int length) {
+        for (int i = start, end = start + length; i < end; i++) {
+            append(chars[i]);
+        }
+    }
+
+    /**
+     * 输出最后一个块
+     */
+    public void finish() {
+        if (window.length() > emittedEnd) {
+            emit(window.length());
+        }
+        window.setLength(0);
+        unitCount = 0;
+        committedEnd = 0;
+        emittedEnd = 0;
+        pendingNewlines = 0;
+        pendingSpace = false;
+        sentenceEnd = NO_SENTENCE_END;
+    }
+
+    /**
+     * 已输出的块数
+     */
+    public int getChunkCount() {
+        return chunkCount;
+    }
+
+    private void append(char c) {
+        if (c == '\r') {
+            return;
+        }
+        if (c == '\n') {
+            pendingNewlines++;
+            return;
+        }
+        if (c == '\f') {
+            pendingNewlines += 2;
+            return;
+        }
+        if (Character.isWhitespace(c) || Character.isSpaceChar(c)) {
+            pendingSpace = true;
+            return;
+        }
+
+        if (unitCount == 0) {
+            openUnit();
+        } else {
+            boolean boundary = pendingNewlines > 0
+                    || sentenceEnd == CJK_SENTENCE_END && !isClosing(c)
+                    || sentenceEnd == ASCII_SENTENCE_END && pendingSpace;
+            if (boundary) {
+                committedEnd = window.length();
+            }
+            if (pendingNewlines > 1) {
+                window.append("\n\n");
+            } else if (pendingNewlines == 1) {
+                window.append('\n');
+            } else if (pendingSpace) {
+                window.append(' ');
+            }
+            if (boundary) {
+                openUnit();
+            }
+        }
+        pendingNewlines = 0;
+        pendingSpace = false;
+
+        window.append(c);
+        if (isCjkTerminator(c)) {
+            sentenceEnd = CJK_SENTENCE_END;
+        } else if (isAsciiTerminator(c)) {
+            sentenceEnd = ASCII_SENTENCE_END;
+        } else if (!isClosing(c)) {
+            sentenceEnd = NO_SENTENCE_END;
+        }
+
+        while (window.length() > maxChunkSize) {
+            overflow();
+        }
+    }
+
+    /**
+     * 窗口超出大小：输出已装入的完整单元，按重叠保留窗口末尾；没有完整单元时按字符切分当前单元
+     */
+    private void overflow() {
+        if (committedEnd > 0) {
+            int openStart = unitStarts[unitCount - 1];
+            int start = openStart;
+            if (committedEnd > emittedEnd) {
+                // 已装入的内容除重叠部分外还有新单元：输出，并保留末尾作为下一块的重叠
+                emit(committedEnd);
+                start = overlapStart();
+                if (start >= committedEnd || window.length() - start > maxChunkSize) {
+                    start = openStart;
+                }
+            }
+            shift(start);
+            committedEnd = start < openStart ? trimEnd(openStart - start) : 0;
+            emittedEnd = committedEnd;
+        } else {
+            // 切点不拆开代理对；maxChunkSize为1时整个代理对作为一块
+            int end = maxChunkSize;
+            if (Character.isHighSurrogate(window.charAt(end - 1))) {
+                end += end > 1 ? -1 : 1;
+            }
+            emit(end);
+            // 至少前进一个字符（切点回退后 end - overlap 可能为0），且下一块不从代理对中间开始
+            int start = Math.max(end - overlap, 1);
+            if (start < window.length() && Character.isLowSurrogate(window.charAt(start))
+                    && Character.isHighSurrogate(window.charAt(start - 1))) {
+                start++;
+            }
+            shift(start);
+            unitStarts[0] = 0;
+            unitCount = 1;
+            emittedEnd = window.length();
+        }
+    }
+
+    /**
+     * 重叠起点：已装入部分末尾overlap个字符内最靠前的单元起点，没有时按字符截取
+     */
+    private int overlapStart() {
+        int limit = committedEnd - overlap;
+        for (int i = 0; i < unitCount - 1; i++) {
+            int start = unitStarts[i];
+            if (start >= limit && start > 0) {
+                return start;
+            }
+        }
+        int start = Math.max(limit, 1);
+        if (start < committedEnd && Character.isLowSurrogate(window.charAt(start))
+                && Character.isHighSurrogate(window.charAt(start - 1))) {
+            start++;
+        }
+        while (start < committedEnd && Character.isWhitespace(window.charAt(start))) {
+            start++;
+        }
+        return start;
+    }
+
+    private void openUnit() {
+        if (unitCount == unitStarts.length) {
+            unitStarts = Arrays.copyOf(unitStarts, unitCount * 2);
+        }
+        unitStarts[unitCount++] = window.length();
+    }
+
+    /**
+     * 丢弃窗口中start之前的内容，单元起点随之平移
+     */
+    private void shift(int start) {
+        window.delete(0, start);
+        int count = 0;
+        for (int i = 0; i < unitCount; i++) {
+            int unitStart = unitStarts[i] - start;
+            if (unitStart >= 0) {
+                unitStarts[count++] = unitStart;
+            }
+        }
+        if (count == 0 || unitStarts[0] > 0) {
+            // 起点落在单元中间（按字符重叠），该单元剩余部分作为一个单元
+            if (count == unitStarts.length) {
+                unitStarts = Arrays.copyOf(unitStarts, count * 2);
+            }
+            System.arraycopy(unitStarts, 0, unitStarts, 1, count);
+            unitStarts[0] = 0;
+            count++;
+        }
+        unitCount = count;
+    }
+
+    private int trimEnd(int end) {
+        while (end > 0 && Character.isWhitespace(window.charAt(end - 1))) {
+            end--;
+        }
+        return end;
+    }
+
+    private void emit(int end) {
+        end = trimEnd(end);
+        if (end > 0) {
+            sink.accept(window.substring(0, end));
+            chunkCount++;
+        }
+    }
+
+    private static boolean isCjkTerminator(char c) {
+        return c == '。' || c == '！' || c == '？' || c == '；';
+    }
+
+    private static boolean isAsciiTerminator(char c) {
+        return c == '.' || c == '!' || c == '?' || c == ';';
+    }
+
+    private static boolean isClosing(char c) {
+        return c == '”' || c == '’' || c == '"' || c == '\'' || c == ')' || c == '）'
+                || c == '】' || c == '」' || c == '』' || c == '》';
+    }
+}
@@ -2,6 +2,8 @@ package com.cloud.ai.chat.domain;
 
 import lombok.Data;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.mapping.Document;
 import org.springframework.data.mongodb.core.mapping.Field;
 
@@ -16,10 +18,15 @@ import java.util.List;
  * @description: 聊天消息实体
  * 参照aiChat模型 问题和回答剥离开来 一个问题 可以有多次回答
  * 也可以没有回答
+ * 索引：(session_id, created_at) 支撑对话历史游标分页；(session_id, dialogue_id) 支撑按轮次聚合
  * @date 2025/1/27
  */
 @Data
 @Document(collection = "chat_messages")
+@CompoundIndexes({
+        @CompoundIndex(name = "idx_session_created", def = "{'session_id': 1, 'created_at': -1, '_id': -1}"),
+        @CompoundIndex(name = "idx_session_dialogue", def = "{'session_id': 1, 'dialogue_id': 1}")
+})
 public class ChatMessage {
 
     @Id
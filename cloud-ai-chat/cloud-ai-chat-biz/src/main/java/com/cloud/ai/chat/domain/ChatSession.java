@@ -16,7 +16,9 @@ import java.time.LocalDateTime;
  */
 @Data
 @Entity
-@Table(name = "chat_sessions")
+@Table(name = "chat_sessions", indexes = {
+        @Index(name = "idx_chat_sessions_user_updated", columnList = "user_id, updated_at DESC, id DESC")
+})
 public class ChatSession {
 
     @Id
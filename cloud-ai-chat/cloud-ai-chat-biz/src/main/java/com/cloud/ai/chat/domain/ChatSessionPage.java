@@ -0,0 +1,38 @@
+package com.cloud.ai.chat.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * @author shengjie.tang
+ * @version 1.0.0
+ * @description: 会话列表分页结果（游标分页）
+ * 按最近更新时间倒序，使用nextCursor获取下一页
+ * @date 2025/11/22 15:00
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChatSessionPage implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 本页会话，按更新时间倒序
+     */
+    private List<ChatSession> sessions;
+
+    /**
+     * 获取下一页的游标，没有更多数据时为null
+     */
+    private String nextCursor;
+
+    /**
+     * 是否还有更多会话
+     */
+    private boolean hasMore;
+}
@@ -15,7 +15,9 @@ import java.time.LocalDateTime;
  */
 @Data
 @Entity
-@Table(name = "chat_tags")
+@Table(name = "chat_tags", uniqueConstraints = {
+        @UniqueConstraint(name = "chat_tags_user_session_tag_unique", columnNames = {"user_id", "session_id", "tag_name"})
+})
 public class ChatTags implements Serializable {
 
     private static final long serialVersionUID = 1L;
@@ -0,0 +1,95 @@
+package com.cloud.ai.chat.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * @author shengjie.tang
+ * @version 1.0.0
+ * @description: 对话后处理任务 - 流式响应结束后投递到Redis队列，由后台worker执行
+ * 消息ID在投递时预先生成，worker重试时重复写入会被忽略，保证消息持久化幂等
+ * @date 2025/11/20 14:00
+ */
+@Data
+@Builder(toBuilder = true)
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChatTurnTask implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    public enum TaskType {
+        /**
+         * 一轮对话完成：保存消息 + 分析标签
+         */
+        TURN_COMPLETED,
+        /**
+         * 生成话题引导
+         */
+        SUGGESTION
+    }
+
+    private String taskId;
+
+    private TaskType taskType;
+
+    private Long userId;
+
+    private String sessionId;
+
+    private String dialogueId;
+
+    /**
+     * 原始用户查询
+     */
+    private String originQuery;
+
+    /**
+     * 生成话题引导时使用的查询（可能经过RAG增强）
+     */
+    private String query;
+
+    private List<String> imageUrls;
+
+    /**
+     * AI完整回复
+     */
+    private String response;
+
+    private boolean ragEnhanced;
+
+    /**
+     * 预先生成的用户消息ID
+     */
+    private String userMessageId;
+
+    /**
+     * 预先生成的助手消息ID
+     */
+    private String assistantMessageId;
+
+    /**
+     * 对话完成时间（毫秒时间戳），作为消息的创建时间
+     */
+    private long completedAt;
+
+    /**
+     * 消息是否已持久化（重试时跳过已完成的步骤）
+     */
+    private boolean persisted;
+
+    /**
+     * 标签分析是否已完成（重试时跳过，避免重复累加标签权重）
+     */
+    private boolean analyzed;
+
+    /**
+     * 已尝试次数
+     */
+    private int attempts;
+}
@@ -0,0 +1,39 @@
+package com.cloud.ai.chat.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * @author shengjie.tang
+ * @version 1.0.0
+ * @description: 对话历史分页结果（游标分页）
+ * 从最新的对话开始向前翻页，turns按时间升序排列，使用nextCursor获取更早的对话
+ * @date 2025/11/22 10:00
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ConversationPage {
+
+    /**
+     * 本页对话，按时间升序
+     */
+    private List<ConversationTurn> turns;
+
+    /**
+     * 获取更早一页的游标，没有更多数据时为null
+     */
+    private String nextCursor;
+
+    /**
+     * 是否还有更早的对话
+     */
+    private boolean hasMore;
+
+    public static ConversationPage empty() {
+        return new ConversationPage(List.of(), null, false);
+    }
+}
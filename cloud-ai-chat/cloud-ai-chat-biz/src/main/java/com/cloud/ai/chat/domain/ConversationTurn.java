@@ -0,0 +1,57 @@
+package com.cloud.ai.chat.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * @author shengjie.tang
+ * @version 1.0.0
+ * @description: 一轮对话 - 同一dialogueId下的用户提问、AI回答和话题引导
+ * @date 2025/11/22 10:00
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ConversationTurn {
+
+    private String dialogueId;
+
+    private ChatMessage user;
+
+    private ChatMessage assistant;
+
+    private ChatMessage recommendations;
+
+    public ConversationTurn(String dialogueId) {
+        this.dialogueId = dialogueId;
+    }
+
+    /**
+     * 按消息类型放入对应位置，同类型消息以后出现的为准
+     */
+    public void accept(ChatMessage message) {
+        if (message == null || message.getMessageType() == null) {
+            return;
+        }
+        switch (message.getMessageType()) {
+            case USER -> user = message;
+            case ASSISTANT -> assistant = message;
+            case RECOMMENDATIONS -> recommendations = message;
+        }
+    }
+
+    /**
+     * 仅在对应位置为空时放入（合并写缓冲中尚未落库的消息）
+     */
+    public void acceptIfAbsent(ChatMessage message) {
+        if (message == null || message.getMessageType() == null) {
+            return;
+        }
+        switch (message.getMessageType()) {
+            case USER -> user = user != null ? user : message;
+            case ASSISTANT -> assistant = assistant != null ? assistant : message;
+            case RECOMMENDATIONS -> recommendations = recommendations != null ? recommendations : message;
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.cloud.ai.chat.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+/**
+ * @author shengjie.tang
+ * @version 1.0.0
+ * @description: 文档入库任务 - 上传后异步解析、分块、生成向量，状态保存在Redis中，任意实例可查询进度
+ * @date 2025/11/27 15:00
+ */
+@Data
+@Builder(toBuilder = true)
+@NoArgsConstructor
+@AllArgsConstructor
+public class DocumentIngestJob implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    public enum Status {
+        /**
+         * 排队中
+         */
+        PENDING,
+        /**
+         * 解析、写入中
+         */
+        RUNNING,
+        /**
+         * 已完成
+         */
+        COMPLETED,
+        /**
+         * 失败
+         */
+        FAILED
+    }
+
+    private String jobId;
+
+    private Status status;
+
+    private String fileName;
+
+    private Long fileSize;
+
+    private String documentType;
+
+    /**
+     * 已解析出的分块数
+     */
+    private long parsedChunks;
+
+    /**
+     * 已写入向量库的分块数
+     */
+    private long storedChunks;
+
+    /**
+     * 解析出的文本字符数（完成后才有）
+     */
+    private Long contentLength;
+
+    /**
+     * 写入速度（分块/秒）
+     */
+    private Double throughput;
+
+    /**
+     * 失败原因
+     */
+    private String error;
+
+    /**
+     * 提交、开始、结束时间（毫秒时间戳）
+     */
+    private Long submittedAt;
+
+    private Long startedAt;
+
+    private Long finishedAt;
+
+    /**
+     * 执行任务的实例
+     */
+    private String owner;
+
+    /**
+     * 执行实例最近一次心跳时间（毫秒时间戳），排队或执行中的任务心跳超时视为执行实例已停止
+     */
+    private Long heartbeatAt;
+}
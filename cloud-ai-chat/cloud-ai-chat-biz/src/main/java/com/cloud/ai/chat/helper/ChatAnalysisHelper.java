@@ -1,10 +1,6 @@
 package com.cloud.ai.chat.helper;
 
 
-import com.cloud.ai.chat.domain.ChatTags;
-import com.cloud.ai.chat.domain.UserTags;
-import com.cloud.ai.chat.repository.ChatTagsRepository;
-import com.cloud.ai.chat.repository.UserTagsRepository;
 import com.cloud.ai.chat.service.impl.AITagExtractionService;
 import com.cloud.ai.chat.service.impl.UserTagService;
 import com.cloud.ai.chat.util.ValidationUtils;
@@ -12,9 +8,9 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
-import java.math.BigDecimal;
 import java.util.List;
-import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
 
 /**
  * 聊天分析助手类
@@ -29,8 +25,6 @@ import java.util.Optional;
 @Slf4j
 public class ChatAnalysisHelper {
 
-    private final ChatTagsRepository chatTagsRepository;
-    private final UserTagsRepository userTagsRepository;
     private final UserTagService userTagService;
     private final AITagExtractionService aiTagExtractionService;
 
@@ -50,77 +44,17 @@ public class ChatAnalysisHelper {
         // 2. 获取用户基础画像标签
         List<String> profileTags = userTagService.getProfileTagNames(userId);
 
-        // 3. 保存聊天标签
+        // 3. 清洗、校验并去重（有序，保证并发写入时按相同顺序加行锁）
+        Set<String> tagNames = new TreeSet<>();
         for (String tagName : chatTags) {
             String cleanTagName = ValidationUtils.cleanTagName(tagName);
             if (cleanTagName != null) {
                 ValidationUtils.validateTagName(cleanTagName);
-                saveChatTag(userId, sessionId, cleanTagName);
+                tagNames.add(cleanTagName);
             }
         }
 
-        // 4. 更新用户标签
-        for (String chatTag : chatTags) {
-            String cleanTagName = ValidationUtils.cleanTagName(chatTag);
-            if (cleanTagName != null) {
-                updateUserTag(userId, cleanTagName, profileTags.contains(cleanTagName));
-            }
-        }
-    }
-
-    /**
-     * 保存聊天标签
-     */
-    private void saveChatTag(Long userId, String sessionId, String tagName) {
-        Optional<ChatTags> existingTag = chatTagsRepository.findByUserIdAndTagName(userId, tagName)
-                .stream()
-                .filter(tag -> sessionId.equals(tag.getSessionId()))
-                .findFirst();
-
-        if (existingTag.isPresent()) {
-            // 更新现有标签
-            ChatTags tag = existingTag.get();
-            tag.setFrequency(tag.getFrequency() + 1);
-            chatTagsRepository.save(tag);
-        } else {
-            // 创建新标签
-            ChatTags tag = new ChatTags();
-            tag.setUserId(userId);
-            tag.setSessionId(sessionId);
-            tag.setTagName(tagName);
-            tag.setFrequency(1);
-            tag.setSourceType("CHAT");
-            chatTagsRepository.save(tag);
-        }
-    }
-
-    /**
-     * 更新用户标签（核心算法）
-     */
-    private void updateUserTag(Long userId, String tagName, boolean isOverlap) {
-        Optional<UserTags> existingTag = userTagsRepository.findByUserIdAndTagName(userId, tagName);
-
-        if (existingTag.isPresent()) {
-            // 更新现有标签
-            UserTags tag = existingTag.get();
-            userTagService.incrementChatWeight(tag, isOverlap);
-
-            // 如果是重叠标签，增加融合权重
-            if (isOverlap) {
-                userTagService.setFusionWeight(tag, tag.getFusionWeight().add(BigDecimal.ONE));
-            }
-
-            userTagsRepository.save(tag);
-        } else {
-            // 创建新标签
-            UserTags tag = new UserTags();
-            tag.setUserId(userId);
-            tag.setTagName(tagName);
-            tag.setSourceType("CHAT");
-            tag.setChatWeight(BigDecimal.ONE);
-            tag.setFusionWeight(isOverlap ? BigDecimal.ONE : BigDecimal.ZERO);
-            userTagService.calculateTotalWeight(tag);
-            userTagsRepository.save(tag);
-        }
+        // 4. 批量写入聊天标签和用户标签
+        userTagService.applyChatTags(userId, sessionId, tagNames, profileTags);
     }
 }
@@ -7,7 +7,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.chat.client.advisor.MessageChatMemoryAdvisor;
 import org.springframework.ai.chat.client.advisor.SimpleLoggerAdvisor;
-import org.springframework.ai.chat.memory.MessageWindowChatMemory;
+import org.springframework.ai.chat.memory.ChatMemory;
 import org.springframework.ai.tool.ToolCallbackProvider;
 
 @Slf4j
@@ -21,8 +21,7 @@ public class ChatClientHelper {
             ToolCallbackProvider toolCallbackProvider,
             String providerName) {
 
-        MessageWindowChatMemory memory = chatMemoryFactory.chatMemory(
-                chatMemoryFactory.redisChatMemoryRepository());
+        ChatMemory memory = chatMemoryFactory.modelChatMemory(modelName);
         String systemPrompt = promptLoader.loadSystemPrompt();
 
         var builder = chatClientBuilder
@@ -55,8 +54,7 @@ public class ChatClientHelper {
             PromptLoader promptLoader,
             String providerName) {
 
-        MessageWindowChatMemory memory = chatMemoryFactory.chatMemory(
-                chatMemoryFactory.redisChatMemoryRepository());
+        ChatMemory memory = chatMemoryFactory.modelChatMemory(modelName);
         String systemPrompt = promptLoader.loadSystemPrompt();
 
         ChatClient chatClient = chatClientBuilder
@@ -4,13 +4,12 @@ import com.cloud.ai.chat.mcp.tools.office.PersonalizedRecommendationMcpTool;
 import com.cloud.ai.chat.service.impl.ChatMessageService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Component;
 
 import java.util.List;
 
 /**
- * 聊天建议助手 - 处理异步话题推荐生成
+ * 聊天建议助手 - 处理话题推荐生成（由对话后处理队列异步调度）
  *
  * @author shengjie.tang
  */
@@ -23,21 +22,17 @@ public class ChatSuggestionHelper {
     private final ChatMessageService chatMessageService;
 
     /**
-     * 异步生成话题建议
+     * 生成话题建议并保存
+     * 异常直接抛出，由对话后处理队列负责重试
      *
      * @param query      用户查询
      * @param sessionId  会话ID
      * @param dialogueId 对话ID
      * @param userId     用户ID
      */
-    @Async
-    public void asyncCreateSuggestion(String query, String sessionId, String dialogueId, Long userId) {
-        try {
-            List<String> suggestFollowUpTopics = personalizedRecommendationMcpTool.suggestFollowUpTopics(query);
-            chatMessageService.saveRecommendationMessage(sessionId, dialogueId, userId, suggestFollowUpTopics);
-            log.debug("异步话题建议生成完成，sessionId: {}, dialogueId: {}", sessionId, dialogueId);
-        } catch (Exception e) {
-            log.error("异步生成话题建议失败，sessionId: {}, dialogueId: {}", sessionId, dialogueId, e);
-        }
+    public void createSuggestion(String query, String sessionId, String dialogueId, Long userId) {
+        List<String> suggestFollowUpTopics = personalizedRecommendationMcpTool.suggestFollowUpTopics(query);
+        chatMessageService.saveRecommendationMessage(sessionId, dialogueId, userId, suggestFollowUpTopics);
+        log.debug("话题建议生成完成，sessionId: {}, dialogueId: {}", sessionId, dialogueId);
     }
 }
@@ -0,0 +1,111 @@
+package com.cloud.ai.chat.memory;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * @author shengjie.tang
+ * @version 1.0.0
+ * @description: 对话记忆配置 - 按模型的token预算（记忆窗口、检索/OCR上下文）与滚动摘要
+ * @date 2025/11/23 15:00
+ */
+@Component
+@ConfigurationProperties(prefix = "ai.chat.memory")
+@Data
+public class ChatMemoryProperties {
+
+    /**
+     * 记忆窗口最大消息数（token预算之外的硬上限）
+     */
+    private int maxMessages = 40;
+
+    /**
+     * 记忆辅助键（近缓存版本号、滚动摘要）的过期天数，每次写入时续期
+     */
+    private int expireDays = 30;
+
+    /**
+     * 未单独配置的模型使用的token预算
+     */
+    private int defaultTokenBudget = 3000;
+
+    /**
+     * 按模型名称的token预算（模型名 -> token数）
+     */
+    private Map<String, Integer> tokenBudgets = new HashMap<>();
+
+    /**
+     * 未单独配置的模型的检索/OCR上下文token预算
+     */
+    private int defaultContextTokenBudget = 2000;
+
+    /**
+     * 按模型名称的检索/OCR上下文token预算（模型名 -> token数）
+     */
+    private Map<String, Integer> contextTokenBudgets = new HashMap<>();
+
+    /**
+     * 上下文装填参数
+     */
+    private ContextPacking contextPacking = new ContextPacking();
+
+    /**
+     * 生成滚动摘要使用的模型
+     */
+    private String summaryModel = "qwen-turbo";
+
+    /**
+     * 滚动摘要最大字数
+     */
+    private int summaryMaxChars = 500;
+
+    /**
+     * 获取模型的token预算
+     */
+    public int tokenBudget(String modelName) {
+        if (modelName == null) {
+            return defaultTokenBudget;
+        }
+        return tokenBudgets.getOrDefault(modelName, defaultTokenBudget);
+    }
+
+    /**
+     * 获取模型的检索/OCR上下文token预算
+     */
+    public int contextTokenBudget(String modelName) {
+        if (modelName == null) {
+            return defaultContextTokenBudget;
+        }
+        return contextTokenBudgets.getOrDefault(modelName, defaultContextTokenBudget);
+    }
+
+    @Data
+    public static class ContextPacking {
+
+        private boolean enabled = true;
+
+        /**
+         * MMR相关性权重（0~1），越小越偏向多样性
+         */
+        private double mmrLambda = 0.7;
+
+        /**
+         * 与已选段落的向量相似度达到该值视为重复，直接丢弃
+         */
+        private double duplicateSimilarity = 0.95;
+
+        /**
+         * OCR文字最多占用的预算比例，其余留给检索文档
+         */
+        private double ocrShare = 0.5;
+
+        /**
+         * 相邻分块首尾重叠超过该字符数时去掉重叠部分
+         */
+        private int minOverlapChars = 20;
+    }
+}
@@ -0,0 +1,139 @@
+package com.cloud.ai.chat.memory;
+
+import com.alibaba.cloud.ai.dashscope.chat.DashScopeChatOptions;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RBucket;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.MessageType;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * @author shengjie.tang
+ * @version 1.0.0
+ * @description: 对话记忆滚动摘要
+ * <p>
+ * 超出token预算被移出记忆窗口的消息，在后台线程池中与已有摘要合并为新的摘要，不占用请求链路。
+ * 同一会话的摘要任务按提交顺序串行执行，摘要保存在Redis中，多实例共享，每次更新时续期（expire-days）。
+ * @date 2025/11/23 15:00
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ChatMemorySummarizer {
+
+    private static final String SUMMARY_KEY_PREFIX = "chat:memory:summary:";
+
+    private final ChatClient.Builder chatClientBuilder;
+    private final RedissonClient redissonClient;
+    private final ThreadPoolTaskExecutor chatSummaryExecutor;
+    private final ChatMemoryProperties chatMemoryProperties;
+
+    /**
+     * 每个会话最后一个摘要任务，用于串行化同一会话的摘要更新
+     */
+    private final ConcurrentMap<String, CompletableFuture<Void>> tails = new ConcurrentHashMap<>();
+
+    /**
+     * 摘要专用ChatClient（不挂载记忆advisor，避免摘要请求写入对话记忆）
+     */
+    private ChatClient summaryClient;
+
+    @PostConstruct
+    public void init() {
+        this.summaryClient = chatClientBuilder
+                .defaultOptions(DashScopeChatOptions.builder()
+                        .withModel(chatMemoryProperties.getSummaryModel())
+                        .build())
+                .build();
+    }
+
+    /**
+     * 获取会话的滚动摘要
+     */
+    public String getSummary(String conversationId) {
+        try {
+            return summaryBucket(conversationId).get();
+        } catch (Exception e) {
+            log.warn("获取对话摘要失败，conversationId: {}", conversationId, e);
+            return null;
+        }
+    }
+
+    /**
+     * 提交被移出窗口的消息，后台合并到滚动摘要
+     */
+    public void submit(String conversationId, List<Message> evicted) {
+        if (evicted.isEmpty()) {
+            return;
+        }
+        CompletableFuture<Void> next = tails.compute(conversationId, (key, tail) ->
+                (tail == null ? CompletableFuture.<Void>completedFuture(null) : tail)
+                        .handleAsync((result, error) -> {
+                            summarize(key, evicted);
+                            return null;
+                        }, chatSummaryExecutor));
+        next.whenComplete((result, error) -> {
+            if (error != null) {
+                log.warn("对话摘要任务未执行，conversationId: {}, 丢弃消息数: {}", conversationId, evicted.size(), error);
+            }
+            tails.remove(conversationId, next);
+        });
+    }
+
+    /**
+     * 删除会话的摘要
+     */
+    public void clear(String conversationId) {
+        summaryBucket(conversationId).delete();
+    }
+
+    private void summarize(String conversationId, List<Message> evicted) {
+        try {
+            String previous = getSummary(conversationId);
+            String prompt = buildPrompt(previous, evicted);
+            String summary = summaryClient.prompt(prompt).call().content();
+            if (StringUtils.hasText(summary)) {
+                summaryBucket(conversationId).set(summary.trim(), Duration.ofDays(chatMemoryProperties.getExpireDays()));
+                log.debug("对话摘要已更新，conversationId: {}, 合并消息数: {}", conversationId, evicted.size());
+            }
+        } catch (Exception e) {
+            log.error("生成对话摘要失败，conversationId: {}", conversationId, e);
+        }
+    }
+
+    private String buildPrompt(String previous, List<Message> evicted) {
+        StringBuilder prompt = new StringBuilder()
+                .append("请将【已有摘要】和【新增对话】合并为一段不超过")
+                .append(chatMemoryProperties.getSummaryMaxChars())
+                .append("字的对话摘要。要求：\n")
+                .append("1. 保留用户的关键信息、偏好、已确认的结论和尚未解决的问题\n")
+                .append("2. 省略寒暄和重复内容\n")
+                .append("3. 直接输出摘要，不要额外解释\n\n")
+                .append("【已有摘要】\n")
+                .append(StringUtils.hasText(previous) ? previous : "无")
+                .append("\n\n【新增对话】\n");
+        for (Message message : evicted) {
+            prompt.append(message.getMessageType() == MessageType.USER ? "用户：" : "AI：")
+                    .append(message.getText())
+                    .append('\n');
+        }
+        return prompt.toString();
+    }
+
+    private RBucket<String> summaryBucket(String conversationId) {
+        return redissonClient.getBucket(SUMMARY_KEY_PREFIX + conversationId, StringCodec.INSTANCE);
+    }
+}
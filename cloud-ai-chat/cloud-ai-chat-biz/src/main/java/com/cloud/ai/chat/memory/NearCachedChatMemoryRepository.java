@@ -0,0 +1,111 @@
+package com.cloud.ai.chat.memory;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.redisson.api.RBucket;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.ai.chat.memory.ChatMemoryRepository;
+import org.springframework.ai.chat.messages.Message;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * @author shengjie.tang
+ * @version 1.0.0
+ * @description: 带本地近缓存的对话记忆仓库
+ * <p>
+ * 在Redis记忆仓库前增加有界的本地缓存，同一节点上连续的对话轮次不再从Redis读取并反序列化整个记忆窗口。
+ * <p>
+ * 一致性：每次写入/删除都会在Redis中生成新的随机版本号，读取时先取版本号（一个短字符串），
+ * 与本地缓存的版本一致才使用本地数据，否则回源读取。会话切换到其它节点写入后，
+ * 原节点的版本号不再匹配，自动失效。
+ * 注意：先读版本号再读数据，数据只可能比版本号新，不会把旧数据标记为新版本；
+ * 同一会话在多个节点同时写入本身就是后写覆盖，此时本地窗口最长保留到下一次写入或过期
+ * 版本号每次写入时续期，长期不活跃的会话版本号过期后只会多一次回源读取
+ * @date 2025/11/23 10:00
+ */
+public class NearCachedChatMemoryRepository implements ChatMemoryRepository {
+
+    private static final String VERSION_KEY_PREFIX = "chat:memory:version:";
+    private static final String NEAR_CACHE_METRIC = "ai.chat.memory.near-cache";
+
+    private final ChatMemoryRepository delegate;
+    private final RedissonClient redissonClient;
+    private final MeterRegistry meterRegistry;
+    private final Cache<String, Window> windows;
+    private final Duration versionTtl;
+
+    public NearCachedChatMemoryRepository(ChatMemoryRepository delegate, RedissonClient redissonClient,
+                                          MeterRegistry meterRegistry, long maximumSize, Duration expireAfterAccess,
+                                          Duration versionTtl) {
+        this.delegate = delegate;
+        this.redissonClient = redissonClient;
+        this.meterRegistry = meterRegistry;
+        this.versionTtl = versionTtl;
+        this.windows = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterAccess(expireAfterAccess)
+                .build();
+    }
+
+    @Override
+    public List<String> findConversationIds() {
+        return delegate.findConversationIds();
+    }
+
+    @Override
+    public List<Message> findByConversationId(String conversationId) {
+        String version = versionBucket(conversationId).get();
+        Window cached = windows.getIfPresent(conversationId);
+        if (version != null && cached != null && version.equals(cached.version())) {
+            meterRegistry.counter(NEAR_CACHE_METRIC, "result", "hit").increment();
+            return new ArrayList<>(cached.messages());
+        }
+
+        meterRegistry.counter(NEAR_CACHE_METRIC, "result", "miss").increment();
+        List<Message> messages = delegate.findByConversationId(conversationId);
+        if (version != null) {
+            windows.put(conversationId, new Window(version, List.copyOf(messages)));
+        } else {
+            // 没有版本号（历史数据或已删除）时不缓存，等下一次写入生成版本号
+            windows.invalidate(conversationId);
+        }
+        return messages;
+    }
+
+    @Override
+    public void saveAll(String conversationId, List<Message> messages) {
+        delegate.saveAll(conversationId, messages);
+        String version = UUID.randomUUID().toString();
+        try {
+            versionBucket(conversationId).set(version, versionTtl);
+            windows.put(conversationId, new Window(version, List.copyOf(messages)));
+        } catch (Exception e) {
+            // 版本号写入失败时不能保留本地数据，否则其它节点的写入无法使其失效
+            windows.invalidate(conversationId);
+            throw e;
+        }
+    }
+
+    @Override
+    public void deleteByConversationId(String conversationId) {
+        windows.invalidate(conversationId);
+        delegate.deleteByConversationId(conversationId);
+        versionBucket(conversationId).delete();
+    }
+
+    private RBucket<String> versionBucket(String conversationId) {
+        return redissonClient.getBucket(VERSION_KEY_PREFIX + conversationId, StringCodec.INSTANCE);
+    }
+
+    /**
+     * 本地缓存的记忆窗口
+     */
+    private record Window(String version, List<Message> messages) {
+    }
+}
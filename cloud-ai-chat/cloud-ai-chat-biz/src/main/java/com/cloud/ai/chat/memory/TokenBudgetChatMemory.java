@@ -0,0 +1,164 @@
+package com.cloud.ai.chat.memory;
+
+import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.ai.chat.memory.ChatMemoryRepository;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.MessageType;
+import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.util.StringUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @author shengjie.tang
+ * @version 1.0.0
+ * @description: 按token预算裁剪的对话记忆
+ * <p>
+ * 1. 写入时从最新的消息向前累计估算token，超出预算（或超过最大消息数）的较早轮次移出窗口，
+ *    移出的消息交给后台合并为滚动摘要
+ * 2. 读取时将摘要放在窗口之前，窗口按预算扣除摘要后的余量再次裁剪（切换到预算更小的模型时生效）
+ * 3. 裁剪按轮次对齐，窗口总是从用户消息开始，且始终保留最新一轮
+ * @date 2025/11/23 15:00
+ */
+public class TokenBudgetChatMemory implements ChatMemory {
+
+    private static final String SUMMARY_PREFIX = "以下是我们之前对话的摘要，请在回答时参考：\n";
+    private static final String SUMMARY_ACK = "好的，我会结合之前的对话内容继续回答。";
+
+    private final ChatMemoryRepository chatMemoryRepository;
+    private final ChatMemorySummarizer summarizer;
+    private final int tokenBudget;
+    private final int maxMessages;
+
+    public TokenBudgetChatMemory(ChatMemoryRepository chatMemoryRepository, ChatMemorySummarizer summarizer,
+                                 int tokenBudget, int maxMessages) {
+        this.chatMemoryRepository = chatMemoryRepository;
+        this.summarizer = summarizer;
+        this.tokenBudget = tokenBudget;
+        this.maxMessages = maxMessages;
+    }
+
+    @Override
+    public void add(String conversationId, List<Message> messages) {
+        List<Message> memory = merge(chatMemoryRepository.findByConversationId(conversationId), messages);
+
+        int cut = cutIndex(memory, tokenBudget);
+        List<Message> kept = new ArrayList<>(memory.size() - cut);
+        List<Message> evicted = new ArrayList<>(cut);
+        for (int i = 0; i < memory.size(); i++) {
+            Message message = memory.get(i);
+            if (i >= cut || message instanceof SystemMessage) {
+                kept.add(message);
+            } else {
+                evicted.add(message);
+            }
+        }
+
+        chatMemoryRepository.saveAll(conversationId, kept);
+        summarizer.submit(conversationId, evicted);
+    }
+
+    @Override
+    public List<Message> get(String conversationId) {
+        List<Message> memory = chatMemoryRepository.findByConversationId(conversationId);
+        String summary = summarizer.getSummary(conversationId);
+        if (!StringUtils.hasText(summary)) {
+            return window(memory, tokenBudget);
+        }
+
+        UserMessage summaryMessage = new UserMessage(SUMMARY_PREFIX + summary);
+        AssistantMessage ackMessage = new AssistantMessage(SUMMARY_ACK);
+        int budget = tokenBudget - TokenEstimator.estimate(summaryMessage) - TokenEstimator.estimate(ackMessage);
+
+        List<Message> result = new ArrayList<>(memory.size() + 2);
+        result.add(summaryMessage);
+        result.add(ackMessage);
+        result.addAll(window(memory, budget));
+        return result;
+    }
+
+    @Override
+    public void clear(String conversationId) {
+        chatMemoryRepository.deleteByConversationId(conversationId);
+        summarizer.clear(conversationId);
+    }
+
+    /**
+     * 合并新消息，新的系统消息替换旧的系统消息（与MessageWindowChatMemory一致）
+     */
+    private List<Message> merge(List<Message> memory, List<Message> newMessages) {
+        boolean hasNewSystemMessage = newMessages.stream()
+                .anyMatch(message -> message instanceof SystemMessage && !memory.contains(message));
+
+        List<Message> merged = new ArrayList<>(memory.size() + newMessages.size());
+        for (Message message : memory) {
+            if (!hasNewSystemMessage || !(message instanceof SystemMessage)) {
+                merged.add(message);
+            }
+        }
+        for (Message message : newMessages) {
+            if (!(message instanceof SystemMessage) || hasNewSystemMessage) {
+                merged.add(message);
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * 按预算裁剪后的窗口（只读，不触发摘要）
+     */
+    private List<Message> window(List<Message> memory, int budget) {
+        int cut = cutIndex(memory, budget);
+        if (cut == 0) {
+            return memory;
+        }
+        List<Message> window = new ArrayList<>(memory.size() - cut);
+        for (int i = 0; i < memory.size(); i++) {
+            if (i >= cut || memory.get(i) instanceof SystemMessage) {
+                window.add(memory.get(i));
+            }
+        }
+        return window;
+    }
+
+    /**
+     * 计算窗口起始位置：从最新消息向前累计，超出预算或消息数上限处截断，
+     * 再向后对齐到下一条用户消息；最新一轮始终保留
+     */
+    private int cutIndex(List<Message> memory, int budget) {
+        int tokens = 0;
+        int count = 0;
+        int cut = 0;
+        for (int i = memory.size() - 1; i >= 0; i--) {
+            Message message = memory.get(i);
+            if (message instanceof SystemMessage) {
+                tokens += TokenEstimator.estimate(message);
+                continue;
+            }
+            tokens += TokenEstimator.estimate(message);
+            count++;
+            if (tokens > budget || count > maxMessages) {
+                cut = i + 1;
+                break;
+            }
+        }
+        if (cut == 0) {
+            return 0;
+        }
+
+        int lastUser = -1;
+        for (int i = memory.size() - 1; i >= 0; i--) {
+            if (memory.get(i).getMessageType() == MessageType.USER) {
+                lastUser = i;
+                break;
+            }
+        }
+        while (cut < memory.size() && memory.get(cut).getMessageType() != MessageType.USER) {
+            cut++;
+        }
+        return lastUser >= 0 ? Math.min(cut, lastUser) : cut;
+    }
+}
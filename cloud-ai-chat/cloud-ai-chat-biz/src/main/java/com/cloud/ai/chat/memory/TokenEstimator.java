@@ -0,0 +1,54 @@
+package com.cloud.ai.chat.memory;
+
+import org.springframework.ai.chat.messages.Message;
+
+/**
+ * @author shengjie.tang
+ * @version 1.0.0
+ * @description: 本地token估算
+ * <p>
+ * 按字符类别近似Qwen分词结果，单次遍历、不分配对象，用于记忆窗口裁剪：
+ * 1. 中日韩字符：约1个token/字
+ * 2. 英文字母、数字：约4个字符/token
+ * 3. 其它符号：约1个token/个，空白字符不计
+ * 每条消息另加固定开销（角色标记等）
+ * @date 2025/11/23 15:00
+ */
+public final class TokenEstimator {
+
+    /**
+     * 每条消息的固定开销
+     */
+    public static final int MESSAGE_OVERHEAD = 4;
+
+    private TokenEstimator() {
+    }
+
+    public static int estimate(Message message) {
+        return estimate(message.getText()) + MESSAGE_OVERHEAD;
+    }
+
+    public static int estimate(CharSequence text) {
+        if (text == null) {
+            return 0;
+        }
+        int cjk = 0;
+        int alnum = 0;
+        int other = 0;
+        for (int i = 0, length = text.length(); i < length; i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                if (Character.isLetterOrDigit(c)) {
+                    alnum++;
+                } else if (!Character.isWhitespace(c)) {
+                    other++;
+                }
+            } else if (Character.isIdeographic(c) || Character.isLetter(c)) {
+                cjk++;
+            } else if (!Character.isWhitespace(c) && !Character.isLowSurrogate(c)) {
+                other++;
+            }
+        }
+        return cjk + (alnum + 3) / 4 + other;
+    }
+}
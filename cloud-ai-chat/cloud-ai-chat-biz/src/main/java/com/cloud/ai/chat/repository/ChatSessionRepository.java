@@ -2,12 +2,14 @@ package com.cloud.ai.chat.repository;
 
 
 import com.cloud.ai.chat.domain.ChatSession;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
@@ -24,6 +26,23 @@ public interface ChatSessionRepository extends JpaRepository<ChatSession, Long>
 
     List<ChatSession> findByUserIdOrderByUpdatedAtDesc(Long userId);
 
+    /**
+     * 会话列表第一页，按 (updated_at, id) 倒序
+     */
+    @Query("SELECT cs FROM ChatSession cs WHERE cs.userId = :userId ORDER BY cs.updatedAt DESC, cs.id DESC")
+    List<ChatSession> findFirstPage(@Param("userId") Long userId, Pageable limit);
+
+    /**
+     * 会话列表下一页（keyset分页），取游标 (updatedAt, id) 之后的会话
+     */
+    @Query("SELECT cs FROM ChatSession cs WHERE cs.userId = :userId " +
+            "AND (cs.updatedAt < :updatedAt OR (cs.updatedAt = :updatedAt AND cs.id < :id)) " +
+            "ORDER BY cs.updatedAt DESC, cs.id DESC")
+    List<ChatSession> findPageAfter(@Param("userId") Long userId,
+                                    @Param("updatedAt") LocalDateTime updatedAt,
+                                    @Param("id") Long id,
+                                    Pageable limit);
+
     @Modifying
     @Query("UPDATE ChatSession cs SET cs.messageCount = cs.messageCount + 1, cs.updatedAt = CURRENT_TIMESTAMP WHERE cs.sessionId = :sessionId")
     void incrementMessageCount(@Param("sessionId") String sessionId);
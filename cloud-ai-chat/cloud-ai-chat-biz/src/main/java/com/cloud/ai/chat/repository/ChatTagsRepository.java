@@ -15,7 +15,7 @@ import java.util.List;
  * @date 2025/10/14 14:45
  */
 @Repository
-public interface ChatTagsRepository extends JpaRepository<ChatTags, Long> {
+public interface ChatTagsRepository extends JpaRepository<ChatTags, Long>, ChatTagsRepositoryCustom {
 
     /**
      * 根据用户ID查找聊天标签
@@ -0,0 +1,22 @@
+package com.cloud.ai.chat.repository;
+
+import java.util.List;
+
+/**
+ * @author shengjie.tang
+ * @version 1.0.0
+ * @description: 聊天标签批量写入（原生SQL）
+ * @date 2025/11/24 10:00
+ */
+public interface ChatTagsRepositoryCustom {
+
+    /**
+     * 一条语句批量累加会话标签频率（INSERT ... ON CONFLICT DO UPDATE），
+     * 依赖 (user_id, session_id, tag_name) 唯一约束
+     *
+     * @param userId    用户ID
+     * @param sessionId 会话ID
+     * @param tagNames  标签名（已去重，按固定顺序排列以避免并发死锁）
+     */
+    void incrementSessionTags(Long userId, String sessionId, List<String> tagNames);
+}
@@ -0,0 +1,34 @@
+package com.cloud.ai.chat.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+
+/**
+ * @author shengjie.tang
+ * @version 1.0.0
+ * @description: 聊天标签批量写入实现
+ * @date 2025/11/24 10:00
+ */
+@RequiredArgsConstructor
+public class ChatTagsRepositoryCustomImpl implements ChatTagsRepositoryCustom {
+
+    private static final String INCREMENT_SESSION_TAGS_SQL = """
+            INSERT INTO chat_tags (user_id, session_id, tag_name, frequency, source_type, created_at)
+            SELECT ?, ?, t.tag_name, 1, 'CHAT', now()
+            FROM unnest(?::varchar[]) AS t(tag_name)
+            ON CONFLICT (user_id, session_id, tag_name) DO UPDATE SET
+                frequency = chat_tags.frequency + 1
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public void incrementSessionTags(Long userId, String sessionId, List<String> tagNames) {
+        if (tagNames.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.update(INCREMENT_SESSION_TAGS_SQL, userId, sessionId, tagNames.toArray(String[]::new));
+    }
+}
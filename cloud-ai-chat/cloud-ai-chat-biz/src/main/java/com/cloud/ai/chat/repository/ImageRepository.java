@@ -2,8 +2,10 @@ package com.cloud.ai.chat.repository;
 
 import com.cloud.ai.chat.domain.Image;
 import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -32,5 +34,12 @@ public interface ImageRepository extends MongoRepository<Image, String> {
      * 根据文件URL查找图片
      */
     Optional<Image> findByFileUrl(String fileUrl);
+
+    /**
+     * 根据文件URL批量查找图片OCR信息
+     * 只投影 file_url、ocr_text、ocr_status，其它字段为空
+     */
+    @Query(value = "{ 'file_url': { $in: ?0 } }", fields = "{ 'file_url': 1, 'ocr_text': 1, 'ocr_status': 1 }")
+    List<Image> findOcrByFileUrlIn(Collection<String> fileUrls);
 }
 
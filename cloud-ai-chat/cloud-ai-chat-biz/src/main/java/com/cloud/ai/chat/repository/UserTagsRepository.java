@@ -1,11 +1,14 @@
 package com.cloud.ai.chat.repository;
 
 import com.cloud.ai.chat.domain.UserTags;
+import com.cloud.common.redis.tag.UserTagStore;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -16,26 +19,79 @@ import java.util.Optional;
  * @date 2025/10/14 14:50
  */
 @Repository
-public interface UserTagsRepository extends JpaRepository<UserTags, Long> {
+public interface UserTagsRepository extends JpaRepository<UserTags, Long>, UserTagStore<UserTags>, UserTagsRepositoryCustom {
 
     /**
-     * 根据用户ID查找用户标签，按总权重倒序，返回前5个
+     * 当前周期（当月1号零点），原生查询的 :periodStart 参数
      */
-    List<UserTags> findTop5ByUserIdOrderByTotalWeightDesc(Long userId);
+    String PERIOD_START_PARAM = "CAST(:periodStart AS timestamp)";
 
     /**
-     * 根据用户ID和标签名查找
+     * 周期序号（年*12+月）
      */
-    Optional<UserTags> findByUserIdAndTagName(Long userId, String tagName);
+    String CURRENT_PERIOD = "(EXTRACT(YEAR FROM " + PERIOD_START_PARAM + ") * 12"
+            + " + EXTRACT(MONTH FROM " + PERIOD_START_PARAM + "))";
 
     /**
-     * 查找相似用户（基于共同标签）
+     * 标签权重所在周期的序号
      */
-    @Query("SELECT DISTINCT ut2.userId FROM UserTags ut1 " +
-            "JOIN UserTags ut2 ON ut1.tagName = ut2.tagName " +
-            "WHERE ut1.userId = :userId AND ut2.userId != :userId " +
-            "ORDER BY ut2.totalWeight DESC")
-    List<Long> findSimilarUsers(@Param("userId") Long userId);
+    String ANCHOR_PERIOD = "(EXTRACT(YEAR FROM COALESCE(user_tags.last_decayed_at, user_tags.created_at)) * 12"
+            + " + EXTRACT(MONTH FROM COALESCE(user_tags.last_decayed_at, user_tags.created_at)))";
+
+    /**
+     * 读取时的衰减系数：衰减因子的 经过月数 次方
+     * 注解只能引用常量，与 decayMultiplier(PERIOD_START_PARAM) 相同
+     */
+    String DECAY_MULTIPLIER = "POWER(" + UserTags.DECAY_FACTOR_SQL + ", CAST(GREATEST(0, "
+            + CURRENT_PERIOD + " - " + ANCHOR_PERIOD + ") AS int))";
+
+    /**
+     * 按当前周期衰减后的标签列（每个分量保留两位小数，总权重为分量之和，衰减基准时间为当前周期）
+     */
+    String DECAYED_COLUMNS = "user_tags.id, user_tags.user_id, user_tags.tag_name, user_tags.source_type, "
+            + "user_tags.last_updated, user_tags.created_at, "
+            + "ROUND(user_tags.base_weight * " + DECAY_MULTIPLIER + ", 2) AS base_weight, "
+            + "ROUND(user_tags.chat_weight * " + DECAY_MULTIPLIER + ", 2) AS chat_weight, "
+            + "ROUND(user_tags.fusion_weight * " + DECAY_MULTIPLIER + ", 2) AS fusion_weight, "
+            + "ROUND(user_tags.base_weight * " + DECAY_MULTIPLIER + ", 2)"
+            + " + ROUND(user_tags.chat_weight * " + DECAY_MULTIPLIER + ", 2)"
+            + " + ROUND(user_tags.fusion_weight * " + DECAY_MULTIPLIER + ", 2) AS total_weight, "
+            + "CAST(:periodStart AS timestamp) AS last_decayed_at";
+
+    /**
+     * 衰减系数表达式，当前周期由调用方给出（供非注解的SQL使用）
+     *
+     * @param periodStart 当前周期（当月1号零点）的SQL表达式
+     */
+    static String decayMultiplier(String periodStart) {
+        String currentPeriod = "(EXTRACT(YEAR FROM " + periodStart + ") * 12"
+                + " + EXTRACT(MONTH FROM " + periodStart + "))";
+        return "POWER(" + UserTags.DECAY_FACTOR_SQL + ", CAST(GREATEST(0, "
+                + currentPeriod + " - " + ANCHOR_PERIOD + ") AS int))";
+    }
+
+    /**
+     * 查找用户的全部标签（权重按当前周期衰减），用于重建Top-K索引
+     */
+    @Query(value = "SELECT " + DECAYED_COLUMNS + " FROM user_tags WHERE user_tags.user_id = :userId", nativeQuery = true)
+    List<UserTags> findDecayedByUserId(@Param("userId") Long userId, @Param("periodStart") LocalDateTime periodStart);
+
+    /**
+     * 按标签名批量查找用户标签（权重按当前周期衰减）
+     */
+    @Query(value = "SELECT " + DECAYED_COLUMNS + " FROM user_tags "
+            + "WHERE user_tags.user_id = :userId AND user_tags.tag_name IN (:tagNames)", nativeQuery = true)
+    List<UserTags> findDecayedByUserIdAndTagNameIn(@Param("userId") Long userId,
+                                                   @Param("tagNames") Collection<String> tagNames,
+                                                   @Param("periodStart") LocalDateTime periodStart);
+
+    /**
+     * 根据用户ID和标签名查找（权重按当前周期衰减）
+     */
+    @Query(value = "SELECT " + DECAYED_COLUMNS + " FROM user_tags "
+            + "WHERE user_tags.user_id = :userId AND user_tags.tag_name = :tagName", nativeQuery = true)
+    Optional<UserTags> findDecayedByUserIdAndTagName(@Param("userId") Long userId, @Param("tagName") String tagName,
+                                                     @Param("periodStart") LocalDateTime periodStart);
 
     /**
      * 统计用户标签总数
@@ -48,16 +104,25 @@ public interface UserTagsRepository extends JpaRepository<UserTags, Long> {
     void deleteByUserId(Long userId);
 
     /**
-     * 查找指定标签的所有用户
+     * 查找指定标签的所有用户（按衰减后的总权重倒序）
      */
-    List<UserTags> findByTagNameOrderByTotalWeightDesc(String tagName);
+    @Query(value = "SELECT " + DECAYED_COLUMNS + " FROM user_tags WHERE user_tags.tag_name = :tagName "
+            + "ORDER BY total_weight DESC, user_tags.id", nativeQuery = true)
+    List<UserTags> findByTagNameOrderByDecayedWeight(@Param("tagName") String tagName,
+                                                     @Param("periodStart") LocalDateTime periodStart);
 
     /**
-     * 查找热门标签（按用户数量排序）
+     * 按标签统计用户数和换算到基准周期的权重之和（全表聚合，只用于校准热门标签计数）
+     *
+     * @return [标签名, 用户数, 换算后的权重之和]
      */
-    @Query("SELECT ut.tagName, COUNT(ut.userId) as userCount " +
-            "FROM UserTags ut " +
-            "GROUP BY ut.tagName " +
-            "ORDER BY userCount DESC")
-    List<Object[]> findPopularTags();
+    @Query(value = "SELECT user_tags.tag_name, COUNT(*), "
+            + "SUM(user_tags.total_weight / POWER(" + UserTags.DECAY_FACTOR_SQL + ", " + ANCHOR_PERIOD + " - :basePeriod)) "
+            + "FROM user_tags GROUP BY user_tags.tag_name", nativeQuery = true)
+    List<Object[]> aggregateTagPopularity(@Param("basePeriod") int basePeriod);
+
+    @Override
+    default UserTags newTag() {
+        return new UserTags();
+    }
 }
@@ -0,0 +1,42 @@
+package com.cloud.ai.chat.repository;
+
+import com.cloud.ai.chat.domain.UserTags;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * @author shengjie.tang
+ * @version 1.0.0
+ * @description: 用户标签批量写入（原生SQL）
+ * @date 2025/11/24 10:00
+ */
+public interface UserTagsRepositoryCustom {
+
+    /**
+     * 一条语句批量累加一轮对话的聊天标签权重（INSERT ... ON CONFLICT DO UPDATE）
+     * <p>
+     * 新标签：chat_weight = 1，重叠时 fusion_weight = 1；
+     * 已有标签：先按当前周期物化衰减，再累加 chat_weight 1（重叠时累加 2），重叠时 fusion_weight 累加 1；
+     * total_weight 同步重算
+     *
+     * @param userId      用户ID
+     * @param tagNames    标签名（已去重，按固定顺序排列以避免并发死锁）
+     * @param overlaps    与tagNames一一对应，是否与画像标签重叠
+     * @param periodStart 当前衰减周期（当月1号零点）
+     * @return 更新后的用户标签（未纳入持久化上下文）
+     */
+    List<UserTags> upsertChatTagWeights(Long userId, List<String> tagNames, List<Boolean> overlaps,
+                                    LocalDateTime periodStart);
+
+    /**
+     * 按用户ID顺序流式读取全部标签的 (user_id, tag_name, 衰减后的总权重)，用于离线构建索引
+     * <p>
+     * 在只读事务中以游标分批读取，不会一次性加载全表
+     *
+     * @param periodStart 当前衰减周期（当月1号零点）
+     * @param handler     逐行回调，列：user_id, tag_name, weight
+     */
+    void streamDecayedWeights(LocalDateTime periodStart, RowCallbackHandler handler);
+}
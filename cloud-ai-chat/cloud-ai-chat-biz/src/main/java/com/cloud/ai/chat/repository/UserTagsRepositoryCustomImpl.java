@@ -0,0 +1,99 @@
+package com.cloud.ai.chat.repository;
+
+import com.cloud.ai.chat.domain.UserTags;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.BeanPropertyRowMapper;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * @author shengjie.tang
+ * @version 1.0.0
+ * @description: 用户标签批量写入实现
+ * <p>
+ * 标签数组通过unnest展开为一个结果集，整轮标签只执行一条语句；
+ * 行级冲突由ON CONFLICT在数据库内原子处理，同一用户并发的多轮对话不会丢失累加；
+ * last_updated取语句执行时的clock_timestamp()（而非事务开始时间的now()），同一行的更新按行锁顺序递增，作为标签索引的写入版本
+ * @date 2025/11/24 10:00
+ */
+@RequiredArgsConstructor
+public class UserTagsRepositoryCustomImpl implements UserTagsRepositoryCustom {
+
+    /**
+     * 已有行的衰减系数，当前周期取自待插入行的last_decayed_at
+     */
+    private static final String EXISTING_DECAY_MULTIPLIER = UserTagsRepository.decayMultiplier("EXCLUDED.last_decayed_at");
+
+    private static final String UPSERT_CHAT_TAG_WEIGHTS_SQL = """
+            INSERT INTO user_tags (user_id, tag_name, base_weight, chat_weight, fusion_weight, total_weight,
+                                   source_type, last_updated, last_decayed_at, created_at)
+            SELECT ?, t.tag_name, 0, 1, t.fusion, 1 + t.fusion, 'CHAT', clock_timestamp(), ?::timestamp, now()
+            FROM unnest(?::varchar[], ?::int4[]) AS t(tag_name, fusion)
+            ON CONFLICT (user_id, tag_name) DO UPDATE SET
+                base_weight     = ROUND(user_tags.base_weight * %1$s, 2),
+                chat_weight     = ROUND(user_tags.chat_weight * %1$s, 2) + 1 + EXCLUDED.fusion_weight,
+                fusion_weight   = ROUND(user_tags.fusion_weight * %1$s, 2) + EXCLUDED.fusion_weight,
+                total_weight    = ROUND(user_tags.base_weight * %1$s, 2)
+                                  + ROUND(user_tags.chat_weight * %1$s, 2) + 1 + EXCLUDED.fusion_weight
+                                  + ROUND(user_tags.fusion_weight * %1$s, 2) + EXCLUDED.fusion_weight,
+                last_decayed_at = EXCLUDED.last_decayed_at,
+                last_updated    = clock_timestamp()
+            RETURNING id, user_id, tag_name, base_weight, chat_weight, fusion_weight, total_weight,
+                      source_type, last_updated, last_decayed_at, created_at
+            """.formatted(EXISTING_DECAY_MULTIPLIER);
+
+    private static final String STREAM_DECAYED_WEIGHTS_SQL = """
+            WITH p AS (SELECT CAST(? AS timestamp) AS period_start)
+            SELECT user_tags.user_id, user_tags.tag_name,
+                   user_tags.total_weight * %s AS weight
+            FROM user_tags, p
+            ORDER BY user_tags.user_id
+            """.formatted(UserTagsRepository.decayMultiplier("p.period_start"));
+
+    static {
+        // 注解查询使用的常量与表达式函数必须一致，否则启动失败
+        if (!UserTagsRepository.DECAY_MULTIPLIER.equals(
+                UserTagsRepository.decayMultiplier(UserTagsRepository.PERIOD_START_PARAM))) {
+            throw new IllegalStateException("UserTagsRepository.DECAY_MULTIPLIER 与 decayMultiplier() 不一致");
+        }
+    }
+
+    private static final int STREAM_FETCH_SIZE = 1000;
+
+    private static final RowMapper<UserTags> USER_TAGS_ROW_MAPPER = new BeanPropertyRowMapper<>(UserTags.class);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PlatformTransactionManager transactionManager;
+
+    @Override
+    public List<UserTags> upsertChatTagWeights(Long userId, List<String> tagNames, List<Boolean> overlaps,
+                                               LocalDateTime periodStart) {
+        if (tagNames.isEmpty()) {
+            return List.of();
+        }
+        Integer[] fusions = overlaps.stream().map(overlap -> overlap ? 1 : 0).toArray(Integer[]::new);
+        return jdbcTemplate.query(UPSERT_CHAT_TAG_WEIGHTS_SQL, USER_TAGS_ROW_MAPPER,
+                userId, Timestamp.valueOf(periodStart), tagNames.toArray(String[]::new), fusions);
+    }
+
+    @Override
+    public void streamDecayedWeights(LocalDateTime periodStart, RowCallbackHandler handler) {
+        // PostgreSQL只有在事务中才会按fetchSize使用游标分批读取
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setReadOnly(true);
+        transactionTemplate.executeWithoutResult(status -> jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(STREAM_DECAYED_WEIGHTS_SQL);
+            ps.setFetchSize(STREAM_FETCH_SIZE);
+            ps.setTimestamp(1, Timestamp.valueOf(periodStart));
+            return ps;
+        }, handler));
+    }
+}
@@ -0,0 +1,232 @@
+package com.cloud.ai.chat.retrieval;
+
+import com.cloud.ai.chat.document.DocumentIngestProperties;
+import com.cloud.ai.chat.memory.ChatMemoryProperties;
+import com.cloud.ai.chat.memory.TokenEstimator;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * @author shengjie.tang
+ * @version 1.0.0
+ * @description: 检索/OCR上下文装填
+ * <p>
+ * 按模型的上下文token预算（ChatMemoryProperties）装填提示词中的参考文档和OCR文字：
+ * 1. OCR文字去重后优先装填，最多占用ocr-share比例的预算，超出部分截断
+ * 2. 检索文档按MMR排序：相关性与多样性都用检索结果附带的查询向量和分块向量计算，不额外查库或调用向量模型；
+ *    与已选段落相似度达到duplicate-similarity的直接丢弃，相邻分块首尾重叠的部分去掉
+ * 3. 放不下的段落跳过，继续尝试后面较短的段落；取不到向量时按检索顺序装填，只做文本去重
+ * 装填前后的估算token数记录到 ai.chat.context.tokens 指标（tag: stage=raw/packed）
+ * @date 2025/11/30 10:00
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ContextPacker {
+
+    private static final String CONTEXT_TOKENS_METRIC = "ai.chat.context.tokens";
+
+    private final ChatMemoryProperties chatMemoryProperties;
+    private final DocumentIngestProperties documentIngestProperties;
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * @param query     用户原始问题（占用预算）
+     * @param retrieval 检索结果（文档按相关性降序）
+     * @param ocrTexts  每张图片的OCR文字
+     * @param modelName 本次使用的模型
+     */
+    public PackedContext pack(String query, RetrievalResult retrieval, List<String> ocrTexts, String modelName) {
+        ChatMemoryProperties.ContextPacking config = chatMemoryProperties.getContextPacking();
+        List<Document> documents = retrieval.documents();
+        List<String> texts = documents.stream().map(Document::getText).toList();
+        if (!config.isEnabled()) {
+            return new PackedContext(texts, ocrTexts);
+        }
+
+        int budget = Math.max(0, chatMemoryProperties.contextTokenBudget(modelName) - TokenEstimator.estimate(query));
+        int ocrBudget = documents.isEmpty() ? budget : (int) (budget * config.getOcrShare());
+        List<String> packedOcr = packOcr(ocrTexts, ocrBudget);
+        int remaining = budget - packedOcr.stream().mapToInt(TokenEstimator::estimate).sum();
+        List<String> passages = documents.isEmpty() ? List.of() : packDocuments(retrieval, remaining, config);
+
+        int rawTokens = tokens(texts) + tokens(ocrTexts);
+        int packedTokens = tokens(passages) + tokens(packedOcr);
+        meterRegistry.summary(CONTEXT_TOKENS_METRIC, "stage", "raw").record(rawTokens);
+        meterRegistry.summary(CONTEXT_TOKENS_METRIC, "stage", "packed").record(packedTokens);
+        log.debug("上下文装填完成 - 模型: {}, 预算: {}, 文档: {} -> {}, OCR: {} -> {}, token: {} -> {}", modelName, budget,
+                documents.size(), passages.size(), ocrTexts.size(), packedOcr.size(), rawTokens, packedTokens);
+        return new PackedContext(passages, packedOcr);
+    }
+
+    private List<String> packOcr(List<String> ocrTexts, int budget) {
+        List<String> packed = new ArrayList<>();
+        Set<String> seen = new LinkedHashSet<>();
+        int remaining = budget;
+        for (String text : ocrTexts) {
+            String normalized = text.strip().replaceAll("\\s+", " ");
+            if (normalized.isEmpty() || !seen.add(normalized) || remaining <= 0) {
+                continue;
+            }
+            String fitted = truncate(text.strip(), remaining);
+            if (!fitted.isEmpty()) {
+                packed.add(fitted);
+                remaining -= TokenEstimator.estimate(fitted);
+            }
+        }
+        return packed;
+    }
+
+    private List<String> packDocuments(RetrievalResult retrieval, int budget, ChatMemoryProperties.ContextPacking config) {
+        List<Document> documents = retrieval.documents();
+        float[] queryEmbedding = retrieval.queryEmbedding();
+
+        List<Candidate> candidates = new ArrayList<>();
+        Set<String> seen = new LinkedHashSet<>();
+        for (int i = 0; i < documents.size(); i++) {
+            Document document = documents.get(i);
+            if (document.getText() == null || !seen.add(document.getText().strip().replaceAll("\\s+", " "))) {
+                continue;
+            }
+            float[] embedding = queryEmbedding == null ? null : retrieval.embeddings().get(document.getId());
+            // 没有向量时按检索顺序给出递减的相关性
+            double relevance = embedding != null ? cosine(queryEmbedding, embedding) : -i;
+            candidates.add(new Candidate(document.getText(), embedding, relevance));
+        }
+
+        int maxOverlap = documentIngestProperties.getChunkOverlap();
+        List<Candidate> selected = new ArrayList<>();
+        List<String> passages = new ArrayList<>();
+        int remaining = budget;
+        while (!candidates.isEmpty() && remaining > 0) {
+            Candidate best = null;
+            double bestScore = Double.NEGATIVE_INFINITY;
+            double bestRedundancy = 0;
+            for (Candidate candidate : candidates) {
+                double redundancy = redundancy(candidate, selected);
+                double score = config.getMmrLambda() * candidate.relevance() - (1 - config.getMmrLambda()) * redundancy;
+                if (score > bestScore) {
+                    best = candidate;
+                    bestScore = score;
+                    bestRedundancy = redundancy;
+                }
+            }
+            candidates.remove(best);
+            if (bestRedundancy >= config.getDuplicateSimilarity()) {
+                continue;
+            }
+
+            String text = best.text().strip();
+            for (Candidate chosen : selected) {
+                text = trimOverlap(text, chosen.text().strip(), config.getMinOverlapChars(), maxOverlap);
+                if (text.isEmpty() || chosen.text().contains(text)) {
+                    text = "";
+                    break;
+                }
+            }
+            int tokens = TokenEstimator.estimate(text);
+            if (text.isEmpty() || tokens > remaining) {
+                continue;
+            }
+            selected.add(best);
+            passages.add(text);
+            remaining -= tokens;
+        }
+        return passages;
+    }
+
+    /**
+     * 与已选段落的最大相似度
+     */
+    private static double redundancy(Candidate candidate, List<Candidate> selected) {
+        if (candidate.embedding() == null) {
+            return 0;
+        }
+        double max = 0;
+        for (Candidate chosen : selected) {
+            if (chosen.embedding() != null) {
+                max = Math.max(max, cosine(candidate.embedding(), chosen.embedding()));
+            }
+        }
+        return max;
+    }
+
+    /**
+     * 去掉与已选段落首尾重叠的部分（相邻分块的重叠区）
+     */
+    static String trimOverlap(String text, String chosen, int minOverlap, int maxOverlap) {
+        int max = Math.min(maxOverlap, Math.min(text.length(), chosen.length()));
+        // 段落开头与已选段落结尾重叠
+        for (int length = max; length >= minOverlap; length--) {
+            if (chosen.regionMatches(chosen.length() - length, text, 0, length)) {
+                return text.substring(length).strip();
+            }
+        }
+        // 段落结尾与已选段落开头重叠
+        for (int length = max; length >= minOverlap; length--) {
+            if (text.regionMatches(text.length() - length, chosen, 0, length)) {
+                return text.substring(0, text.length() - length).strip();
+            }
+        }
+        return text;
+    }
+
+    /**
+     * 截断到token预算以内
+     */
+    static String truncate(String text, int budget) {
+        if (TokenEstimator.estimate(text) <= budget) {
+            return text;
+        }
+        int low = 0;
+        int high = text.length();
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (TokenEstimator.estimate(text.subSequence(0, mid)) <= budget) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low == 0 ? "" : text.substring(0, low) + "…";
+    }
+
+    private static double cosine(float[] a, float[] b) {
+        if (a.length != b.length) {
+            return 0;
+        }
+        double dot = 0;
+        double normA = 0;
+        double normB = 0;
+        for (int i = 0; i < a.length; i++) {
+            dot += a[i] * b[i];
+            normA += a[i] * a[i];
+            normB += b[i] * b[i];
+        }
+        return normA == 0 || normB == 0 ? 0 : dot / Math.sqrt(normA * normB);
+    }
+
+    private static int tokens(List<String> texts) {
+        return texts.stream().mapToInt(TokenEstimator::estimate).sum();
+    }
+
+    private record Candidate(String text, float[] embedding, double relevance) {
+    }
+
+    /**
+     * 装填结果
+     *
+     * @param passages 装入提示词的参考文档段落，按装填顺序
+     * @param ocrTexts 装入提示词的OCR文字
+     */
+    public record PackedContext(List<String> passages, List<String> ocrTexts) {
+    }
+}
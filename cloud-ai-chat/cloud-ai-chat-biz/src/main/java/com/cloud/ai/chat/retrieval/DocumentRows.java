@@ -0,0 +1,102 @@
+package com.cloud.ai.chat.retrieval;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.sql.Array;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @author shengjie.tang
+ * @version 1.0.0
+ * @description: 向量库表的行映射（id、content、metadata，以及 embedding::real[] AS embedding_values）
+ * @date 2025/11/29 15:00
+ */
+@Slf4j
+final class DocumentRows {
+
+    private static final TypeReference<Map<String, Object>> METADATA_TYPE = new TypeReference<>() {
+    };
+
+    private DocumentRows() {
+    }
+
+    /**
+     * 向量检索结果：metadata中附带distance，score = 1 - distance
+     */
+    static RowMapper<Row> byDistance(ObjectMapper objectMapper) {
+        return (rs, rowNum) -> {
+            double distance = rs.getDouble("distance");
+            Map<String, Object> metadata = parseMetadata(objectMapper, rs.getString("metadata"));
+            metadata.put("distance", distance);
+            return new Row(Document.builder()
+                    .id(rs.getString("id"))
+                    .text(rs.getString("content"))
+                    .metadata(metadata)
+                    .score(1 - distance)
+                    .build(), embedding(rs));
+        };
+    }
+
+    /**
+     * 全文检索结果：score为ts_rank_cd
+     */
+    static RowMapper<Row> byRank(ObjectMapper objectMapper) {
+        return (rs, rowNum) -> new Row(Document.builder()
+                .id(rs.getString("id"))
+                .text(rs.getString("content"))
+                .metadata(parseMetadata(objectMapper, rs.getString("metadata")))
+                .score(rs.getDouble("rank"))
+                .build(), embedding(rs));
+    }
+
+    static RetrievalResult toResult(List<Row> rows, float[] queryEmbedding) {
+        Map<String, float[]> embeddings = new LinkedHashMap<>();
+        for (Row row : rows) {
+            if (row.embedding() != null) {
+                embeddings.put(row.document().getId(), row.embedding());
+            }
+        }
+        return new RetrievalResult(rows.stream().map(Row::document).toList(), queryEmbedding, embeddings);
+    }
+
+    private static float[] embedding(ResultSet rs) throws SQLException {
+        Array array = rs.getArray("embedding_values");
+        if (array == null) {
+            return null;
+        }
+        Float[] values = (Float[]) array.getArray();
+        float[] embedding = new float[values.length];
+        for (int i = 0; i < values.length; i++) {
+            embedding[i] = values[i];
+        }
+        return embedding;
+    }
+
+    private static Map<String, Object> parseMetadata(ObjectMapper objectMapper, String json) {
+        if (json == null) {
+            return new HashMap<>();
+        }
+        try {
+            return new HashMap<>(objectMapper.readValue(json, METADATA_TYPE));
+        } catch (JsonProcessingException e) {
+            log.warn("文档metadata解析失败: {}", json, e);
+            return new HashMap<>();
+        }
+    }
+
+    /**
+     * 一行检索结果及其分块向量
+     */
+    record Row(Document document, float[] embedding) {
+    }
+}
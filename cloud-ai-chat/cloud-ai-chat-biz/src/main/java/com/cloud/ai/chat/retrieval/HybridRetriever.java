@@ -0,0 +1,119 @@
+package com.cloud.ai.chat.retrieval;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * @author shengjie.tang
+ * @version 1.0.0
+ * @description: 混合检索 - 全文检索与向量检索并行执行，按倒数排名融合（RRF）取topK
+ * <p>
+ * 1. 全文检索提交到检索线程池，向量检索在当前线程执行，耗时取两路最大值
+ * 2. 两路各取候选，按 Σ 1 / (k + 排名) 融合：只在一路出现的精确命中（如型号、编码）也能进入结果，
+ *    不需要通过放大topK来兜底，上下文保持精简
+ * 3. 全文检索失败时降级为纯向量检索；相似度阈值只作用于向量检索
+ * 4. 返回文档的score为RRF分数，metadata中记录两路的排名（未命中为空）；结果附带向量检索的查询向量和两路返回的分块向量
+ * @date 2025/11/29 15:00
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class HybridRetriever {
+
+    private final VectorRetriever vectorRetriever;
+    private final LexicalRetriever lexicalRetriever;
+    private final VectorStoreProperties properties;
+    private final ThreadPoolTaskExecutor chatRetrievalExecutor;
+
+    public RetrievalResult search(String query, VectorSearchOptions options) {
+        VectorStoreProperties.Hybrid hybrid = properties.getHybrid();
+        if (!hybrid.isEnabled()) {
+            return vectorRetriever.search(query, options);
+        }
+        VectorStoreProperties.Search defaults = properties.getSearch();
+        int topK = Math.max(1, Math.min(options.topK() != null ? options.topK() : defaults.getTopK(), defaults.getMaxTopK()));
+        int candidates = Math.max(topK, hybrid.getCandidates());
+
+        CompletableFuture<RetrievalResult> lexicalFuture = CompletableFuture.supplyAsync(
+                () -> lexicalRetriever.search(query, candidates), chatRetrievalExecutor);
+        RetrievalResult vector = vectorRetriever.search(query,
+                new VectorSearchOptions(candidates, options.similarityThreshold(), options.searchEffort()));
+        RetrievalResult lexical;
+        try {
+            lexical = lexicalFuture.join();
+        } catch (CompletionException e) {
+            log.error("全文检索失败，降级为向量检索", e.getCause());
+            lexical = RetrievalResult.empty();
+        }
+        List<Document> documents = fuse(vector.documents(), lexical.documents(), hybrid.getRrfK(), topK);
+        Map<String, float[]> embeddings = new HashMap<>();
+        for (Document document : documents) {
+            float[] embedding = vector.embeddings().getOrDefault(document.getId(), lexical.embeddings().get(document.getId()));
+            if (embedding != null) {
+                embeddings.put(document.getId(), embedding);
+            }
+        }
+        return new RetrievalResult(documents, vector.queryEmbedding(), embeddings);
+    }
+
+    static List<Document> fuse(List<Document> vectorDocs, List<Document> lexicalDocs, int rrfK, int topK) {
+        Map<String, Fused> fused = new LinkedHashMap<>();
+        for (int i = 0; i < vectorDocs.size(); i++) {
+            Document document = vectorDocs.get(i);
+            fused.computeIfAbsent(document.getId(), id -> new Fused(document)).vectorRank = i + 1;
+        }
+        for (int i = 0; i < lexicalDocs.size(); i++) {
+            Document document = lexicalDocs.get(i);
+            fused.computeIfAbsent(document.getId(), id -> new Fused(document)).lexicalRank = i + 1;
+        }
+        fused.values().forEach(item -> item.score = rrf(item.vectorRank, rrfK) + rrf(item.lexicalRank, rrfK));
+        return fused.values().stream()
+                .sorted(Comparator.comparingDouble((Fused item) -> item.score).reversed())
+                .limit(topK)
+                .map(Fused::toDocument)
+                .toList();
+    }
+
+    private static double rrf(int rank, int rrfK) {
+        return rank > 0 ? 1.0 / (rrfK + rank) : 0;
+    }
+
+    private static class Fused {
+
+        private final Document document;
+        private int vectorRank;
+        private int lexicalRank;
+        private double score;
+
+        Fused(Document document) {
+            this.document = document;
+        }
+
+        Document toDocument() {
+            Map<String, Object> metadata = new LinkedHashMap<>(document.getMetadata());
+            if (vectorRank > 0) {
+                metadata.put("vectorRank", vectorRank);
+            }
+            if (lexicalRank > 0) {
+                metadata.put("lexicalRank", lexicalRank);
+            }
+            return Document.builder()
+                    .id(document.getId())
+                    .text(document.getText())
+                    .metadata(metadata)
+                    .score(score)
+                    .build();
+        }
+    }
+}
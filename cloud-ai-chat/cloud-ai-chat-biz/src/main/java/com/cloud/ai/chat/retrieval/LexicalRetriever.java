@@ -0,0 +1,62 @@
+package com.cloud.ai.chat.retrieval;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.regex.Pattern;
+
+/**
+ * @author shengjie.tang
+ * @version 1.0.0
+ * @description: 分块内容全文检索
+ * <p>
+ * 1. 索引与查询使用同一个表达式：字母数字串两侧补空格后to_tsvector，型号、编码等标识符紧挨中文时也能切成独立的词
+ * 2. 查询的各个词按OR组合，命中词越多、越集中的分块ts_rank_cd越高；查询没有可用的词时不返回结果
+ * @date 2025/11/29 15:00
+ */
+@Component
+@RequiredArgsConstructor
+public class LexicalRetriever {
+
+    private static final Pattern REGCONFIG_PATTERN = Pattern.compile("[A-Za-z_][A-Za-z0-9_.]*");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final VectorStoreProperties properties;
+    private final ObjectMapper objectMapper;
+
+    @PostConstruct
+    public void validate() {
+        String config = properties.getHybrid().getTextSearchConfig();
+        if (!REGCONFIG_PATTERN.matcher(config).matches()) {
+            throw new IllegalArgumentException("无效的全文检索配置: " + config);
+        }
+    }
+
+    /**
+     * @return 检索结果（附带分块向量，没有查询向量）
+     */
+    public RetrievalResult search(String query, int limit) {
+        String config = properties.getHybrid().getTextSearchConfig();
+        String sql = """
+                SELECT id, content, metadata, embedding::real[] AS embedding_values, ts_rank_cd(%1$s, q.query) AS rank
+                FROM %2$s.%3$s,
+                     (SELECT (SELECT string_agg(quote_literal(lexeme), ' | ')
+                              FROM unnest(%4$s))::tsquery AS query) q
+                WHERE %1$s @@ q.query
+                ORDER BY rank DESC
+                LIMIT ?
+                """.formatted(textVector(config, "content"), properties.getSchemaName(), properties.getTableName(),
+                textVector(config, "?::text"));
+        return DocumentRows.toResult(jdbcTemplate.query(sql, DocumentRows.byRank(objectMapper), query, limit), null);
+    }
+
+    /**
+     * 全文检索表达式，GIN索引建在同一表达式上
+     */
+    static String textVector(String config, String column) {
+        return "to_tsvector('%s'::regconfig, regexp_replace(%s, '([A-Za-z0-9]+)', ' \\1 ', 'g'))".formatted(config, column);
+    }
+}
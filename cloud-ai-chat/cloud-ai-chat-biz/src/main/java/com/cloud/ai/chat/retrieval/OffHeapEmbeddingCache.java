@@ -0,0 +1,96 @@
+package com.cloud.ai.chat.retrieval;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * @author shengjie.tang
+ * @version 1.0.0
+ * @description: 查询向量缓存（堆外）
+ * <p>
+ * 向量按固定维度连续存放在一块直接内存中，每个槽位 dimensions * 4 字节；Caffeine只保存 查询 -> 槽位 的映射，
+ * 淘汰时归还槽位。相比 List&lt;Double&gt; / float[] 不产生对象头和装箱开销，也不进入GC扫描。
+ * <p>
+ * 槽位回收后可能被新的查询复用，读取时按槽位戳校验：复制前后戳一致才认为命中，否则按未命中处理
+ * @date 2025/11/29 10:00
+ */
+public class OffHeapEmbeddingCache {
+
+    private final int dimensions;
+    private final FloatBuffer slots;
+    private final AtomicLongArray stamps;
+    private final ConcurrentLinkedQueue<Integer> freeSlots = new ConcurrentLinkedQueue<>();
+    private final Cache<String, Slot> index;
+
+    public OffHeapEmbeddingCache(int capacity, int dimensions) {
+        this.dimensions = dimensions;
+        this.slots = ByteBuffer.allocateDirect(Math.multiplyExact(Math.multiplyExact(capacity, dimensions), Float.BYTES))
+                .order(ByteOrder.nativeOrder())
+                .asFloatBuffer();
+        this.stamps = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            freeSlots.add(i);
+        }
+        this.index = Caffeine.newBuilder()
+                .maximumSize(capacity)
+                .removalListener((String query, Slot slot, RemovalCause cause) -> {
+                    if (slot != null) {
+                        // 先作废戳再归还，正在读取该槽位的线程会发现戳变化
+                        stamps.incrementAndGet(slot.index());
+                        freeSlots.add(slot.index());
+                    }
+                })
+                .build();
+    }
+
+    /**
+     * @return 缓存的向量副本，未命中时返回null
+     */
+    public float[] get(String query) {
+        Slot slot = index.getIfPresent(query);
+        if (slot == null || stamps.get(slot.index()) != slot.stamp()) {
+            return null;
+        }
+        float[] embedding = new float[dimensions];
+        slots.slice(slot.index() * dimensions, dimensions).get(embedding);
+        VarHandle.loadLoadFence();
+        return stamps.get(slot.index()) == slot.stamp() ? embedding : null;
+    }
+
+    /**
+     * 维度不一致或暂无空闲槽位（淘汰尚未完成）时不缓存
+     */
+    public void put(String query, float[] embedding) {
+        if (embedding.length != dimensions || index.getIfPresent(query) != null) {
+            return;
+        }
+        Integer free = freeSlots.poll();
+        if (free == null) {
+            index.cleanUp();
+            free = freeSlots.poll();
+            if (free == null) {
+                return;
+            }
+        }
+        slots.slice(free * dimensions, dimensions).put(embedding);
+        Slot previous = index.asMap().putIfAbsent(query, new Slot(free, stamps.get(free)));
+        if (previous != null) {
+            freeSlots.add(free);
+        }
+    }
+
+    public long size() {
+        return index.estimatedSize();
+    }
+
+    private record Slot(int index, long stamp) {
+    }
+}
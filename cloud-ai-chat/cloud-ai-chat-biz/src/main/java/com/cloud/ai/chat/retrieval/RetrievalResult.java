@@ -0,0 +1,27 @@
+package com.cloud.ai.chat.retrieval;
+
+import org.springframework.ai.document.Document;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @author shengjie.tang
+ * @version 1.0.0
+ * @description: 检索结果
+ * <p>
+ * 分块向量由检索SQL一并返回，查询向量取自本次检索，上下文装填直接使用，不再查库或调用向量模型
+ * @date 2025/11/30 10:00
+ *
+ * @param documents      检索到的文档，按相关性降序
+ * @param queryEmbedding 查询向量，没有向量检索时为null
+ * @param embeddings     分块ID -> 分块向量
+ */
+public record RetrievalResult(List<Document> documents, float[] queryEmbedding, Map<String, float[]> embeddings) {
+
+    private static final RetrievalResult EMPTY = new RetrievalResult(List.of(), null, Map.of());
+
+    public static RetrievalResult empty() {
+        return EMPTY;
+    }
+}
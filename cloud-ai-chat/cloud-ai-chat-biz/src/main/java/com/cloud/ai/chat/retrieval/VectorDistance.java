@@ -0,0 +1,81 @@
+package com.cloud.ai.chat.retrieval;
+
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.vectorstore.pgvector.PgVectorStore;
+
+/**
+ * @author shengjie.tang
+ * @version 1.0.0
+ * @description: pgvector距离度量对应的操作符、索引操作符类与量化表达式
+ * @date 2025/11/28 15:00
+ */
+final class VectorDistance {
+
+    private VectorDistance() {
+    }
+
+    static String operator(PgVectorStore.PgDistanceType distanceType) {
+        return switch (distanceType) {
+            case COSINE_DISTANCE -> "<=>";
+            case EUCLIDEAN_DISTANCE -> "<->";
+            case NEGATIVE_INNER_PRODUCT -> "<#>";
+        };
+    }
+
+    static String operatorClass(PgVectorStore.PgDistanceType distanceType) {
+        return switch (distanceType) {
+            case COSINE_DISTANCE -> "vector_cosine_ops";
+            case EUCLIDEAN_DISTANCE -> "vector_l2_ops";
+            case NEGATIVE_INNER_PRODUCT -> "vector_ip_ops";
+        };
+    }
+
+    /**
+     * 量化索引的比较操作符：halfvec沿用原距离，二值向量使用汉明距离
+     */
+    static String quantizedOperator(VectorStoreProperties.QuantizationType type,
+                                    PgVectorStore.PgDistanceType distanceType) {
+        return type == VectorStoreProperties.QuantizationType.BINARY ? "<~>" : operator(distanceType);
+    }
+
+    static String quantizedOperatorClass(VectorStoreProperties.QuantizationType type,
+                                         PgVectorStore.PgDistanceType distanceType) {
+        return switch (type) {
+            case NONE -> operatorClass(distanceType);
+            case HALFVEC -> operatorClass(distanceType).replace("vector_", "halfvec_");
+            case BINARY -> "bit_hamming_ops";
+        };
+    }
+
+    /**
+     * 量化后的向量表达式，column为列名或查询参数（如 ?::vector）
+     */
+    static String quantize(VectorStoreProperties.QuantizationType type, String column, int dimensions) {
+        return switch (type) {
+            case NONE -> column;
+            case HALFVEC -> "(%s)::halfvec(%d)".formatted(column, dimensions);
+            case BINARY -> "binary_quantize(%s)::bit(%d)".formatted(column, dimensions);
+        };
+    }
+
+    /**
+     * 向量维度：未配置时取自向量模型（量化表达式需要显式维度）
+     */
+    static int dimensions(VectorStoreProperties properties, EmbeddingModel embeddingModel) {
+        return properties.getDimensions() > 0 ? properties.getDimensions() : embeddingModel.dimensions();
+    }
+
+    /**
+     * 向量的文本形式，配合 ?::vector 传参
+     */
+    static String toLiteral(float[] embedding) {
+        StringBuilder literal = new StringBuilder(embedding.length * 12).append('[');
+        for (int i = 0; i < embedding.length; i++) {
+            if (i > 0) {
+                literal.append(',');
+            }
+            literal.append(embedding[i]);
+        }
+        return literal.append(']').toString();
+    }
+}
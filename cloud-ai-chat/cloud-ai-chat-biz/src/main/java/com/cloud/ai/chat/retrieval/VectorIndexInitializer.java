@@ -0,0 +1,80 @@
+package com.cloud.ai.chat.retrieval;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.vectorstore.pgvector.PgVectorStore;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * @author shengjie.tang
+ * @version 1.0.0
+ * @description: 按配置创建向量索引与全文索引
+ * <p>
+ * PgVectorStore自建的索引不支持构建参数，因此由这里按索引类型、构建参数和距离度量创建；
+ * 开启量化时索引建在量化表达式上（表中仍保存原始向量用于重排），不需要新增列。
+ * 索引名包含索引类型和量化方式，切换后新索引并存，确认效果后手动删除旧索引。修改同类型的构建参数需先删除原索引
+ * @date 2025/11/28 15:00
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class VectorIndexInitializer {
+
+    /**
+     * 注入以保证PgVectorStore已完成建表
+     */
+    private final PgVectorStore vectorStore;
+    private final JdbcTemplate jdbcTemplate;
+    private final VectorStoreProperties properties;
+    private final EmbeddingModel embeddingModel;
+
+    @PostConstruct
+    public void createIndex() {
+        if (!properties.isInitializeSchema()) {
+            return;
+        }
+        VectorStoreProperties.Index index = properties.getIndex();
+        VectorStoreProperties.QuantizationType quantization = properties.getQuantization().getType();
+        String column = quantization == VectorStoreProperties.QuantizationType.NONE ? "embedding"
+                : "(" + VectorDistance.quantize(quantization, "embedding",
+                VectorDistance.dimensions(properties, embeddingModel)) + ")";
+        String operatorClass = VectorDistance.quantizedOperatorClass(quantization, properties.getDistanceType());
+        String sql = switch (index.getType()) {
+            case NONE -> null;
+            case HNSW -> "CREATE INDEX IF NOT EXISTS %s ON %s USING hnsw (%s %s) WITH (m = %d, ef_construction = %d)"
+                    .formatted(indexName(), qualifiedTableName(), column, operatorClass,
+                            index.getM(), index.getEfConstruction());
+            case IVFFLAT -> "CREATE INDEX IF NOT EXISTS %s ON %s USING ivfflat (%s %s) WITH (lists = %d)"
+                    .formatted(indexName(), qualifiedTableName(), column, operatorClass, index.getLists());
+        };
+        if (sql != null) {
+            execute(sql);
+        }
+        if (properties.getHybrid().isEnabled()) {
+            // 混合检索的全文索引
+            execute("CREATE INDEX IF NOT EXISTS %s_content_fts_idx ON %s USING gin ((%s))".formatted(
+                    properties.getTableName(), qualifiedTableName(),
+                    LexicalRetriever.textVector(properties.getHybrid().getTextSearchConfig(), "content")));
+        }
+    }
+
+    private void execute(String sql) {
+        long start = System.currentTimeMillis();
+        jdbcTemplate.execute(sql);
+        log.info("索引已就绪: {}, 耗时: {}ms", sql, System.currentTimeMillis() - start);
+    }
+
+    private String indexName() {
+        VectorStoreProperties.QuantizationType quantization = properties.getQuantization().getType();
+        return properties.getTableName() + "_embedding_" + properties.getIndex().getType().name().toLowerCase()
+                + (quantization == VectorStoreProperties.QuantizationType.NONE ? "" : "_" + quantization.name().toLowerCase())
+                + "_idx";
+    }
+
+    private String qualifiedTableName() {
+        return properties.getSchemaName() + "." + properties.getTableName();
+    }
+}
@@ -0,0 +1,243 @@
+package com.cloud.ai.chat.retrieval;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.text.Normalizer;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * @author shengjie.tang
+ * @version 1.0.0
+ * @description: 向量检索 - 支持单次请求指定topK、相似度阈值和检索力度
+ * <p>
+ * 1. 查询向量在事务外生成，不在调用向量模型期间占用数据库连接
+ * 2. 检索力度通过 set_config(..., true) 设置（等同SET LOCAL），只在本次检索的事务内生效，不污染连接池中的连接
+ * 3. 相似度与PgVectorStore一致：score = 1 - 距离，阈值按 距离 <= 1 - 阈值 过滤
+ * 4. 开启量化时先用量化索引取 topK * oversample 个候选，再按原始向量计算距离重排，只有候选行读取原始向量
+ * 5. 查询归一化后缓存查询向量（堆外）和检索结果；结果缓存记录检索前读取的向量库版本号，版本号变化即失效
+ * 6. 检索结果附带查询向量和分块向量（同一条SQL返回），上下文装填不再查库或调用向量模型
+ * @date 2025/11/28 15:00
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class VectorRetriever {
+
+    /**
+     * pgvector允许的ef_search上限
+     */
+    private static final int HNSW_MAX_EF_SEARCH = 1000;
+
+    private static final String CACHE_METRIC = "ai.chat.retrieval.cache";
+
+    private final EmbeddingModel embeddingModel;
+    private final JdbcTemplate jdbcTemplate;
+    private final PlatformTransactionManager transactionManager;
+    private final VectorStoreProperties properties;
+    private final ObjectMapper objectMapper;
+    private final VectorStoreVersion vectorStoreVersion;
+    private final MeterRegistry meterRegistry;
+
+    private Cache<String, CachedResult> results;
+
+    /**
+     * 首次生成查询向量后按其维度创建
+     */
+    private volatile OffHeapEmbeddingCache embeddings;
+
+    /**
+     * 向量维度，未配置时首次量化检索取自向量模型后缓存（模型可能需要调用一次接口才能得到维度）
+     */
+    private volatile int dimensions;
+
+    @PostConstruct
+    public void init() {
+        VectorStoreProperties.Cache cache = properties.getCache();
+        results = Caffeine.newBuilder()
+                .maximumSize(cache.getResultMaximumSize())
+                .expireAfterWrite(cache.getResultTtl())
+                .build();
+    }
+
+    public RetrievalResult search(String query, VectorSearchOptions options) {
+        VectorStoreProperties.Search defaults = properties.getSearch();
+        int topK = clamp(options.topK() != null ? options.topK() : defaults.getTopK(), 1, defaults.getMaxTopK());
+        double threshold = Math.max(0, Math.min(1, options.similarityThreshold() != null
+                ? options.similarityThreshold() : defaults.getSimilarityThreshold()));
+        int effort = Math.min(options.searchEffort() != null ? options.searchEffort() : defaults.getSearchEffort(),
+                defaults.getMaxSearchEffort());
+
+        String normalized = normalize(query);
+        boolean cacheEnabled = properties.getCache().isEnabled();
+        String resultKey = String.join("|", normalized, String.valueOf(topK), String.valueOf(threshold),
+                String.valueOf(effort));
+        long version = cacheEnabled ? currentVersion() : -1;
+        if (version >= 0) {
+            CachedResult cached = results.getIfPresent(resultKey);
+            if (cached != null && cached.version() == version) {
+                meterRegistry.counter(CACHE_METRIC, "cache", "result", "result", "hit").increment();
+                return cached.result();
+            }
+            meterRegistry.counter(CACHE_METRIC, "cache", "result", "result", "miss").increment();
+        }
+
+        RetrievalResult result = search(embed(normalized, cacheEnabled), topK, threshold, effort);
+        if (version >= 0) {
+            results.put(resultKey, new CachedResult(version, result));
+        }
+        return result;
+    }
+
+    private RetrievalResult search(float[] embedding, int topK, double threshold, int effort) {
+        String literal = VectorDistance.toLiteral(embedding);
+        VectorStoreProperties.QuantizationType quantization = properties.getQuantization().getType();
+        int candidateCount = quantization == VectorStoreProperties.QuantizationType.NONE
+                ? topK : topK * Math.max(1, properties.getQuantization().getOversample());
+
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setReadOnly(true);
+        List<DocumentRows.Row> candidates = transactionTemplate.execute(status -> {
+            applySearchEffort(effort, candidateCount);
+            if (quantization == VectorStoreProperties.QuantizationType.NONE) {
+                return jdbcTemplate.query(searchSql(), DocumentRows.byDistance(objectMapper), literal, topK);
+            }
+            return jdbcTemplate.query(quantizedSearchSql(quantization), DocumentRows.byDistance(objectMapper),
+                    literal, literal, candidateCount, topK);
+        });
+
+        double maxDistance = 1 - threshold;
+        return DocumentRows.toResult(candidates.stream()
+                .filter(row -> 1 - row.document().getScore() <= maxDistance)
+                .toList(), embedding);
+    }
+
+    private float[] embed(String normalized, boolean cacheEnabled) {
+        OffHeapEmbeddingCache cache = embeddings;
+        if (cacheEnabled && cache != null) {
+            float[] cached = cache.get(normalized);
+            meterRegistry.counter(CACHE_METRIC, "cache", "embedding", "result", cached != null ? "hit" : "miss").increment();
+            if (cached != null) {
+                return cached;
+            }
+        }
+        float[] embedding = embeddingModel.embed(normalized);
+        if (cacheEnabled) {
+            embeddingCache(embedding.length).put(normalized, embedding);
+        }
+        return embedding;
+    }
+
+    private OffHeapEmbeddingCache embeddingCache(int dimensions) {
+        OffHeapEmbeddingCache cache = embeddings;
+        if (cache == null) {
+            synchronized (this) {
+                cache = embeddings;
+                if (cache == null) {
+                    cache = new OffHeapEmbeddingCache(properties.getCache().getEmbeddingCapacity(), dimensions);
+                    embeddings = cache;
+                }
+            }
+        }
+        return cache;
+    }
+
+    /**
+     * 读取版本号失败时返回-1，本次不使用结果缓存
+     */
+    private long currentVersion() {
+        try {
+            return vectorStoreVersion.current();
+        } catch (Exception e) {
+            log.warn("读取向量库版本号失败，跳过检索缓存", e);
+            return -1;
+        }
+    }
+
+    /**
+     * 查询归一化：全角转半角、合并空白、英文小写，写法不同的相同问题共用缓存
+     */
+    static String normalize(String query) {
+        return Normalizer.normalize(query, Normalizer.Form.NFKC)
+                .strip()
+                .replaceAll("\\s+", " ")
+                .toLowerCase(Locale.ROOT);
+    }
+
+    private String searchSql() {
+        return """
+                SELECT id, content, metadata, embedding::real[] AS embedding_values, embedding %s ?::vector AS distance
+                FROM %s.%s
+                ORDER BY distance
+                LIMIT ?
+                """.formatted(VectorDistance.operator(properties.getDistanceType()),
+                properties.getSchemaName(), properties.getTableName());
+    }
+
+    /**
+     * 内层按量化表达式排序（走量化索引）取候选，外层按原始向量重排
+     */
+    private String quantizedSearchSql(VectorStoreProperties.QuantizationType quantization) {
+        int dimensions = dimensions();
+        return """
+                SELECT id, content, metadata, embedding::real[] AS embedding_values, embedding %s ?::vector AS distance
+                FROM (SELECT id, content, metadata, embedding
+                      FROM %s.%s
+                      ORDER BY %s %s %s
+                      LIMIT ?) candidates
+                ORDER BY distance
+                LIMIT ?
+                """.formatted(VectorDistance.operator(properties.getDistanceType()),
+                properties.getSchemaName(), properties.getTableName(),
+                VectorDistance.quantize(quantization, "embedding", dimensions),
+                VectorDistance.quantizedOperator(quantization, properties.getDistanceType()),
+                VectorDistance.quantize(quantization, "?::vector", dimensions));
+    }
+
+    private int dimensions() {
+        if (dimensions <= 0) {
+            dimensions = VectorDistance.dimensions(properties, embeddingModel);
+        }
+        return dimensions;
+    }
+
+    /**
+     * HNSW设置ef_search（不小于候选数，否则返回数不足），IVFFlat设置probes；不建索引时为精确检索，无需设置
+     */
+    private void applySearchEffort(int effort, int candidateCount) {
+        if (effort <= 0) {
+            return;
+        }
+        switch (properties.getIndex().getType()) {
+            case HNSW -> setLocal("hnsw.ef_search", Math.min(Math.max(effort, candidateCount), HNSW_MAX_EF_SEARCH));
+            case IVFFLAT -> setLocal("ivfflat.probes", Math.min(effort, properties.getIndex().getLists()));
+            case NONE -> {
+            }
+        }
+    }
+
+    private void setLocal(String name, int value) {
+        jdbcTemplate.queryForObject("SELECT set_config(?, ?, true)", String.class, name, String.valueOf(value));
+    }
+
+    private static int clamp(int value, int min, int max) {
+        return Math.max(min, Math.min(max, value));
+    }
+
+    /**
+     * 缓存的检索结果及检索前读取的向量库版本号
+     */
+    private record CachedResult(long version, RetrievalResult result) {
+    }
+}
@@ -0,0 +1,14 @@
+package com.cloud.ai.chat.retrieval;
+
+/**
+ * @author shengjie.tang
+ * @version 1.0.0
+ * @description: 单次向量检索参数，为null的项使用配置的默认值
+ * @date 2025/11/28 15:00
+ */
+public record VectorSearchOptions(Integer topK, Double similarityThreshold, Integer searchEffort) {
+
+    public static VectorSearchOptions defaults() {
+        return new VectorSearchOptions(null, null, null);
+    }
+}
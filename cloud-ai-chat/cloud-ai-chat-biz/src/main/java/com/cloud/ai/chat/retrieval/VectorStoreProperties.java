@@ -0,0 +1,190 @@
+package com.cloud.ai.chat.retrieval;
+
+import lombok.Data;
+import org.springframework.ai.vectorstore.pgvector.PgVectorStore;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * @author shengjie.tang
+ * @version 1.0.0
+ * @description: 向量库配置 - 表结构、索引类型与构建参数、距离度量、量化、检索默认参数、缓存与混合检索
+ * @date 2025/11/28 15:00
+ */
+@Component
+@ConfigurationProperties(prefix = "ai.chat.vector-store")
+@Data
+public class VectorStoreProperties {
+
+    private String schemaName = "public";
+
+    private String tableName = "vector_store";
+
+    /**
+     * 向量维度，小于等于0时取自向量模型
+     */
+    private int dimensions = -1;
+
+    /**
+     * 距离度量，索引的操作符类与检索SQL按此选择
+     */
+    private PgVectorStore.PgDistanceType distanceType = PgVectorStore.PgDistanceType.COSINE_DISTANCE;
+
+    /**
+     * 启动时创建表和向量索引（已存在时跳过）
+     */
+    private boolean initializeSchema = false;
+
+    private Index index = new Index();
+
+    private Quantization quantization = new Quantization();
+
+    private Search search = new Search();
+
+    private Cache cache = new Cache();
+
+    private Hybrid hybrid = new Hybrid();
+
+    public enum IndexType {
+        /**
+         * 不建索引，精确检索
+         */
+        NONE,
+        HNSW,
+        IVFFLAT
+    }
+
+    public enum QuantizationType {
+        /**
+         * 不量化，索引与检索使用原始向量
+         */
+        NONE,
+        /**
+         * 半精度（halfvec），索引约为原来的一半
+         */
+        HALFVEC,
+        /**
+         * 二值量化（bit），索引约为原来的1/32，召回依赖重排
+         */
+        BINARY
+    }
+
+    @Data
+    public static class Index {
+
+        private IndexType type = IndexType.HNSW;
+
+        /**
+         * HNSW每个节点的最大连接数，越大召回越高、索引越大
+         */
+        private int m = 16;
+
+        /**
+         * HNSW构建时的候选列表大小，越大召回越高、构建越慢
+         */
+        private int efConstruction = 64;
+
+        /**
+         * IVFFlat聚类数，建议 行数/1000（百万行以内）
+         */
+        private int lists = 100;
+    }
+
+    /**
+     * 量化索引：索引建在量化后的向量表达式上，检索时先用量化索引取 topK * oversample 个候选，
+     * 再按表中的原始向量精确重排取topK
+     */
+    @Data
+    public static class Quantization {
+
+        private QuantizationType type = QuantizationType.NONE;
+
+        /**
+         * 候选倍数，按基准脚本测得的召回率选值
+         */
+        private int oversample = 4;
+    }
+
+    @Data
+    public static class Search {
+
+        /**
+         * 默认返回的文档数
+         */
+        private int topK = 4;
+
+        /**
+         * 请求可指定的最大文档数
+         */
+        private int maxTopK = 20;
+
+        /**
+         * 默认相似度阈值（0~1，0表示不过滤）
+         */
+        private double similarityThreshold = 0.0;
+
+        /**
+         * 默认检索力度：HNSW为ef_search，IVFFlat为probes；小于等于0时使用数据库默认值
+         */
+        private int searchEffort = 40;
+
+        /**
+         * 请求可指定的最大检索力度
+         */
+        private int maxSearchEffort = 400;
+    }
+
+    /**
+     * 检索缓存：查询向量（堆外，不随入库失效）与检索结果（按向量库版本号失效）
+     */
+    @Data
+    public static class Cache {
+
+        private boolean enabled = true;
+
+        /**
+         * 查询向量缓存条数，堆外内存占用 = 条数 * 维度 * 4 字节
+         */
+        private int embeddingCapacity = 10000;
+
+        /**
+         * 检索结果缓存条数，结果附带分块向量，堆内存占用约为 条数 * 候选数 * 维度 * 4 字节
+         */
+        private long resultMaximumSize = 2000;
+
+        /**
+         * 检索结果缓存过期时间（版本号递增失败时的兜底）
+         */
+        private Duration resultTtl = Duration.ofMinutes(30);
+    }
+
+    /**
+     * 混合检索：分块内容全文检索与向量检索并行执行，按倒数排名融合（RRF）
+     */
+    @Data
+    public static class Hybrid {
+
+        /**
+         * 默认关闭：全文索引只在initialize-schema开启或新库执行init.sql时创建，
+         * 已有库先执行 init/sql/migration_vector_indexes.sql 再开启，否则全文检索退化为全表扫描
+         */
+        private boolean enabled = false;
+
+        /**
+         * 全文检索配置（regconfig），安装中文分词扩展（如zhparser）后可改为对应配置
+         */
+        private String textSearchConfig = "simple";
+
+        /**
+         * 每路检索取的候选数（向量检索受search.max-top-k限制）
+         */
+        private int candidates = 20;
+
+        /**
+         * RRF平滑常数：score = Σ 1 / (k + 排名)
+         */
+        private int rrfK = 60;
+    }
+}
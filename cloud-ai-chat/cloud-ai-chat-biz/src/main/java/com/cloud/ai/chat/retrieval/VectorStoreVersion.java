@@ -0,0 +1,42 @@
+package com.cloud.ai.chat.retrieval;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RAtomicLong;
+import org.redisson.api.RedissonClient;
+import org.springframework.stereotype.Component;
+
+/**
+ * @author shengjie.tang
+ * @version 1.0.0
+ * @description: 向量库版本号（Redis）
+ * <p>
+ * 文档入库写入或删除分块后递增，检索结果缓存按版本号校验，所有实例的缓存随之失效
+ * @date 2025/11/29 10:00
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class VectorStoreVersion {
+
+    private static final String VERSION_KEY = "vector:store:version";
+
+    private final RedissonClient redissonClient;
+
+    public long current() {
+        return version().get();
+    }
+
+    public void increment() {
+        try {
+            version().incrementAndGet();
+        } catch (Exception e) {
+            // 递增失败时检索缓存最长保留到过期
+            log.error("向量库版本号递增失败", e);
+        }
+    }
+
+    private RAtomicLong version() {
+        return redissonClient.getAtomicLong(VERSION_KEY);
+    }
+}
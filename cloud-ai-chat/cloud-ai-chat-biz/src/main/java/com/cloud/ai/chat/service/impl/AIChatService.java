@@ -12,20 +12,22 @@ import com.alibaba.dashscope.exception.InputRequiredException;
 import com.alibaba.dashscope.exception.NoApiKeyException;
 import com.cloud.ai.chat.domain.ChatContext;
 import com.cloud.ai.chat.domain.Image;
-import com.cloud.ai.chat.helper.ChatAnalysisHelper;
-import com.cloud.ai.chat.helper.ChatSuggestionHelper;
 import com.cloud.ai.chat.provider.ModelProvider;
+import com.cloud.ai.chat.retrieval.ContextPacker;
+import com.cloud.ai.chat.retrieval.HybridRetriever;
+import com.cloud.ai.chat.retrieval.RetrievalResult;
+import com.cloud.ai.chat.retrieval.VectorSearchOptions;
 import com.cloud.ai.chat.util.ModelSelector;
 import com.cloud.common.security.SecurityUtils;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import io.reactivex.Flowable;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.chat.memory.ChatMemory;
-import org.springframework.ai.document.Document;
-import org.springframework.ai.vectorstore.pgvector.PgVectorStore;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.stereotype.Service;
 import org.springframework.util.CollectionUtils;
 import org.springframework.util.StringUtils;
@@ -34,7 +36,12 @@ import reactor.core.scheduler.Schedulers;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
 
 /**
  * @author shengjie.tang
@@ -50,12 +57,20 @@ public class AIChatService {
     private final ModelSelector modelSelector;
     private final ChatTitleService chatTitleService;
     private final ChatDialogueService chatDialogueService;
-    private final ChatMessageService chatMessageService;
-    private final PgVectorStore vectorStore;
-    private final ChatAnalysisHelper chatAnalysisHelper;
+    private final HybridRetriever hybridRetriever;
+    private final ContextPacker contextPacker;
     private final ImageService imageService;
-    private final ChatSuggestionHelper chatSuggestionHelper;
+    private final ChatPostProcessService chatPostProcessService;
     private final ChatMemory chatMemory;
+    private final ThreadPoolTaskExecutor chatPrepareExecutor;
+    private final MeterRegistry meterRegistry;
+
+    private static final String PREPARE_STAGE_METRIC = "ai.chat.prepare.stage";
+    private static final String PREPARE_TOTAL_METRIC = "ai.chat.prepare.total";
+    private static final String PREPARE_TIMEOUT_METRIC = "ai.chat.prepare.timeout";
+    private static final String STAGE_SESSION = "session";
+    private static final String STAGE_OCR = "ocr";
+    private static final String STAGE_RETRIEVAL = "retrieval";
 
     @Value("${ai.guide:true}")
     private boolean aiGuide;
@@ -64,19 +79,25 @@ public class AIChatService {
     private String apiKey;
 
     /**
-     * 根据聊天上下文获取ChatClient实例
+     * 流前准备阶段整体超时时间（毫秒）
+     */
+    @Value("${ai.chat.prepare-timeout-ms:3000}")
+    private long prepareTimeoutMs;
+
+    /**
+     * 根据聊天上下文选择模型
      * 基于完整的请求上下文（包括query、session、images等）智能选择最合适的模型
      *
      * @param context 聊天上下文（包含useThinking标识）
      */
-    private ChatClient getChatClient(ChatContext context) {
+    private ModelProvider selectModelProvider(ChatContext context) {
         // 根据上下文智能选择模型（包括Thinking模型的选择）
         ModelProvider provider = modelSelector.selectModelProvider(context);
         log.info("选择模型: {} ({}) - 上下文: images={}, rag={}, webSearch={}, useThinking={}",
                 provider.getDisplayName(), provider.getModelName(),
                 context.getImageCount(), context.isRagEnhanced(),
                 context.isWithEnableSearch(), context.isUseThinking());
-        return provider.getChatClient();
+        return provider;
     }
 
     public String simpleChat(String query) {
@@ -85,54 +106,55 @@ public class AIChatService {
     }
 
     public Flux<String> streamChat(String query, String sessionId, String dialogueId, List<String> imageUrlList, Boolean isWithEnableSearch, Boolean isDeepThinking, String longitude, String latitude) {
-        return streamChat(query, sessionId, dialogueId, false, Boolean.TRUE.equals(isWithEnableSearch), query, imageUrlList, isDeepThinking, longitude, latitude);
+        return streamChat(query, sessionId, dialogueId, null, Boolean.TRUE.equals(isWithEnableSearch), imageUrlList, Boolean.TRUE.equals(isDeepThinking), longitude, latitude);
     }
 
-    public Flux<String> ragStreamChat(String query, String sessionId, String dialogueId, List<String> imageUrlList, Boolean isWithEnableSearch, Boolean isDeepThinking, String longitude, String latitude) {
-        boolean useThinking = Boolean.TRUE.equals(isDeepThinking);
-        List<Document> relevantDocs = vectorStore.similaritySearch(query);
-        if (CollectionUtils.isEmpty(relevantDocs)) {
-            return streamChat(query, sessionId, dialogueId, false, Boolean.TRUE.equals(isWithEnableSearch), query, imageUrlList, useThinking, longitude, latitude);
-        }
-        String enhancedPrompt = buildRagPrompt(query, relevantDocs);
-        return streamChat(enhancedPrompt, sessionId, dialogueId, true, Boolean.TRUE.equals(isWithEnableSearch), query, imageUrlList, useThinking, longitude, latitude);
+    public Flux<String> ragStreamChat(String query, String sessionId, String dialogueId, List<String> imageUrlList, Boolean isWithEnableSearch, Boolean isDeepThinking, String longitude, String latitude,
+                                      VectorSearchOptions searchOptions) {
+        return streamChat(query, sessionId, dialogueId, searchOptions != null ? searchOptions : VectorSearchOptions.defaults(), Boolean.TRUE.equals(isWithEnableSearch), imageUrlList, Boolean.TRUE.equals(isDeepThinking), longitude, latitude);
     }
 
     /**
      * 流式聊天核心方法
      *
-     * @param query         增强后的查询（可能包含OCR文本）
-     * @param sessionId     会话ID
-     * @param dialogueId    对话ID（关联USER、ASSISTANT、RECOMMENDATIONS）
-     * @param isRagEnhanced 是否启用RAG增强
-     * @param isWebSearch   是否启用全网搜索
-     * @param originQuery   原始用户查询
-     * @param imageList     图片URL列表
-     * @param useThinking   是否使用Thinking模型（深度思考）
-     * @param longitude     当前位置经度（可选）
-     * @param latitude      当前位置纬度（可选）
+     * @param originQuery  原始用户查询
+     * @param sessionId    会话ID
+     * @param dialogueId   对话ID（关联USER、ASSISTANT、RECOMMENDATIONS）
+     * @param searchOptions RAG检索参数，为null时不做检索增强
+     * @param isWebSearch  是否启用全网搜索
+     * @param imageList    图片URL列表
+     * @param useThinking  是否使用Thinking模型（深度思考）
+     * @param longitude    当前位置经度（可选）
+     * @param latitude     当前位置纬度（可选）
      * @return 响应流
      */
-    private Flux<String> streamChat(String query, String sessionId, String dialogueId, boolean isRagEnhanced, boolean isWebSearch, String originQuery, List<String> imageList, boolean useThinking, String longitude, String latitude) {
+    private Flux<String> streamChat(String originQuery, String sessionId, String dialogueId, VectorSearchOptions searchOptions, boolean isWebSearch, List<String> imageList, boolean useThinking, String longitude, String latitude) {
         Long userId = SecurityUtils.getCurrentUserId();
+        boolean ragRequested = searchOptions != null;
 
         log.info("开始流式对话，userId: {}, sessionId: {}, query: {}, images: {}, rag={}, webSearch={}, deepThinking={}",
-                userId, sessionId, originQuery, imageList != null ? imageList.size() : 0, isRagEnhanced, isWebSearch, useThinking);
+                userId, sessionId, originQuery, imageList != null ? imageList.size() : 0, ragRequested, isWebSearch, useThinking);
+
+        // 1. 并发执行流前准备：会话初始化、OCR增强、RAG检索（首字延迟取三者最大值而非之和）
+        PreparedContext prepared = prepareBeforeStream(userId, sessionId, originQuery, imageList, searchOptions);
 
-        // 1. 处理会话初始化（在流开始前完成）
-        initializeSessionIfNeeded(userId, sessionId, originQuery);
+        // 2. 先选模型，检索文档和OCR文字按该模型的上下文token预算装填（去重、MMR、截断）
+        ChatContext context = buildChatContext(originQuery, sessionId, !prepared.retrieval().documents().isEmpty(), isWebSearch, originQuery, imageList, userId, useThinking, longitude, latitude);
+        ModelProvider provider = selectModelProvider(context);
+        ContextPacker.PackedContext packed = contextPacker.pack(originQuery, prepared.retrieval(), prepared.ocrTexts(), provider.getModelName());
+        boolean isRagEnhanced = !packed.passages().isEmpty();
+        String query = isRagEnhanced ? buildRagPrompt(originQuery, packed.passages()) : originQuery;
 
-        //2.采用异步方式 预先生成话题引导
+        //3.采用异步方式 预先生成话题引导
         if (aiGuide) {
-            chatSuggestionHelper.asyncCreateSuggestion(query, sessionId, dialogueId, userId);
+            chatPostProcessService.submitSuggestion(query, sessionId, dialogueId, userId);
         }
 
-        // 3. 使用OCR结果增强查询
-        String enhancedQuery = enhanceQueryWithOCR(query, imageList);
-
-        // 4. 构建聊天上下文并获取ChatClient
-        ChatContext context = buildChatContext(enhancedQuery, sessionId, isRagEnhanced, isWebSearch, originQuery, imageList, userId, useThinking, longitude, latitude);
-        ChatClient chatClient = getChatClient(context);
+        // 4. 使用OCR结果增强查询
+        String enhancedQuery = query + formatOcrText(packed.ocrTexts());
+        context.setQuery(enhancedQuery);
+        context.setRagEnhanced(isRagEnhanced);
+        ChatClient chatClient = provider.getChatClient();
 
         // 5. 构建并执行请求流（如果有location信息，将其添加到prompt中）
         String finalQuery = enhancedQuery;
@@ -143,9 +165,85 @@ public class AIChatService {
         }
         Flux<String> contentFlux = buildRequestStream(chatClient, finalQuery, sessionId, isWebSearch, useThinking);
         // 7. 处理响应流：收集内容、保存消息
-        return processResponseStream(contentFlux, userId, sessionId, dialogueId, originQuery, imageList, isRagEnhanced);
+        return processResponseStream(contentFlux, prepared.sessionReady(), userId, sessionId, dialogueId, originQuery,
+                imageList, isRagEnhanced);
+    }
+
+    /**
+     * 流前准备阶段
+     * <p>
+     * 会话检查、OCR文字查询、向量检索三者互不依赖，提交到独立线程池并发执行，
+     * 整体受 ai.chat.prepare-timeout-ms 限制；超时的阶段降级（OCR为空、检索无结果），不阻塞首字输出。
+     * 各阶段耗时记录到 ai.chat.prepare.stage 指标（tag: stage）
+     */
+    private PreparedContext prepareBeforeStream(Long userId, String sessionId, String originQuery,
+                                                List<String> imageList, VectorSearchOptions searchOptions) {
+        Timer.Sample totalSample = Timer.start(meterRegistry);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(prepareTimeoutMs);
+
+        CompletableFuture<Void> sessionFuture = submitStage(STAGE_SESSION, () -> {
+            initializeSessionIfNeeded(userId, sessionId, originQuery);
+            return null;
+        });
+        CompletableFuture<List<String>> ocrFuture = CollectionUtils.isEmpty(imageList)
+                ? CompletableFuture.completedFuture(List.of())
+                : submitStage(STAGE_OCR, () -> extractOcrText(imageList));
+        CompletableFuture<RetrievalResult> retrievalFuture = searchOptions != null
+                ? submitStage(STAGE_RETRIEVAL, () -> hybridRetriever.search(originQuery, searchOptions))
+                : CompletableFuture.completedFuture(RetrievalResult.empty());
+
+        // 会话阶段超时只影响首字等待，对话后处理任务仍在会话记录写入后才投递（见 processResponseStream）
+        awaitStage(STAGE_SESSION, sessionFuture, deadline, null);
+        List<String> ocrTexts = awaitStage(STAGE_OCR, ocrFuture, deadline, List.of());
+        RetrievalResult retrieval = awaitStage(STAGE_RETRIEVAL, retrievalFuture, deadline, RetrievalResult.empty());
+
+        totalSample.stop(meterRegistry.timer(PREPARE_TOTAL_METRIC));
+        return new PreparedContext(ocrTexts, retrieval == null ? RetrievalResult.empty() : retrieval, sessionFuture);
+    }
+
+    /**
+     * 提交一个计时的准备阶段
+     */
+    private <T> CompletableFuture<T> submitStage(String stage, Supplier<T> supplier) {
+        return CompletableFuture.supplyAsync(() -> {
+            Timer.Sample sample = Timer.start(meterRegistry);
+            try {
+                return supplier.get();
+            } finally {
+                sample.stop(meterRegistry.timer(PREPARE_STAGE_METRIC, "stage", stage));
+            }
+        }, chatPrepareExecutor);
+    }
+
+    /**
+     * 在整体截止时间内等待阶段结果，超时或失败时返回降级值
+     */
+    private <T> T awaitStage(String stage, CompletableFuture<T> future, long deadline, T fallback) {
+        try {
+            long remaining = Math.max(0, deadline - System.nanoTime());
+            return future.get(remaining, TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            meterRegistry.counter(PREPARE_TIMEOUT_METRIC, "stage", stage).increment();
+            log.warn("流前准备阶段超时，已降级: stage={}, timeout={}ms", stage, prepareTimeoutMs);
+            return fallback;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return fallback;
+        } catch (ExecutionException e) {
+            log.error("流前准备阶段失败，已降级: stage={}", stage, e.getCause());
+            return fallback;
+        }
     }
 
+    /**
+     * 流前准备结果
+     *
+     * @param ocrTexts     每张图片的OCR文字（无图片时为空）
+     * @param retrieval    RAG检索结果，附带装填用的查询向量和分块向量（未请求RAG或无结果时文档为空）
+     * @param sessionReady 会话初始化完成（新会话的记录已写入），超时后仍继续执行
+     */
+    private record PreparedContext(List<String> ocrTexts, RetrievalResult retrieval, CompletableFuture<Void> sessionReady) {
+    }
 
     /**
      * 初始化会话（如果是新会话则创建标题）
@@ -153,7 +251,9 @@ public class AIChatService {
     private void initializeSessionIfNeeded(Long userId, String sessionId, String originQuery) {
         if (chatDialogueService.isNewSession(sessionId)) {
             try {
-                chatTitleService.createSessionWithTitle(userId, sessionId, originQuery);
+                // 会话记录同步写入，智能标题异步生成，不占用流前准备时间
+                chatTitleService.createSession(userId, sessionId, originQuery);
+                chatTitleService.generateIntelligentTitleAsync(sessionId, originQuery);
                 log.debug("新会话已初始化，sessionId: {}", sessionId);
             } catch (Exception e) {
                 log.error("初始化会话失败，sessionId: {}", sessionId, e);
@@ -339,7 +439,7 @@ public class AIChatService {
     /**
      * 处理响应流：收集内容、追加推荐、保存消息
      */
-    private Flux<String> processResponseStream(Flux<String> contentFlux,
+    private Flux<String> processResponseStream(Flux<String> contentFlux, CompletableFuture<Void> sessionReady,
                                                Long userId, String sessionId, String dialogueId, String originQuery,
                                                List<String> imageList, boolean isRagEnhanced) {
         StringBuilder fullResponse = new StringBuilder();
@@ -349,65 +449,58 @@ public class AIChatService {
                 .doOnNext(fullResponse::append)
                 .doOnError(error -> log.error("流式响应处理出错，userId: {}, sessionId: {}", userId, sessionId, error));
 
-        // 合并主响应流和推荐流（concatWith 确保主响应流完成后才订阅推荐流）
+        // 流结束时只做一次入队，消息保存和标签分析由后处理队列的worker完成，不占用流线程；
+        // 会话初始化超时降级时，等会话记录写入后再入队，避免消息和会话计数先于会话记录写入
         return mainResponseFlux
-                .doOnComplete(() -> {
-                    String completeResponse = fullResponse.toString();
-                    // 保存消息
-                    saveMessages(userId, sessionId, dialogueId, originQuery, imageList, completeResponse, isRagEnhanced);
-                    // 异步分析聊天内容并更新用户标签
-                    analyzeChatContentAsync(userId, sessionId, originQuery, completeResponse);
-                });
-    }
-
-    /**
-     * 保存用户消息和助手消息
-     * 使用前端传入的dialogueId关联一轮完整对话
-     */
-    private void saveMessages(Long userId, String sessionId, String dialogueId, String originQuery,
-                              List<String> imageList, String completeResponse, boolean isRagEnhanced) {
-        try {
-            chatMessageService.saveUserMessage(sessionId, dialogueId, userId, originQuery, imageList);
-            chatMessageService.saveAssistantMessage(sessionId, dialogueId, userId, completeResponse, isRagEnhanced);
-            log.debug("消息已保存，sessionId: {}, dialogueId: {}", sessionId, dialogueId);
-        } catch (Exception e) {
-            log.error("保存消息失败，sessionId: {}, dialogueId: {}", sessionId, dialogueId, e);
-        }
+                .doOnComplete(() -> sessionReady.whenComplete((ignored, error) ->
+                        chatPostProcessService.submitTurn(userId, sessionId, dialogueId, originQuery,
+                                imageList, fullResponse.toString(), isRagEnhanced)));
     }
 
     /**
-     * 使用OCR结果增强查询
-     * 有图片就解析OCR文字并附加到query，没有图片直接返回原query
+     * 提取图片OCR文字，用于增强查询
+     * 按图片顺序返回每张图片的OCR文字，没有图片时返回空列表
      */
-    private String enhanceQueryWithOCR(String query, List<String> imageList) {
-        // 没有图片，直接返回原始查询
+    private List<String> extractOcrText(List<String> imageList) {
+        // 没有图片，直接返回
         if (imageList == null || imageList.isEmpty()) {
-            return query;
+            return List.of();
         }
 
         log.info("检测到{}张图片，提取OCR文字增强查询", imageList.size());
-        StringBuilder enhancedQuery = new StringBuilder(query);
+        List<String> ocrTexts = new ArrayList<>();
 
+        // 一次批量查询所有图片的OCR结果，作为本次请求内的缓存（重复URL不会重复查询）
+        Map<String, Image> ocrCache = imageService.findOcrByUrls(imageList);
         for (String imageUrl : imageList) {
-            Image image = imageService.findByUrl(imageUrl);
+            Image image = ocrCache.get(imageUrl);
             if (image != null && StringUtils.hasText(image.getOcrText())) {
-                enhancedQuery.append("\n\n从图片中提取的文字：\n").append(image.getOcrText());
+                ocrTexts.add(image.getOcrText());
                 log.debug("成功提取图片OCR文字: {}", imageUrl);
             } else {
                 log.warn("图片OCR未完成或文字为空: {}", imageUrl);
             }
         }
 
-        return enhancedQuery.toString();
+        return ocrTexts;
     }
 
-    private String buildRagPrompt(String userQuery, List<Document> docs) {
-        if (docs.isEmpty()) {
+    /**
+     * 需要追加到query后的OCR文本，没有OCR文字时返回空串
+     */
+    private String formatOcrText(List<String> ocrTexts) {
+        StringBuilder ocrText = new StringBuilder();
+        for (String text : ocrTexts) {
+            ocrText.append("\n\n从图片中提取的文字：\n").append(text);
+        }
+        return ocrText.toString();
+    }
+
+    private String buildRagPrompt(String userQuery, List<String> passages) {
+        if (passages.isEmpty()) {
             return userQuery; // 没有相关文档时使用原始查询
         }
-        String context = docs.stream()
-                .map(Document::getText)
-                .collect(Collectors.joining("\n\n"));
+        String context = String.join("\n\n", passages);
 
         return String.format("""
                 基于以下参考文档回答用户问题。如果文档中没有相关信息，请基于你的知识回答，并说明信息来源。
@@ -420,22 +513,4 @@ public class AIChatService {
                 请提供准确、有用的回答：
                 """, context, userQuery);
     }
-
-
-    /**
-     * 异步分析聊天内容并更新用户标签
-     */
-    @Async
-    public void analyzeChatContentAsync(Long userId, String sessionId, String userQuery, String assistantResponse) {
-        try {
-            // 合并用户问题和AI回答作为分析内容
-            String combinedContent = String.format("用户问题：%s\nAI回答：%s", userQuery, assistantResponse);
-            // 分析聊天内容并更新标签
-            chatAnalysisHelper.analyzeChatSession(userId, sessionId, combinedContent);
-
-            log.info("聊天内容分析完成，userId: {}, sessionId: {}", userId, sessionId);
-        } catch (Exception e) {
-            log.error("聊天内容分析失败，userId: {}, sessionId: {}", userId, sessionId, e);
-        }
-    }
 }
@@ -4,7 +4,7 @@ package com.cloud.ai.chat.service.impl;
 import com.cloud.ai.chat.repository.ChatSessionRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.ai.chat.memory.MessageWindowChatMemory;
+import org.springframework.ai.chat.memory.ChatMemory;
 import org.springframework.ai.chat.messages.Message;
 import org.springframework.stereotype.Service;
 import org.springframework.util.CollectionUtils;
@@ -23,7 +23,7 @@ import java.util.List;
 @Slf4j
 public class ChatDialogueService {
 
-    private final MessageWindowChatMemory chatMemory;
+    private final ChatMemory chatMemory;
     private final ChatSessionRepository chatSessionRepository;
 
     /**
@@ -2,16 +2,38 @@ package com.cloud.ai.chat.service.impl;
 
 
 import com.cloud.ai.chat.domain.ChatMessage;
+import com.cloud.ai.chat.domain.ConversationPage;
+import com.cloud.ai.chat.domain.ConversationTurn;
 import com.cloud.ai.chat.repository.ChatMessageRepository;
+import lombok.Data;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.bson.types.ObjectId;
 import org.json.JSONArray;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.stereotype.Service;
 
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
 
 /**
  * 聊天消息服务
@@ -27,6 +49,8 @@ import java.util.Optional;
 public class ChatMessageService {
 
     private final ChatMessageRepository chatMessageRepository;
+    private final ChatMessageWriteBuffer chatMessageWriteBuffer;
+    private final MongoTemplate mongoTemplate;
 
     @Value("${ai.guide:true}")
     private boolean aiGuide;
@@ -53,7 +77,7 @@ public class ChatMessageService {
     public void saveUserMessage(String sessionId, String dialogueId, Long userId, String content, List<String> imageUrls) {
         try {
             ChatMessage message = new ChatMessage(sessionId, dialogueId, userId, ChatMessage.MessageType.USER, content, imageUrls);
-            chatMessageRepository.save(message);
+            chatMessageWriteBuffer.add(message);
             log.debug("已保存用户消息到MongoDB: sessionId={}, dialogueId={}, imageUrls={}", sessionId, dialogueId, imageUrls != null ? imageUrls.size() : 0);
         } catch (Exception e) {
             log.error("保存用户消息到MongoDB失败: sessionId={}, dialogueId={}", sessionId, dialogueId, e);
@@ -74,7 +98,7 @@ public class ChatMessageService {
         try {
             JSONArray recommendationsJson = new JSONArray(recommendations);
             ChatMessage message = new ChatMessage(sessionId, dialogueId, userId, ChatMessage.MessageType.RECOMMENDATIONS, recommendationsJson.toString());
-            chatMessageRepository.save(message);
+            chatMessageWriteBuffer.add(message);
             log.debug("已保存推荐消息到MongoDB: sessionId={}, dialogueId={}, count={}", sessionId, dialogueId, recommendations.size());
         } catch (Exception e) {
             log.error("保存推荐消息到MongoDB失败: sessionId={}, dialogueId={}", sessionId, dialogueId, e);
@@ -97,7 +121,9 @@ public class ChatMessageService {
         }
 
         try {
-            List<ChatMessage> chatMessages = chatMessageRepository.findBySessionIdAndDialogueIdAndUserId(sessionId, dialogueId, userId);
+            List<ChatMessage> chatMessages = mergePending(
+                    msg -> Objects.equals(sessionId, msg.getSessionId()) && Objects.equals(dialogueId, msg.getDialogueId()) && Objects.equals(userId, msg.getUserId()),
+                    () -> chatMessageRepository.findBySessionIdAndDialogueIdAndUserId(sessionId, dialogueId, userId));
 
             // 查找RECOMMENDATIONS类型的消息
             Optional<ChatMessage> recommendationMessage = chatMessages.stream()
@@ -139,7 +165,7 @@ public class ChatMessageService {
     public String saveAssistantMessage(String sessionId, String dialogueId, Long userId, String content, Boolean isRagEnhanced) {
         try {
             ChatMessage message = new ChatMessage(sessionId, dialogueId, userId, ChatMessage.MessageType.ASSISTANT, content, isRagEnhanced);
-            chatMessageRepository.save(message);
+            chatMessageWriteBuffer.add(message);
             log.debug("已保存助手回复到MongoDB: sessionId={}, dialogueId={}, isRagEnhanced={}", sessionId, dialogueId, isRagEnhanced);
             return dialogueId;
         } catch (Exception e) {
@@ -149,18 +175,131 @@ public class ChatMessageService {
     }
 
     /**
-     * 获取会话历史记录
-     * 因为RAG 会有提问增强 这里做职责分离
+     * 保存一轮对话的用户消息和助手回复
+     * 消息进入写缓冲，与其它会话的消息合并批量写入；返回的Future在两条消息落库后完成，调用方据此确认任务
+     * 消息ID由调用方预先生成，重复写入会被忽略，不会产生重复消息
      */
-    public List<ChatMessage> getSessionHistory(String sessionId) {
-        try {
-            List<ChatMessage> chatMessages = chatMessageRepository.findBySessionIdOrderByCreatedAtAsc(sessionId);
-            log.info("chatMessages = {}", chatMessages);
-            return chatMessages;
-        } catch (Exception e) {
-            log.error("获取会话历史记录失败: sessionId={}", sessionId, e);
-            return List.of();
+    public CompletableFuture<Void> saveTurnMessages(ChatMessage userMessage, ChatMessage assistantMessage) {
+        CompletableFuture<Void> saved = chatMessageWriteBuffer.addAllAcked(List.of(userMessage, assistantMessage));
+        log.debug("对话消息已进入写缓冲: sessionId={}, dialogueId={}", userMessage.getSessionId(), userMessage.getDialogueId());
+        return saved;
+    }
+
+    /**
+     * 分页获取会话的对话历史（游标分页）
+     * 以用户消息作为每轮对话的起点，按 (created_at, _id) 倒序做keyset分页，每次只读取一页的对话
+     * 1. 通过 (session_id, created_at) 索引定位本页的dialogueId
+     * 2. 通过聚合按dialogueId分组，只投影前端展示需要的字段
+     *
+     * @param sessionId 会话ID
+     * @param cursor    上一页返回的nextCursor，为空时从最新的对话开始
+     * @param size      每页对话轮数
+     */
+    public ConversationPage getConversationPage(String sessionId, String cursor, int size) {
+        HistoryCursor before = HistoryCursor.decode(cursor);
+
+        // 1. 定位本页对话的起点（多取一条用于判断是否还有更早的对话）
+        List<ChatMessage> starts = findDialogueStarts(sessionId, before, size + 1);
+        if (starts.isEmpty()) {
+            return ConversationPage.empty();
+        }
+        boolean hasMore = starts.size() > size;
+        List<ChatMessage> pageStarts = hasMore ? starts.subList(0, size) : starts;
+        String nextCursor = hasMore ? HistoryCursor.encode(pageStarts.get(pageStarts.size() - 1)) : null;
+
+        // 按时间升序排列本页对话
+        Map<String, ConversationTurn> turns = new LinkedHashMap<>();
+        for (int i = pageStarts.size() - 1; i >= 0; i--) {
+            String dialogueId = pageStarts.get(i).getDialogueId();
+            turns.put(dialogueId, new ConversationTurn(dialogueId));
+        }
+
+        // 2. 先读取写缓冲再聚合查询，保证读己之写
+        List<ChatMessage> pendingMessages = chatMessageWriteBuffer.getPending(
+                msg -> Objects.equals(sessionId, msg.getSessionId()) && turns.containsKey(msg.getDialogueId()));
+        for (DialogueGroup group : aggregateDialogues(sessionId, turns.keySet())) {
+            ConversationTurn turn = turns.get(group.getDialogueId());
+            if (turn != null && group.getMessages() != null) {
+                group.getMessages().forEach(turn::accept);
+            }
+        }
+        pendingMessages.forEach(msg -> turns.get(msg.getDialogueId()).acceptIfAbsent(msg));
+
+        log.debug("获取对话历史: sessionId={}, turns={}, hasMore={}", sessionId, turns.size(), hasMore);
+        return new ConversationPage(new ArrayList<>(turns.values()), nextCursor, hasMore);
+    }
+
+    /**
+     * 获取会话的完整对话历史（兼容旧接口），按时间升序
+     * 逐页读取后拼接，每页仍走游标分页的索引查询
+     *
+     * @param sessionId 会话ID
+     * @param pageSize  每次读取的对话轮数
+     */
+    public List<ConversationTurn> getConversationHistory(String sessionId, int pageSize) {
+        List<List<ConversationTurn>> pages = new ArrayList<>();
+        String cursor = null;
+        ConversationPage page;
+        do {
+            page = getConversationPage(sessionId, cursor, pageSize);
+            pages.add(page.getTurns());
+            cursor = page.getNextCursor();
+        } while (page.isHasMore());
+
+        // 页面从新到旧读取，每页内部为升序
+        List<ConversationTurn> turns = new ArrayList<>();
+        for (int i = pages.size() - 1; i >= 0; i--) {
+            turns.addAll(pages.get(i));
+        }
+        return turns;
+    }
+
+    /**
+     * 查询游标之前的用户消息（每轮对话的起点），按 (created_at, _id) 倒序
+     */
+    private List<ChatMessage> findDialogueStarts(String sessionId, HistoryCursor before, int limit) {
+        Predicate<ChatMessage> pendingFilter = msg -> Objects.equals(sessionId, msg.getSessionId())
+                && ChatMessage.MessageType.USER.equals(msg.getMessageType())
+                && msg.getDialogueId() != null
+                && (before == null || before.precedes(msg));
+        List<ChatMessage> pendingStarts = chatMessageWriteBuffer.getPending(pendingFilter);
+
+        Criteria criteria = Criteria.where("sessionId").is(sessionId)
+                .and("messageType").is(ChatMessage.MessageType.USER)
+                .and("dialogueId").ne(null);
+        if (before != null) {
+            criteria.orOperator(
+                    Criteria.where("createdAt").lt(before.createdAt()),
+                    Criteria.where("createdAt").is(before.createdAt()).and("id").lt(new ObjectId(before.id())));
         }
+        Query query = new Query(criteria)
+                .with(Sort.by(Sort.Direction.DESC, "createdAt", "id"))
+                .limit(limit);
+        query.fields().include("id", "dialogueId", "messageType", "createdAt");
+        List<ChatMessage> persisted = mongoTemplate.find(query, ChatMessage.class);
+        if (pendingStarts.isEmpty()) {
+            return persisted;
+        }
+
+        Map<String, ChatMessage> merged = new LinkedHashMap<>();
+        persisted.forEach(msg -> merged.put(msg.getId(), msg));
+        pendingStarts.forEach(msg -> merged.putIfAbsent(msg.getId(), msg));
+        return merged.values().stream()
+                .sorted(HistoryCursor.ORDER.reversed())
+                .limit(limit)
+                .toList();
+    }
+
+    /**
+     * 按dialogueId聚合本页对话的消息，组内按创建时间升序
+     */
+    private List<DialogueGroup> aggregateDialogues(String sessionId, Collection<String> dialogueIds) {
+        Aggregation aggregation = Aggregation.newAggregation(
+                Aggregation.match(Criteria.where("session_id").is(sessionId).and("dialogue_id").in(dialogueIds)),
+                Aggregation.sort(Sort.by(Sort.Direction.ASC, "created_at", "_id")),
+                Aggregation.project("dialogue_id", "message_type", "content", "created_at", "is_rag_enhanced", "image_urls"),
+                Aggregation.group("dialogue_id").push(Aggregation.ROOT).as("messages"));
+        return mongoTemplate.aggregate(aggregation, "chat_messages", DialogueGroup.class).getMappedResults();
     }
 
     /**
@@ -168,6 +307,7 @@ public class ChatMessageService {
      */
     public void deleteSessionMessages(String sessionId) {
         try {
+            chatMessageWriteBuffer.discardSession(sessionId);
             chatMessageRepository.deleteBySessionId(sessionId);
             log.info("已删除会话消息: sessionId={}", sessionId);
         } catch (Exception e) {
@@ -175,6 +315,29 @@ public class ChatMessageService {
         }
     }
 
+    /**
+     * 合并写缓冲中尚未落库的消息，保证读己之写
+     * 先读取缓冲再查询MongoDB：读取缓冲时不在其中的消息必然已经落库
+     *
+     * @param filter 缓冲消息过滤条件（与查询条件一致）
+     * @param query  MongoDB查询
+     * @return 按ID去重、按创建时间升序的消息列表
+     */
+    private List<ChatMessage> mergePending(Predicate<ChatMessage> filter, Supplier<List<ChatMessage>> query) {
+        List<ChatMessage> pendingMessages = chatMessageWriteBuffer.getPending(filter);
+        List<ChatMessage> persisted = query.get();
+        if (pendingMessages.isEmpty()) {
+            return persisted;
+        }
+
+        Map<String, ChatMessage> merged = new LinkedHashMap<>();
+        persisted.forEach(msg -> merged.put(msg.getId(), msg));
+        pendingMessages.forEach(msg -> merged.putIfAbsent(msg.getId(), msg));
+        return merged.values().stream()
+                .sorted(Comparator.comparing(ChatMessage::getCreatedAt, Comparator.nullsFirst(Comparator.naturalOrder())))
+                .toList();
+    }
+
     /**
      * 获取用户的所有会话消息
      * 后续做数据分析可以用这个接口
@@ -187,4 +350,63 @@ public class ChatMessageService {
             return List.of();
         }
     }
+
+    /**
+     * 按dialogueId聚合的结果
+     */
+    @Data
+    static class DialogueGroup {
+
+        @Id
+        private String dialogueId;
+
+        private List<ChatMessage> messages;
+    }
+
+    /**
+     * 对话历史游标：上一页最早一轮对话的用户消息 (created_at, _id)
+     * 格式：{epochMillis}_{messageId}
+     */
+    record HistoryCursor(LocalDateTime createdAt, String id) {
+
+        static final Comparator<ChatMessage> ORDER = Comparator
+                .comparing(ChatMessage::getCreatedAt, Comparator.nullsFirst(Comparator.naturalOrder()))
+                .thenComparing(ChatMessage::getId);
+
+        static String encode(ChatMessage message) {
+            long epochMillis = message.getCreatedAt().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+            return epochMillis + "_" + message.getId();
+        }
+
+        static HistoryCursor decode(String cursor) {
+            if (cursor == null || cursor.isBlank()) {
+                return null;
+            }
+            int separator = cursor.indexOf('_');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("无效的分页游标: " + cursor);
+            }
+            try {
+                long epochMillis = Long.parseLong(cursor.substring(0, separator));
+                String id = cursor.substring(separator + 1);
+                if (!ObjectId.isValid(id)) {
+                    throw new IllegalArgumentException("无效的分页游标: " + cursor);
+                }
+                return new HistoryCursor(LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneId.systemDefault()), id);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("无效的分页游标: " + cursor, e);
+            }
+        }
+
+        /**
+         * 消息是否排在游标之前（更早），MongoDB时间精度为毫秒，比较前对齐精度
+         */
+        boolean precedes(ChatMessage message) {
+            if (message.getCreatedAt() == null) {
+                return true;
+            }
+            int compare = message.getCreatedAt().truncatedTo(ChronoUnit.MILLIS).compareTo(createdAt);
+            return compare < 0 || (compare == 0 && message.getId().compareTo(id) < 0);
+        }
+    }
 }
@@ -0,0 +1,285 @@
+package com.cloud.ai.chat.service.impl;
+
+
+import com.cloud.ai.chat.domain.ChatMessage;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Predicate;
+
+/**
+ * @author shengjie.tang
+ * @version 1.0.0
+ * @description: 聊天消息写缓冲（write-behind）
+ * <p>
+ * 多个会话的消息先进入有界缓冲区，按批量大小或固定间隔合并为一次无序 insertMany 写入MongoDB。
+ * <p>
+ * 1. 内存有界：未落库消息达到容量时调用方直接同步写入，不再继续堆积
+ * 2. 读己之写：消息从进入缓冲到确认落库之前一直保留在pending中，查询时与MongoDB结果合并
+ * 3. 幂等：消息ID在入缓冲时生成，重复写入（重复键）视为成功
+ * 4. 不丢消息：写入失败的消息放回缓冲区等待下次刷盘，不因缓冲区满而丢弃
+ * 5. 关闭时刷盘：应用关闭前将缓冲区全部写入
+ * 6. 落库确认：需要确认落库的场景（如对话后处理队列）使用 addAllAcked，消息仍随批量写入，所在批次写入成功后Future完成
+ * @date 2025/11/21 10:00
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ChatMessageWriteBuffer {
+
+    private static final int DUPLICATE_KEY_ERROR = 11000;
+
+    private final MongoTemplate mongoTemplate;
+
+    @Value("${ai.chat.message-buffer.capacity:5000}")
+    private int capacity;
+
+    @Value("${ai.chat.message-buffer.batch-size:200}")
+    private int batchSize;
+
+    /**
+     * 缓冲区本身不限长，容量由pending数量控制，写入失败的消息总能放回
+     */
+    private final BlockingQueue<ChatMessage> buffer = new LinkedBlockingQueue<>();
+
+    /**
+     * 已进入缓冲但尚未确认落库的消息（id -> 消息），用于读己之写
+     */
+    private final Map<String, ChatMessage> pending = new ConcurrentHashMap<>();
+
+    /**
+     * 等待落库确认的消息（id -> Future），写入成功（含重复键）后完成并移除
+     */
+    private final Map<String, CompletableFuture<Void>> acks = new ConcurrentHashMap<>();
+
+    private volatile boolean closed;
+
+    @PostConstruct
+    public void init() {
+        log.info("聊天消息写缓冲已启动，capacity: {}, batchSize: {}", capacity, batchSize);
+    }
+
+    /**
+     * 添加消息到写缓冲
+     */
+    public void add(ChatMessage message) {
+        addAll(List.of(message));
+    }
+
+    /**
+     * 批量添加消息到写缓冲
+     */
+    public void addAll(Collection<ChatMessage> messages) {
+        List<ChatMessage> overflow = new ArrayList<>();
+        for (ChatMessage message : messages) {
+            assignId(message);
+            if (closed || pending.size() >= capacity) {
+                overflow.add(message);
+                continue;
+            }
+            // 先登记pending再入队，保证任何时刻查询都能看到该消息
+            pending.put(message.getId(), message);
+            buffer.offer(message);
+        }
+
+        if (buffer.size() >= batchSize) {
+            flush();
+        }
+        // 缓冲区已满或已关闭：由调用方线程同步写入，失败时抛出异常
+        if (!overflow.isEmpty()) {
+            writeNow(overflow);
+        }
+    }
+
+    /**
+     * 批量添加消息到写缓冲，返回的Future在这些消息全部落库后完成
+     * 写入失败的消息留在缓冲区重试，Future保持未完成，调用方自行决定等待时长；重复提交同一ID的消息共用同一个Future
+     */
+    public CompletableFuture<Void> addAllAcked(Collection<ChatMessage> messages) {
+        List<CompletableFuture<Void>> futures = new ArrayList<>(messages.size());
+        for (ChatMessage message : messages) {
+            assignId(message);
+            futures.add(acks.computeIfAbsent(message.getId(), id -> new CompletableFuture<>()));
+        }
+        addAll(messages);
+        return CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new));
+    }
+
+    /**
+     * 同步写入MongoDB，不经过缓冲区
+     * 重复键视为已写入（消息ID预先生成，重试安全），其它失败时抛出异常由调用方重试
+     */
+    public void writeNow(List<ChatMessage> messages) {
+        messages.forEach(this::assignId);
+        try {
+            mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, ChatMessage.class)
+                    .insert(messages)
+                    .execute();
+        } catch (BulkOperationException e) {
+            List<ChatMessage> failed = failedMessages(messages, e);
+            if (!failed.isEmpty()) {
+                acknowledge(messages.stream().filter(message -> !failed.contains(message)).toList());
+                failAcks(failed, e);
+                throw e;
+            }
+        } catch (RuntimeException e) {
+            failAcks(messages, e);
+            throw e;
+        }
+        acknowledge(messages);
+        log.debug("同步写入聊天消息: {}", messages.size());
+    }
+
+    /**
+     * 定时刷盘
+     */
+    @Scheduled(fixedDelayString = "${ai.chat.message-buffer.flush-interval-ms:200}")
+    public void scheduledFlush() {
+        flush();
+    }
+
+    /**
+     * 将缓冲区中的消息按批写入MongoDB
+     */
+    public void flush() {
+        // 只处理本次开始时已在缓冲区中的消息，写入失败放回的消息留到下次刷盘
+        int remaining = buffer.size();
+        List<ChatMessage> batch = new ArrayList<>(batchSize);
+        while (remaining > 0 && buffer.drainTo(batch, Math.min(batchSize, remaining)) > 0) {
+            remaining -= batch.size();
+            write(batch);
+            batch = new ArrayList<>(batchSize);
+        }
+    }
+
+    /**
+     * 获取尚未落库的消息
+     *
+     * @param filter 过滤条件
+     */
+    public List<ChatMessage> getPending(Predicate<ChatMessage> filter) {
+        if (pending.isEmpty()) {
+            return List.of();
+        }
+        return pending.values().stream().filter(filter).toList();
+    }
+
+    /**
+     * 丢弃会话中尚未落库的消息（删除会话时使用）
+     */
+    public void discardSession(String sessionId) {
+        buffer.removeIf(message -> sessionId.equals(message.getSessionId()));
+        List<ChatMessage> discarded = pending.values().stream()
+                .filter(message -> sessionId.equals(message.getSessionId()))
+                .toList();
+        discarded.forEach(message -> pending.remove(message.getId()));
+        // 会话已删除，等待确认的调用方无需再写入
+        acknowledge(discarded);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        closed = true;
+        flush();
+        if (pending.isEmpty()) {
+            log.info("聊天消息写缓冲已关闭");
+        } else {
+            log.error("聊天消息写缓冲已关闭，仍有 {} 条消息未能落库", pending.size());
+        }
+    }
+
+    /**
+     * 无序批量插入，重复键视为已写入；其它失败时放回缓冲区等待下次重试
+     */
+    private void write(List<ChatMessage> batch) {
+        try {
+            mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, ChatMessage.class)
+                    .insert(batch)
+                    .execute();
+            batch.forEach(message -> pending.remove(message.getId()));
+            acknowledge(batch);
+            log.debug("批量写入聊天消息: {}", batch.size());
+        } catch (BulkOperationException e) {
+            List<ChatMessage> failed = failedMessages(batch, e);
+            List<ChatMessage> written = batch.stream()
+                    .filter(message -> !failed.contains(message))
+                    .toList();
+            written.forEach(message -> pending.remove(message.getId()));
+            acknowledge(written);
+            requeue(failed, e);
+        } catch (Exception e) {
+            requeue(batch, e);
+        }
+    }
+
+    /**
+     * 批量写入中除重复键以外写入失败的消息
+     */
+    private static List<ChatMessage> failedMessages(List<ChatMessage> batch, BulkOperationException e) {
+        return e.getErrors().stream()
+                .filter(error -> error.getCode() != DUPLICATE_KEY_ERROR)
+                .map(error -> batch.get(error.getIndex()))
+                .toList();
+    }
+
+    /**
+     * 写入失败的消息放回缓冲区（仍保留在pending中），等待下次刷盘重试
+     */
+    private void requeue(List<ChatMessage> failed, Exception cause) {
+        if (failed.isEmpty()) {
+            return;
+        }
+        buffer.addAll(failed);
+        log.warn("批量写入聊天消息失败，{} 条消息已放回缓冲区等待重试", failed.size(), cause);
+    }
+
+    /**
+     * 完成已落库消息的确认
+     */
+    private void acknowledge(List<ChatMessage> written) {
+        if (acks.isEmpty()) {
+            return;
+        }
+        for (ChatMessage message : written) {
+            CompletableFuture<Void> ack = acks.remove(message.getId());
+            if (ack != null) {
+                ack.complete(null);
+            }
+        }
+    }
+
+    /**
+     * 同步写入失败时通知等待确认的调用方（缓冲区写入失败会重试，不通知）
+     */
+    private void failAcks(List<ChatMessage> failed, Exception cause) {
+        for (ChatMessage message : failed) {
+            CompletableFuture<Void> ack = acks.remove(message.getId());
+            if (ack != null) {
+                ack.completeExceptionally(cause);
+            }
+        }
+    }
+
+    private void assignId(ChatMessage message) {
+        if (message.getId() == null) {
+            message.setId(new ObjectId().toHexString());
+        }
+    }
+}
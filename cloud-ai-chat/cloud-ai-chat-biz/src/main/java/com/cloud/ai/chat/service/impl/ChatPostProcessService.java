@@ -0,0 +1,397 @@
+package com.cloud.ai.chat.service.impl;
+
+
+import com.cloud.ai.chat.domain.ChatMessage;
+import com.cloud.ai.chat.domain.ChatTurnTask;
+import com.cloud.ai.chat.helper.ChatAnalysisHelper;
+import com.cloud.ai.chat.helper.ChatSuggestionHelper;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.types.ObjectId;
+import org.redisson.api.RBlockingDeque;
+import org.redisson.api.RDeque;
+import org.redisson.api.RScoredSortedSet;
+import org.redisson.api.RedissonClient;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author shengjie.tang
+ * @version 1.0.0
+ * @description: 对话后处理服务 - 基于Redis的持久化工作队列
+ * <p>
+ * 流式响应结束后，消息持久化、标签分析、话题引导都作为任务投递到Redis队列，
+ * 由独立的worker线程池消费，流的完成回调只做一次入队操作。
+ * <p>
+ * 可靠性：
+ * 1. 入队使用LPUSH，消费使用BRPOPLPUSH移入本实例的processing列表，处理成功后移除
+ * 2. 每个实例启动时生成唯一ID并定时心跳，心跳超时的实例由存活实例回收：processing列表中未完成的任务放回队列
+ * 3. 失败任务重新入队，超过最大重试次数进入死信队列；写入成功后才从processing列表移除，写入失败时留待下次心跳重试
+ * 4. 队列超过容量时拒绝入队，降级为直接保存消息并放弃标签分析
+ * 注意：对话消息由worker放入写缓冲，与其它会话的消息合并批量写入MongoDB（预分配ID，重复写入视为成功）；
+ * 标签分析与刷盘同时进行，消息所在批次写入成功后才确认任务，等待超过persist-timeout-ms时任务重试
+ * @date 2025/11/20 14:00
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ChatPostProcessService {
+
+    private static final String QUEUE_KEY = "chat:post-process:queue";
+    private static final String PROCESSING_KEY_PREFIX = "chat:post-process:processing:";
+    private static final String DEAD_LETTER_KEY = "chat:post-process:dead";
+    /**
+     * 实例心跳（member: 实例ID, score: 最近心跳时间）
+     */
+    private static final String INSTANCES_KEY = "chat:post-process:instances";
+
+    private static final String REJECTED_METRIC = "ai.chat.post-process.rejected";
+    private static final String FAILED_METRIC = "ai.chat.post-process.failed";
+
+    private final RedissonClient redissonClient;
+    private final ChatMessageService chatMessageService;
+    private final ChatSessionService chatSessionService;
+    private final ChatAnalysisHelper chatAnalysisHelper;
+    private final ChatSuggestionHelper chatSuggestionHelper;
+    private final ThreadPoolTaskExecutor chatPostProcessExecutor;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${ai.chat.post-process.capacity:10000}")
+    private int capacity;
+
+    @Value("${ai.chat.post-process.workers:4}")
+    private int workers;
+
+    @Value("${ai.chat.post-process.max-attempts:3}")
+    private int maxAttempts;
+
+    @Value("${ai.chat.post-process.instance-timeout-ms:60000}")
+    private long instanceTimeoutMs;
+
+    @Value("${ai.chat.post-process.persist-timeout-ms:5000}")
+    private long persistTimeoutMs;
+
+    @Value("${spring.application.name:cloud-ai-chat}")
+    private String applicationName;
+
+    /**
+     * 实例ID：每个JVM唯一，同一主机上的多个实例、重建后换了主机名的Pod互不影响
+     */
+    private String instanceId;
+    private RBlockingDeque<ChatTurnTask> queue;
+    private RDeque<ChatTurnTask> processing;
+    private RDeque<ChatTurnTask> deadLetter;
+    private RScoredSortedSet<String> instances;
+    private volatile boolean running;
+
+    /**
+     * 已处理完但未能确认（写入重试/死信队列或移出processing列表失败）的任务，心跳时重试
+     */
+    private final Queue<Settlement> unsettled = new ConcurrentLinkedQueue<>();
+
+    @PostConstruct
+    public void start() {
+        instanceId = applicationName + ":" + UUID.randomUUID();
+        queue = redissonClient.getBlockingDeque(QUEUE_KEY);
+        deadLetter = redissonClient.getDeque(DEAD_LETTER_KEY);
+        instances = redissonClient.getScoredSortedSet(INSTANCES_KEY);
+        processing = redissonClient.getDeque(processingKey(instanceId));
+
+        try {
+            instances.add(System.currentTimeMillis(), instanceId);
+            reapDeadInstances();
+        } catch (Exception e) {
+            log.error("注册对话后处理实例失败", e);
+        }
+
+        running = true;
+        for (int i = 0; i < workers; i++) {
+            chatPostProcessExecutor.execute(this::consumeLoop);
+        }
+        log.info("对话后处理队列已启动，instanceId: {}, workers: {}, capacity: {}, maxAttempts: {}",
+                instanceId, workers, capacity, maxAttempts);
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+    }
+
+    /**
+     * 定时心跳：刷新本实例心跳，重试未确认的任务，回收心跳超时实例的任务
+     */
+    @Scheduled(fixedDelayString = "${ai.chat.post-process.heartbeat-interval-ms:10000}")
+    public void heartbeat() {
+        if (!running) {
+            return;
+        }
+        try {
+            instances.add(System.currentTimeMillis(), instanceId);
+            retryUnsettled();
+            reapDeadInstances();
+        } catch (Exception e) {
+            log.error("对话后处理实例心跳失败，instanceId: {}", instanceId, e);
+        }
+    }
+
+    /**
+     * 提交一轮完成的对话（保存消息 + 分析标签）
+     */
+    public void submitTurn(Long userId, String sessionId, String dialogueId, String originQuery,
+                           List<String> imageList, String response, boolean isRagEnhanced) {
+        ChatTurnTask task = ChatTurnTask.builder()
+                .taskId(UUID.randomUUID().toString())
+                .taskType(ChatTurnTask.TaskType.TURN_COMPLETED)
+                .userId(userId)
+                .sessionId(sessionId)
+                .dialogueId(dialogueId)
+                .originQuery(originQuery)
+                .imageUrls(imageList)
+                .response(response)
+                .ragEnhanced(isRagEnhanced)
+                .userMessageId(new ObjectId().toHexString())
+                .assistantMessageId(new ObjectId().toHexString())
+                .completedAt(System.currentTimeMillis())
+                .build();
+
+        if (!enqueue(task)) {
+            // 队列不可用：降级为直接保存消息（写缓冲负责重试），放弃标签分析，保证对话记录不丢失
+            try {
+                persistMessages(task);
+                chatSessionService.touch(sessionId, userId);
+            } catch (Exception e) {
+                log.error("降级保存消息失败，sessionId: {}, dialogueId: {}", sessionId, dialogueId, e);
+            }
+        }
+    }
+
+    /**
+     * 提交话题引导生成任务
+     */
+    public void submitSuggestion(String query, String sessionId, String dialogueId, Long userId) {
+        ChatTurnTask task = ChatTurnTask.builder()
+                .taskId(UUID.randomUUID().toString())
+                .taskType(ChatTurnTask.TaskType.SUGGESTION)
+                .userId(userId)
+                .sessionId(sessionId)
+                .dialogueId(dialogueId)
+                .query(query)
+                .completedAt(System.currentTimeMillis())
+                .build();
+        enqueue(task);
+    }
+
+    /**
+     * 入队，队列已满或Redis异常时返回false
+     */
+    private boolean enqueue(ChatTurnTask task) {
+        try {
+            if (queue.size() >= capacity) {
+                meterRegistry.counter(REJECTED_METRIC, "type", task.getTaskType().name()).increment();
+                log.warn("对话后处理队列已满，拒绝任务: type={}, sessionId={}, capacity={}",
+                        task.getTaskType(), task.getSessionId(), capacity);
+                return false;
+            }
+            queue.offerFirst(task);
+            return true;
+        } catch (Exception e) {
+            meterRegistry.counter(REJECTED_METRIC, "type", task.getTaskType().name()).increment();
+            log.error("对话后处理任务入队失败: type={}, sessionId={}", task.getTaskType(), task.getSessionId(), e);
+            return false;
+        }
+    }
+
+    /**
+     * worker消费循环
+     */
+    private void consumeLoop() {
+        while (running) {
+            ChatTurnTask task;
+            try {
+                task = queue.pollLastAndOfferFirstTo(processing.getName(), 1, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.error("拉取对话后处理任务失败", e);
+                sleepQuietly();
+                continue;
+            }
+            if (task != null) {
+                process(task);
+            }
+        }
+    }
+
+    /**
+     * 处理单个任务，失败时重试或进入死信队列
+     */
+    private void process(ChatTurnTask task) {
+        boolean persisted = task.isPersisted();
+        boolean analyzed = task.isAnalyzed();
+        ChatTurnTask retry = null;
+        try {
+            switch (task.getTaskType()) {
+                case TURN_COMPLETED -> {
+                    // 消息进入写缓冲后先做标签分析，分析期间消息随批量刷盘落库，再等待落库确认
+                    CompletableFuture<Void> saved = persisted ? null : persistMessages(task);
+                    try {
+                        if (!analyzed) {
+                            analyzeChatContent(task);
+                            analyzed = true;
+                        }
+                    } finally {
+                        if (saved != null) {
+                            awaitPersisted(task, saved);
+                            persisted = true;
+                        }
+                    }
+                }
+                case SUGGESTION -> chatSuggestionHelper.createSuggestion(
+                        task.getQuery(), task.getSessionId(), task.getDialogueId(), task.getUserId());
+            }
+        } catch (Exception e) {
+            meterRegistry.counter(FAILED_METRIC, "type", task.getTaskType().name()).increment();
+            retry = task.toBuilder()
+                    .persisted(persisted)
+                    .analyzed(analyzed)
+                    .attempts(task.getAttempts() + 1)
+                    .build();
+            log.warn("对话后处理任务失败: taskId={}, type={}, attempts={}",
+                    task.getTaskId(), task.getTaskType(), retry.getAttempts(), e);
+        }
+        settle(new Settlement(task, retry));
+    }
+
+    /**
+     * 确认任务：失败任务先写入重试队列或死信队列，写入成功后才从processing列表移除
+     * 任一步骤失败时任务仍在processing列表中，记录到unsettled等待心跳重试（实例宕机时由其它实例回收）
+     */
+    private void settle(Settlement settlement) {
+        ChatTurnTask retry = settlement.retry();
+        try {
+            if (retry != null) {
+                if (retry.getAttempts() >= maxAttempts) {
+                    deadLetter.offerFirst(retry);
+                    log.error("对话后处理任务超过最大重试次数，进入死信队列: taskId={}, type={}, sessionId={}",
+                            retry.getTaskId(), retry.getTaskType(), retry.getSessionId());
+                } else {
+                    queue.offerFirst(retry);
+                }
+                retry = null;
+            }
+            processing.remove(settlement.task());
+        } catch (Exception e) {
+            log.error("对话后处理任务确认失败，等待下次心跳重试: taskId={}", settlement.task().getTaskId(), e);
+            unsettled.offer(new Settlement(settlement.task(), retry));
+        }
+    }
+
+    private void retryUnsettled() {
+        for (int i = unsettled.size(); i > 0; i--) {
+            Settlement settlement = unsettled.poll();
+            if (settlement == null) {
+                return;
+            }
+            settle(settlement);
+        }
+    }
+
+    /**
+     * 保存用户消息和助手消息（进入写缓冲），返回的Future在两条消息落库后完成
+     * 使用前端传入的dialogueId关联一轮完整对话
+     */
+    private CompletableFuture<Void> persistMessages(ChatTurnTask task) {
+        LocalDateTime createdAt = LocalDateTime.ofInstant(Instant.ofEpochMilli(task.getCompletedAt()), ZoneId.systemDefault());
+
+        ChatMessage userMessage = new ChatMessage(task.getSessionId(), task.getDialogueId(), task.getUserId(),
+                ChatMessage.MessageType.USER, task.getOriginQuery(), task.getImageUrls());
+        userMessage.setId(task.getUserMessageId());
+        userMessage.setCreatedAt(createdAt);
+
+        ChatMessage assistantMessage = new ChatMessage(task.getSessionId(), task.getDialogueId(), task.getUserId(),
+                ChatMessage.MessageType.ASSISTANT, task.getResponse(), task.isRagEnhanced());
+        assistantMessage.setId(task.getAssistantMessageId());
+        assistantMessage.setCreatedAt(createdAt);
+
+        return chatMessageService.saveTurnMessages(userMessage, assistantMessage);
+    }
+
+    /**
+     * 等待消息落库后刷新会话的更新时间，超时或写入失败时抛出异常由任务重试（消息仍在写缓冲中，重复写入会被忽略）
+     */
+    private void awaitPersisted(ChatTurnTask task, CompletableFuture<Void> saved) throws Exception {
+        saved.get(persistTimeoutMs, TimeUnit.MILLISECONDS);
+        chatSessionService.touch(task.getSessionId(), task.getUserId());
+        log.debug("消息已保存，sessionId: {}, dialogueId: {}", task.getSessionId(), task.getDialogueId());
+    }
+
+    /**
+     * 分析聊天内容并更新用户标签
+     */
+    private void analyzeChatContent(ChatTurnTask task) {
+        // 合并用户问题和AI回答作为分析内容
+        String combinedContent = String.format("用户问题：%s\nAI回答：%s", task.getOriginQuery(), task.getResponse());
+        // 分析聊天内容并更新标签
+        chatAnalysisHelper.analyzeChatSession(task.getUserId(), task.getSessionId(), combinedContent);
+        log.info("聊天内容分析完成，userId: {}, sessionId: {}", task.getUserId(), task.getSessionId());
+    }
+
+    /**
+     * 回收心跳超时实例processing列表中未完成的任务
+     * 逐条原子移回队列（RPOPLPUSH），多个实例同时回收同一列表也不会重复或丢失；列表清空后注销该实例
+     */
+    private void reapDeadInstances() {
+        long expiredBefore = System.currentTimeMillis() - instanceTimeoutMs;
+        for (String deadInstanceId : instances.valueRange(0, true, expiredBefore, true)) {
+            if (deadInstanceId.equals(instanceId)) {
+                continue;
+            }
+            RDeque<ChatTurnTask> deadProcessing = redissonClient.getDeque(processingKey(deadInstanceId));
+            int recovered = 0;
+            while (deadProcessing.pollLastAndOfferFirstTo(QUEUE_KEY) != null) {
+                recovered++;
+            }
+            instances.remove(deadInstanceId);
+            if (recovered > 0) {
+                log.warn("已回收实例 {} 的 {} 个未完成的对话后处理任务", deadInstanceId, recovered);
+            }
+        }
+    }
+
+    private static String processingKey(String instanceId) {
+        return PROCESSING_KEY_PREFIX + instanceId;
+    }
+
+    private void sleepQuietly() {
+        try {
+            TimeUnit.SECONDS.sleep(1);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 待确认的任务
+     *
+     * @param task  processing列表中的原任务
+     * @param retry 需要写入重试或死信队列的任务，处理成功或已写入时为null
+     */
+    private record Settlement(ChatTurnTask task, ChatTurnTask retry) {
+    }
+}
@@ -0,0 +1,112 @@
+package com.cloud.ai.chat.service.impl;
+
+
+import com.cloud.ai.chat.domain.ChatSession;
+import com.cloud.ai.chat.domain.ChatSessionPage;
+import com.cloud.ai.chat.repository.ChatSessionRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @author shengjie.tang
+ * @version 1.0.0
+ * @description: 会话列表服务
+ * <p>
+ * 1. 按 (user_id, updated_at, id) 做keyset分页，依赖索引 idx_chat_sessions_user_updated
+ * 2. 每个用户的第一页缓存在 sessions 缓存中，会话创建、改名、有新消息时失效
+ * @date 2025/11/22 15:00
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ChatSessionService {
+
+    public static final String SESSIONS_CACHE = "sessions";
+
+    private final ChatSessionRepository chatSessionRepository;
+
+    @Value("${ai.chat.session.page-size:20}")
+    private int pageSize;
+
+    /**
+     * 分页获取用户会话列表
+     * 不带游标的第一页会被缓存
+     *
+     * @param userId 用户ID
+     * @param cursor 上一页返回的nextCursor，为空时获取第一页
+     */
+    @Cacheable(value = SESSIONS_CACHE, key = "#userId", condition = "#cursor == null || #cursor.isBlank()")
+    public ChatSessionPage getUserSessions(Long userId, String cursor) {
+        SessionCursor after = SessionCursor.decode(cursor);
+        // 多取一条用于判断是否还有下一页
+        PageRequest limit = PageRequest.ofSize(pageSize + 1);
+        List<ChatSession> sessions = after == null
+                ? chatSessionRepository.findFirstPage(userId, limit)
+                : chatSessionRepository.findPageAfter(userId, after.updatedAt(), after.id(), limit);
+
+        boolean hasMore = sessions.size() > pageSize;
+        List<ChatSession> page = hasMore ? sessions.subList(0, pageSize) : sessions;
+        String nextCursor = hasMore ? SessionCursor.encode(page.get(page.size() - 1)) : null;
+        return new ChatSessionPage(new ArrayList<>(page), nextCursor, hasMore);
+    }
+
+    /**
+     * 会话有新消息：消息数+1并刷新更新时间
+     */
+    @Transactional
+    @CacheEvict(value = SESSIONS_CACHE, key = "#userId")
+    public void touch(String sessionId, Long userId) {
+        chatSessionRepository.incrementMessageCount(sessionId);
+    }
+
+    /**
+     * 使用户会话列表第一页缓存失效（会话创建、改名、删除后调用）
+     */
+    @CacheEvict(value = SESSIONS_CACHE, key = "#userId")
+    public void evictFirstPage(Long userId) {
+        log.debug("会话列表缓存已失效: userId={}", userId);
+    }
+
+    /**
+     * 会话列表游标：上一页最后一个会话的 (updated_at, id)
+     * 格式：{epochMicros}_{id}，与数据库timestamp(6)精度一致
+     */
+    record SessionCursor(LocalDateTime updatedAt, Long id) {
+
+        static String encode(ChatSession session) {
+            LocalDateTime updatedAt = session.getUpdatedAt();
+            long epochMicros = updatedAt.toEpochSecond(ZoneOffset.UTC) * 1_000_000L + updatedAt.getNano() / 1_000;
+            return epochMicros + "_" + session.getId();
+        }
+
+        static SessionCursor decode(String cursor) {
+            if (cursor == null || cursor.isBlank()) {
+                return null;
+            }
+            int separator = cursor.indexOf('_');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("无效的分页游标: " + cursor);
+            }
+            try {
+                long epochMicros = Long.parseLong(cursor.substring(0, separator));
+                long id = Long.parseLong(cursor.substring(separator + 1));
+                LocalDateTime updatedAt = LocalDateTime.ofEpochSecond(Math.floorDiv(epochMicros, 1_000_000L),
+                        (int) Math.floorMod(epochMicros, 1_000_000L) * 1_000, ZoneOffset.UTC);
+                return new SessionCursor(updatedAt, id);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("无效的分页游标: " + cursor, e);
+            }
+        }
+    }
+}
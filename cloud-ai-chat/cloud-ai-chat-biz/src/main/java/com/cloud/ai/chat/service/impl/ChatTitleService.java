@@ -25,11 +25,14 @@ public class ChatTitleService {
 
     private final ChatSessionRepository chatSessionRepository;
     private final ModelProviderManager providerManager;
+    private final ChatSessionService chatSessionService;
 
     public ChatTitleService(ChatSessionRepository chatSessionRepository,
-                            ModelProviderManager providerManager) {
+                            ModelProviderManager providerManager,
+                            ChatSessionService chatSessionService) {
         this.chatSessionRepository = chatSessionRepository;
         this.providerManager = providerManager;
+        this.chatSessionService = chatSessionService;
     }
 
     /**
@@ -41,26 +44,19 @@ public class ChatTitleService {
     }
 
     /**
-     * 创建新会话并生成初始标题
+     * 创建新会话，使用第一条问题按规则生成临时标题
+     * 同步写入会话记录，返回后对话消息和会话计数才能关联到该会话；智能标题由调用方另行异步生成
      */
-    @Async
-    public void createSessionWithTitle(Long userId, String sessionId, String firstQuery) {
-        try {
-
-            // 1. 先创建会话记录，使用第一条问题作为临时标题
-            ChatSession session = new ChatSession();
-            session.setSessionId(sessionId);
-            session.setUserId(userId);
-            session.setFirstQuery(firstQuery);
-            // 使用简单规则生成初始标题
-            session.setTitle(generateSimpleTitle(firstQuery));
-            chatSessionRepository.save(session);
-            log.info("创建新会话: {}", sessionId);
-            // 2. 异步生成更精准的智能标题
-            generateIntelligentTitleAsync(sessionId, firstQuery);
-        } catch (Exception e) {
-            log.error("创建会话失败: {}", sessionId, e);
-        }
+    public void createSession(Long userId, String sessionId, String firstQuery) {
+        ChatSession session = new ChatSession();
+        session.setSessionId(sessionId);
+        session.setUserId(userId);
+        session.setFirstQuery(firstQuery);
+        // 使用简单规则生成初始标题
+        session.setTitle(generateSimpleTitle(firstQuery));
+        chatSessionRepository.save(session);
+        chatSessionService.evictFirstPage(userId);
+        log.info("创建新会话: {}", sessionId);
     }
 
     /**
@@ -87,6 +83,7 @@ public class ChatTitleService {
                 ChatSession session = sessionOpt.get();
                 session.setTitle(intelligentTitle);
                 chatSessionRepository.save(session);
+                chatSessionService.evictFirstPage(session.getUserId());
                 log.info("更新会话标题: {} -> {}", sessionId, intelligentTitle);
             }
         } catch (Exception e) {
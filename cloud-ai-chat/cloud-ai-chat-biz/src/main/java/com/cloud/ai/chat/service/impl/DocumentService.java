@@ -1,24 +1,41 @@
 package com.cloud.ai.chat.service.impl;
 
+import com.cloud.ai.chat.document.ChunkingContentHandler;
+import com.cloud.ai.chat.document.DocumentChunkIndex;
+import com.cloud.ai.chat.document.DocumentChunkWriter;
+import com.cloud.ai.chat.document.DocumentIngestJobStore;
+import com.cloud.ai.chat.document.DocumentIngestProperties;
+import com.cloud.ai.chat.document.PdfPageParallelExtractor;
+import com.cloud.ai.chat.domain.DocumentIngestJob;
+import com.cloud.ai.chat.retrieval.VectorStoreVersion;
 import lombok.Builder;
 import lombok.Data;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.tika.io.TikaInputStream;
 import org.apache.tika.metadata.Metadata;
 import org.apache.tika.parser.AutoDetectParser;
 import org.apache.tika.parser.ParseContext;
 import org.apache.tika.sax.BodyContentHandler;
-import org.springframework.ai.document.Document;
+import org.redisson.api.RLock;
+import org.redisson.api.RedissonClient;
 import org.springframework.ai.vectorstore.pgvector.PgVectorStore;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.util.ArrayList;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.regex.Pattern;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 @Service
 @RequiredArgsConstructor
@@ -26,42 +43,64 @@ import java.util.regex.Pattern;
 public class DocumentService {
 
     private final PgVectorStore vectorStore;
+    private final DocumentIngestProperties documentIngestProperties;
+    private final PdfPageParallelExtractor pdfPageParallelExtractor;
+    private final DocumentIngestJobStore documentIngestJobStore;
+    private final ThreadPoolTaskExecutor documentIngestExecutor;
+    private final ThreadPoolTaskExecutor documentStoreExecutor;
+    private final DocumentChunkIndex documentChunkIndex;
+    private final RedissonClient redissonClient;
+    private final VectorStoreVersion vectorStoreVersion;
 
-    /**
-     * 解析多种格式文档
-     */
-    public void parseAndStoreDocument(MultipartFile file, Map<String, Object> metadata) {
-        try {
-            String content = extractContent(file);
-            if (StringUtils.hasText(content)) {
-                storeDocumentChunks(content, metadata);
-            }
-        } catch (Exception e) {
-            log.error("文档解析失败: {}", file.getOriginalFilename(), e);
-            throw new RuntimeException("文档解析失败", e);
-        }
-    }
+    private static final String INGEST_LOCK_PREFIX = "document:ingest:lock:";
 
     /**
-     * 上传并处理文档的完整流程
+     * 上传文档：校验格式并落盘后提交入库任务，立即返回任务ID
      */
-    public DocumentUploadResult uploadAndProcessDocument(MultipartFile file, String title, String description, String tags) {
+    public DocumentUploadResult uploadAndProcessDocument(MultipartFile file, String documentId, String title,
+                                                         String description, String tags) {
+        Path spooled = null;
+        String jobId = UUID.randomUUID().toString().replace("-", "");
         try {
+            String extension = checkSupported(file);
+
             // 构建metadata
-            Map<String, Object> metadata = buildDocumentMetadata(file, title, description, tags);
+            Map<String, Object> metadata = buildDocumentMetadata(file, documentId, title, description, tags);
+            // 只有调用方指定文档ID时才替换该文档已入库的分块，未指定时每次上传都是新文档
+            boolean replaceExisting = StringUtils.hasText(documentId);
+
+            // 请求结束后上传的临时文件会被删除，先落盘再异步处理
+            spooled = spool(file, extension);
+            documentIngestJobStore.create(DocumentIngestJob.builder()
+                    .jobId(jobId)
+                    .fileName(file.getOriginalFilename())
+                    .fileSize(file.getSize())
+                    .documentType(extension)
+                    .build());
 
-            // 解析并存储文档
-            parseAndStoreDocument(file, metadata);
+            Path jobFile = spooled;
+            documentIngestExecutor.execute(() -> runIngestJob(jobId, jobFile, file.getOriginalFilename(), extension,
+                    metadata, replaceExisting));
+            spooled = null;
 
             return DocumentUploadResult.builder()
                     .success(true)
-                    .message("文档上传成功")
+                    .message("文档已提交处理")
+                    .jobId(jobId)
                     .fileName(file.getOriginalFilename())
                     .fileSize(file.getSize())
-                    .documentType(getDocumentType(file))
+                    .documentType(extension)
                     .metadata(metadata)
                     .build();
 
+        } catch (RejectedExecutionException e) {
+            log.warn("文档入库任务队列已满: {}", file.getOriginalFilename());
+            documentIngestJobStore.fail(jobId, "处理队列已满");
+            return DocumentUploadResult.builder()
+                    .success(false)
+                    .message("文档上传失败: 处理队列已满，请稍后重试")
+                    .fileName(file.getOriginalFilename())
+                    .build();
         } catch (Exception e) {
             log.error("文档上传失败: {}", file.getOriginalFilename(), e);
             return DocumentUploadResult.builder()
@@ -69,13 +108,132 @@ public class DocumentService {
                     .message("文档上传失败: " + e.getMessage())
                     .fileName(file.getOriginalFilename())
                     .build();
+        } finally {
+            // 提交成功后由任务负责删除
+            deleteQuietly(spooled);
+        }
+    }
+
+    /**
+     * 查询入库任务状态，任务不存在或已过期时返回null
+     */
+    public DocumentIngestJob getIngestJob(String jobId) {
+        return documentIngestJobStore.get(jobId);
+    }
+
+    private void runIngestJob(String jobId, Path spooled, String fileName, String extension, Map<String, Object> metadata,
+                              boolean replaceExisting) {
+        // 同一文档串行入库，避免并发的两次入库互相清理对方的分块；等不到锁时本次任务失败，不占用入库线程
+        RLock lock = redissonClient.getLock(INGEST_LOCK_PREFIX + metadata.get(DocumentChunkIndex.DOCUMENT_ID));
+        boolean locked = false;
+        try {
+            locked = lock.tryLock(documentIngestProperties.getDocumentLockWaitSeconds(), TimeUnit.SECONDS);
+            if (!locked) {
+                log.warn("同一文档正在入库，任务失败: {}, jobId: {}", fileName, jobId);
+                documentIngestJobStore.fail(jobId, "同一文档正在入库，请稍后重试");
+                return;
+            }
+            documentIngestJobStore.start(jobId);
+            long contentLength = ingest(spooled, fileName, extension, metadata, replaceExisting, new DocumentChunkWriter.Progress() {
+                @Override
+                public void onParsed(int chunks) {
+                    documentIngestJobStore.addParsed(jobId, chunks);
+                }
+
+                @Override
+                public void onStored(int chunks) {
+                    documentIngestJobStore.addStored(jobId, chunks);
+                }
+            });
+            documentIngestJobStore.complete(jobId, contentLength);
+        } catch (Exception e) {
+            log.error("文档入库失败: {}, jobId: {}", fileName, jobId, e);
+            documentIngestJobStore.fail(jobId, e.getMessage());
+            // 失败前可能已写入部分批次
+            vectorStoreVersion.increment();
+        } finally {
+            if (locked && lock.isHeldByCurrentThread()) {
+                lock.unlock();
+            }
+            deleteQuietly(spooled);
+        }
+    }
+
+    /**
+     * 解析落盘文档并写入向量库
+     * <p>
+     * 边读边分块，分块按批次提交到写入线程池，同时在写入的批次数有上限，内存占用与文档大小无关；
+     * 替换已有文档时，内容哈希已入库的分块直接复用，全部写入成功后删除本次未出现的旧分块；
+     * 失败时删除本次已写入的新分块，不留下检索得到却无法替换的残缺文档
+     *
+     * @param replaceExisting 是否替换同一文档ID已入库的分块，仅调用方显式指定文档ID时为true
+     * @return 解析出的文本字符数
+     */
+    private long ingest(Path spooled, String fileName, String extension, Map<String, Object> metadata,
+                        boolean replaceExisting, DocumentChunkWriter.Progress progress) throws Exception {
+        String documentId = (String) metadata.get(DocumentChunkIndex.DOCUMENT_ID);
+        Map<String, String> existingChunks = replaceExisting
+                ? documentChunkIndex.findChunkIds(documentId)
+                : Map.of();
+        DocumentChunkWriter writer = new DocumentChunkWriter(vectorStore, metadata, existingChunks.keySet(),
+                documentIngestProperties.getStoreBatchSize(), documentStoreExecutor,
+                documentIngestProperties.getStoreInFlightBatches(), progress);
+        long contentLength;
+        try {
+            if ("pdf".equals(extension) && pdfPageParallelExtractor.supports(spooled)) {
+                contentLength = pdfPageParallelExtractor.extract(spooled, writer);
+            } else {
+                contentLength = parse(spooled, fileName, writer);
+            }
+            writer.finish();
+        } catch (Exception e) {
+            deletePartialChunks(writer, fileName);
+            throw e;
+        }
+
+        Set<String> seenHashes = writer.getSeenHashes();
+        List<String> staleChunkIds = existingChunks.entrySet().stream()
+                .filter(entry -> !seenHashes.contains(entry.getKey()))
+                .map(Map.Entry::getValue)
+                .toList();
+        if (!staleChunkIds.isEmpty()) {
+            vectorStore.delete(staleChunkIds);
+        }
+        // 内容有变化时使检索缓存失效，未变化的重复入库不影响缓存
+        if (writer.getChunkCount() > writer.getReusedCount() || !staleChunkIds.isEmpty()) {
+            vectorStoreVersion.increment();
+        }
+
+        if (writer.getChunkCount() == 0) {
+            log.warn("文档内容过短，跳过存储: {}", fileName);
+        } else {
+            log.info("成功存储 {} 个文档块（复用 {} 个，删除过期 {} 个），解析内容长度: {}", writer.getChunkCount(),
+                    writer.getReusedCount(), staleChunkIds.size(), contentLength);
+        }
+        return contentLength;
+    }
+
+    /**
+     * 删除失败任务已写入的新分块（复用的旧分块不受影响），删除失败只记录日志
+     */
+    private void deletePartialChunks(DocumentChunkWriter writer, String fileName) {
+        List<String> chunkIds = writer.abort();
+        if (chunkIds.isEmpty()) {
+            return;
+        }
+        try {
+            vectorStore.delete(chunkIds);
+            log.info("已删除入库失败文档的 {} 个分块: {}", chunkIds.size(), fileName);
+        } catch (Exception e) {
+            log.error("删除入库失败文档的分块失败: {}, chunkIds: {}", fileName, chunkIds, e);
         }
     }
 
     /**
      * 构建文档的metadata信息
      */
-    private Map<String, Object> buildDocumentMetadata(MultipartFile file, String title, String description, String tags) {
+    private Map<String, Object> buildDocumentMetadata(MultipartFile file, String documentId, String title,
+                                                      String description, String tags) {
         Map<String, Object> metadata = new HashMap<>();
 
         // 基本文件信息
@@ -102,6 +260,12 @@ public class DocumentService {
         // 添加用户ID（暂时写死，后续通过security获取）
         metadata.put("userId", 1L);
 
+        // 文档ID：未指定时随机生成，不按用户或文件名推断，避免不同上传互相覆盖
+        if (!StringUtils.hasText(documentId)) {
+            documentId = UUID.randomUUID().toString();
+        }
+        metadata.put(DocumentChunkIndex.DOCUMENT_ID, documentId);
+
         return metadata;
     }
 
@@ -118,251 +282,68 @@ public class DocumentService {
 
     /**
      * @param file
-     * @return
-     * @throws Exception
+     * @return 文件扩展名
      * @see https://tika.apache.org/3.1.0/formats.html
      */
-    private String extractContent(MultipartFile file) throws Exception {
-        String fileName = file.getOriginalFilename();
-        String extension = fileName.substring(fileName.lastIndexOf(".") + 1);
+    private String checkSupported(MultipartFile file) {
+        String extension = getDocumentType(file);
 
         return switch (extension) {
-            case "md", "pdf", "doc", "docx", "ppt", "pptx", "html", "htm", "txt", "csv" -> parse(file);
+            case "md", "pdf", "doc", "docx", "ppt", "pptx", "html", "htm", "txt", "csv" -> extension;
             default -> throw new UnsupportedOperationException("不支持的文件格式: " + extension);
         };
     }
 
-
-    private String parse(MultipartFile file) throws Exception {
-        AutoDetectParser parser = new AutoDetectParser();
-        // 增加内存限制，提高解析效果
-        BodyContentHandler handler = new BodyContentHandler(10 * 1024 * 1024); // 10MB
-        Metadata metadata = new Metadata();
-        ParseContext context = new ParseContext();
-
-        // 对于PPT文件，设置特殊参数
-        String fileName = file.getOriginalFilename();
-        if (fileName != null && (fileName.toLowerCase().endsWith(".ppt") || fileName.toLowerCase().endsWith(".pptx"))) {
-            // 设置PPT解析参数
-            metadata.set("org.apache.tika.parser.microsoft.office.PowerPointParser.includeSlideNotes", "true");
-            metadata.set("org.apache.tika.parser.microsoft.office.PowerPointParser.includeSlideMasterContent", "true");
-        }
-
-        parser.parse(file.getInputStream(), handler, metadata, context);
-        String content = handler.toString();
-
-        // 记录解析结果
-        log.info("文档解析完成: {}, 内容长度: {}", file.getOriginalFilename(), content.length());
-        log.debug("解析内容预览: {}", content.length() > 200 ? content.substring(0, 200) + "..." : content);
-
-        return content;
-    }
-
-    private void storeDocumentChunks(String content, Map<String, Object> metadata) {
-        // 检查内容是否为空或过短
-        if (content == null || content.trim().length() < 10) {
-            log.warn("文档内容过短，跳过存储: {}", content);
-            return;
-        }
-
-        // 文档分块策略 - 根据内容长度调整分块大小
-        int maxChunkSize = content.length() < 5000 ? 500 : 1000; // 短文档用更小的块
-        List<String> chunks = chunkTextBySemantic(content, maxChunkSize, 200);
-
-        if (chunks.isEmpty()) {
-            log.warn("文档分块后为空，跳过存储");
-            return;
-        }
-
-        List<Document> documents = chunks.stream()
-                .map(chunk -> {
-                    // 为每个chunk添加块序号，便于后续追踪
-                    Map<String, Object> chunkMetadata = new HashMap<>(metadata);
-                    chunkMetadata.put("chunkIndex", chunks.indexOf(chunk));
-                    chunkMetadata.put("chunkSize", chunk.length());
-                    return new Document(chunk, chunkMetadata);
-                })
-                .toList();
-
-        vectorStore.add(documents);
-        log.info("成功存储 {} 个文档块，总内容长度: {}", documents.size(), content.length());
-    }
-
-    private List<String> chunkText(String text, int chunkSize, int overlap) {
-        // 简单的文本分块实现
-        List<String> chunks = new ArrayList<>();
-        int start = 0;
-
-        while (start < text.length()) {
-            int end = Math.min(start + chunkSize, text.length());
-            chunks.add(text.substring(start, end));
-            start = Math.max(end - overlap, end);
-            if (start >= text.length()) break;
-        }
-
-        return chunks;
-    }
-
     /**
-     * 语义化文本分块 - 按句子或段落边界分块，保持语义完整性
+     * 上传文件落盘，解析从磁盘流式读取
      */
-    private List<String> chunkTextBySemantic(String text, int maxChunkSize, int overlap) {
-        if (text == null || text.trim().isEmpty()) {
-            return new ArrayList<>();
-        }
-
-        // 清理文本，移除多余的空白字符
-        text = text.replaceAll("\\s+", " ").trim();
-
-        // 按段落分隔（双换行符）
-        String[] paragraphs = text.split("\n\\s*\n");
-
-        List<String> chunks = new ArrayList<>();
-        StringBuilder currentChunk = new StringBuilder();
-        int currentSize = 0;
-
-        for (String paragraph : paragraphs) {
-            paragraph = paragraph.trim();
-            if (paragraph.isEmpty()) continue;
-
-            // 如果当前段落本身就超过最大大小，先单独处理
-            if (paragraph.length() > maxChunkSize) {
-                // 如果当前块有内容，先保存
-                if (!currentChunk.isEmpty()) {
-                    chunks.add(currentChunk.toString());
-                    currentChunk = new StringBuilder();
-                    currentSize = 0;
-                }
-
-                // 将大段落按句子分割
-                List<String> sentenceChunks = splitLargeParagraph(paragraph, maxChunkSize, overlap);
-                chunks.addAll(sentenceChunks);
-                continue;
-            }
-
-            // 如果加入当前段落后会超过限制
-            if (currentSize + paragraph.length() > maxChunkSize && !currentChunk.isEmpty()) {
-                chunks.add(currentChunk.toString());
-
-                // 开始新块，包含部分重叠内容
-                String overlapText = extractOverlapFromChunk(currentChunk.toString(), overlap);
-                currentChunk = new StringBuilder(overlapText).append(paragraph);
-                currentSize = currentChunk.length();
-            } else {
-                // 直接添加段落
-                if (!currentChunk.isEmpty()) {
-                    currentChunk.append("\n\n");
-                    currentSize += 2;
-                }
-                currentChunk.append(paragraph);
-                currentSize += paragraph.length();
-            }
-        }
-
-        // 添加最后一个块
-        if (!currentChunk.isEmpty()) {
-            chunks.add(currentChunk.toString());
-        }
-
-        return chunks;
+    private Path spool(MultipartFile file, String extension) throws IOException {
+        Path dir = StringUtils.hasText(documentIngestProperties.getSpoolDir())
+                ? Files.createDirectories(Path.of(documentIngestProperties.getSpoolDir()))
+                : Path.of(System.getProperty("java.io.tmpdir"));
+        Path spooled = Files.createTempFile(dir, "document-", "." + extension);
+        file.transferTo(spooled);
+        return spooled;
     }
 
-    /**
-     * 分割大段落为句子级别的块
-     */
-    private List<String> splitLargeParagraph(String paragraph, int maxChunkSize, int overlap) {
-        List<String> chunks = new ArrayList<>();
-
-        // 中文句子结束符
-        Pattern sentencePattern = Pattern.compile("[。！？；]");
-        String[] sentences = sentencePattern.split(paragraph);
-
-        StringBuilder currentChunk = new StringBuilder();
-        int currentSize = 0;
-
-        for (int i = 0; i < sentences.length; i++) {
-            String sentence = sentences[i];
-            if (i < sentences.length - 1) {
-                // 重新添加分隔符
-                sentence += paragraph.substring(
-                        paragraph.indexOf(sentence) + sentence.length(),
-                        Math.min(paragraph.indexOf(sentence) + sentence.length() + 1,
-                                paragraph.length())
-                );
-            }
-
-            sentence = sentence.trim();
-            if (sentence.isEmpty()) continue;
-
-            // 如果句子本身就超过限制
-            if (sentence.length() > maxChunkSize) {
-                if (currentChunk.length() > 0) {
-                    chunks.add(currentChunk.toString());
-                    currentChunk = new StringBuilder();
-                    currentSize = 0;
-                }
-
-                // 按字符分割大句子
-                List<String> subChunks = chunkText(sentence, maxChunkSize, overlap);
-                chunks.addAll(subChunks);
-                continue;
-            }
-
-            // 检查是否需要新块
-            if (currentSize + sentence.length() > maxChunkSize && currentChunk.length() > 0) {
-                chunks.add(currentChunk.toString());
-
-                // 开始新块，包含重叠
-                String overlapText = extractOverlapFromChunk(currentChunk.toString(), overlap);
-                currentChunk = new StringBuilder(overlapText).append(sentence);
-                currentSize = currentChunk.length();
-            } else {
-                if (!currentChunk.isEmpty()) {
-                    currentChunk.append(" ");
-                    currentSize += 1;
-                }
-                currentChunk.append(sentence);
-                currentSize += sentence.length();
-            }
+    private void deleteQuietly(Path spooled) {
+        if (spooled == null) {
+            return;
         }
-
-        if (!currentChunk.isEmpty()) {
-            chunks.add(currentChunk.toString());
+        try {
+            Files.deleteIfExists(spooled);
+        } catch (IOException e) {
+            log.warn("删除落盘文件失败: {}", spooled, e);
         }
-
-        return chunks;
     }
 
     /**
-     * 从文本块中提取重叠部分
+     * Tika流式解析，SAX事件直接送入分块器
+     *
+     * @return 解析出的文本字符数
      */
-    private String extractOverlapFromChunk(String chunk, int overlapSize) {
-        if (chunk.length() <= overlapSize) {
-            return chunk;
-        }
-
-        // 尝试在句子边界处分割
-        String[] sentences = chunk.split("[。！？；]");
-        StringBuilder overlap = new StringBuilder();
+    private long parse(Path spooled, String fileName, Consumer<String> sink) throws Exception {
+        AutoDetectParser parser = new AutoDetectParser();
+        ChunkingContentHandler handler = new ChunkingContentHandler(documentIngestProperties, sink);
+        Metadata metadata = new Metadata();
+        ParseContext context = new ParseContext();
 
-        for (int i = sentences.length - 1; i >= 0; i--) {
-            if (overlap.length() + sentences[i].length() <= overlapSize) {
-                if (!overlap.isEmpty()) {
-                    overlap.insert(0, sentences[i] + "。");
-                } else {
-                    overlap.append(sentences[i]).append("。");
-                }
-            } else {
-                break;
-            }
+        // 对于PPT文件，设置特殊参数
+        if (fileName != null && (fileName.toLowerCase().endsWith(".ppt") || fileName.toLowerCase().endsWith(".pptx"))) {
+            // 设置PPT解析参数
+            metadata.set("org.apache.tika.parser.microsoft.office.PowerPointParser.includeSlideNotes", "true");
+            metadata.set("org.apache.tika.parser.microsoft.office.PowerPointParser.includeSlideMasterContent", "true");
         }
 
-        if (overlap.isEmpty()) {
-            // 如果找不到合适的句子边界，退回到字符级分割
-            return chunk.substring(Math.max(0, chunk.length() - overlapSize));
+        try (TikaInputStream stream = TikaInputStream.get(spooled)) {
+            parser.parse(stream, new BodyContentHandler(handler), metadata, context);
         }
+        handler.finish();
+
+        // 记录解析结果
+        log.info("文档解析完成: {}, 内容长度: {}", fileName, handler.getContentLength());
 
-        return overlap.toString();
+        return handler.getContentLength();
     }
 
     /**
@@ -373,6 +354,10 @@ public class DocumentService {
     public static class DocumentUploadResult {
         private boolean success;
         private String message;
+        /**
+         * 入库任务ID，用于查询处理进度
+         */
+        private String jobId;
         private String fileName;
         private Long fileSize;
         private String documentType;
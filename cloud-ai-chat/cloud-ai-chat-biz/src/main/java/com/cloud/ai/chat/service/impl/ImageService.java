@@ -15,7 +15,12 @@ import org.springframework.web.multipart.MultipartFile;
 import java.io.ByteArrayInputStream;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 
 /**
@@ -208,6 +213,24 @@ public class ImageService {
         return imageRepository.findByFileUrl(fileUrl).orElse(null);
     }
 
+    /**
+     * 根据URL批量查找图片OCR信息（一次查询，只返回OCR相关字段）
+     *
+     * @param fileUrls 图片URL列表（允许重复）
+     * @return URL -> 图片（仅包含fileUrl、ocrText、ocrStatus），不存在的URL不在结果中
+     */
+    public Map<String, Image> findOcrByUrls(Collection<String> fileUrls) {
+        if (fileUrls == null || fileUrls.isEmpty()) {
+            return Map.of();
+        }
+        Set<String> distinctUrls = new LinkedHashSet<>(fileUrls);
+        Map<String, Image> result = new HashMap<>(distinctUrls.size() * 2);
+        for (Image image : imageRepository.findOcrByFileUrlIn(distinctUrls)) {
+            result.putIfAbsent(image.getFileUrl(), image);
+        }
+        return result;
+    }
+
     /**
      * 删除图片
      * 1. 删除MongoDB数据
@@ -2,17 +2,24 @@ package com.cloud.ai.chat.service.impl;
 
 
 import com.cloud.ai.chat.domain.UserTags;
+import com.cloud.common.redis.tag.UserTagIndex;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.redisson.api.RBucket;
+import org.redisson.api.RLock;
 import org.redisson.api.RedissonClient;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.stereotype.Service;
 
 import java.time.Duration;
-import java.time.Instant;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 /**
  * @author shengjie.tang
@@ -26,15 +33,53 @@ import java.util.Map;
 public class RecommendationService {
 
     private final UserProfileService userProfileService;
+    private final SimilarUserService similarUserService;
+    private final UserTagIndex<UserTags> userTagIndex;
     private final AIChatService aiChatService;
     private final RedissonClient redissonClient;
+    private final ThreadPoolTaskExecutor applicationTaskExecutor;
 
     // Redis缓存相关常量
     private static final String RECOMMENDATION_CACHE_KEY_PREFIX = "recommendation:user:";
+    private static final String RECOMMENDATION_LOCK_KEY_PREFIX = "recommendation:lock:";
+    private static final String LATEST_SUFFIX = ":latest";
     private static final int CACHE_EXPIRE_HOURS = 24; // 缓存24小时
+    private static final int LATEST_EXPIRE_DAYS = 7; // 最近一次推荐保留7天，用于过期时先返回旧结果
+
+    /**
+     * 等待其它请求生成推荐的最长时间
+     */
+    @Value("${ai.recommendation.single-flight-wait-seconds:15}")
+    private long singleFlightWaitSeconds;
+
+    /**
+     * 权重区间变化导致缓存未命中时，是否先返回上一次的推荐并在后台重新生成
+     */
+    @Value("${ai.recommendation.stale-while-revalidate:true}")
+    private boolean staleWhileRevalidate;
+
+    /**
+     * 参与推荐的相似用户数，从相似用户的热门标签中补充当前用户还没有的标签
+     */
+    @Value("${ai.recommendation.similar-users:10}")
+    private int similarUsers;
+
+    /**
+     * 从相似用户补充的标签数，为0时只按用户自己的标签推荐
+     */
+    @Value("${ai.recommendation.similar-tags:2}")
+    private int similarTags;
+
+    /**
+     * 本实例正在后台重新生成的缓存key，避免重复提交任务
+     */
+    private final Set<String> revalidating = ConcurrentHashMap.newKeySet();
 
     /**
      * 生成个性化的推荐提问（带Redis缓存）
+     * <p>
+     * 缓存未命中时按缓存key在集群内单飞：同一时刻只有一个请求调用AI生成，其它请求等待其结果；
+     * 若存在上一次的推荐结果，则直接返回旧结果并在后台重新生成（stale-while-revalidate）
      *
      * @param userId 用户ID
      * @param limit  标签数量限制
@@ -60,33 +105,107 @@ public class RecommendationService {
         String cacheKey = RECOMMENDATION_CACHE_KEY_PREFIX + userId + ":" + userWeightKey;
 
         // 3. 尝试从Redis缓存获取
+        Map<String, Object> cachedResult = getCached(cacheKey);
+        if (cachedResult != null) {
+            log.info("从缓存获取推荐结果，userId: {}, cacheKey: {}", userId, cacheKey);
+            return cachedResult;
+        }
+
+        // 4. 存在上一次的推荐：先返回旧结果，后台重新生成
+        if (staleWhileRevalidate) {
+            Map<String, Object> staleResult = getCached(RECOMMENDATION_CACHE_KEY_PREFIX + userId + LATEST_SUFFIX);
+            if (staleResult != null) {
+                revalidateAsync(userId, hotTags, cacheKey);
+                log.info("返回上一次的推荐结果并在后台重新生成，userId: {}, cacheKey: {}", userId, cacheKey);
+                return staleResult;
+            }
+        }
+
+        // 5. 没有可用结果：单飞生成
+        return generateSingleFlight(userId, hotTags, cacheKey);
+    }
+
+    /**
+     * 集群内单飞生成：获取到锁的请求负责生成并写缓存，其它请求等待锁后直接读取缓存
+     */
+    private Map<String, Object> generateSingleFlight(Long userId, List<UserTags> hotTags, String cacheKey) {
+        RLock lock = redissonClient.getLock(RECOMMENDATION_LOCK_KEY_PREFIX + cacheKey);
+        boolean locked = false;
         try {
-            Map<String, Object> cachedResult = (Map<String, Object>) redissonClient.getBucket(cacheKey).get();
+            locked = lock.tryLock(singleFlightWaitSeconds, TimeUnit.SECONDS);
+            // 等待期间可能已由其它请求生成
+            Map<String, Object> cachedResult = getCached(cacheKey);
             if (cachedResult != null) {
-                log.info("从缓存获取推荐结果，userId: {}, cacheKey: {}", userId, cacheKey);
+                log.info("等待其它请求生成推荐完成，userId: {}, cacheKey: {}", userId, cacheKey);
                 return cachedResult;
             }
+            if (!locked) {
+                // 等待超时：返回模板推荐，不再并发调用AI
+                log.warn("等待推荐生成超时，返回备用推荐，userId: {}, cacheKey: {}", userId, cacheKey);
+                return buildResult(userId, hotTags, generateFallbackQuestions(tagNames(hotTags)));
+            }
+            return generateAndCache(userId, hotTags, cacheKey);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return buildResult(userId, hotTags, generateFallbackQuestions(tagNames(hotTags)));
         } catch (Exception e) {
-            log.warn("从Redis获取缓存失败，继续生成新推荐，userId: {}, error: {}", userId, e.getMessage());
+            log.warn("推荐单飞锁异常，直接生成推荐，userId: {}, error: {}", userId, e.getMessage());
+            return generateAndCache(userId, hotTags, cacheKey);
+        } finally {
+            if (locked && lock.isHeldByCurrentThread()) {
+                lock.unlock();
+            }
         }
+    }
 
-        // 4. 缓存未命中，生成新的推荐
-        List<String> generatedQuestions = generateQuestionsFromTags(hotTags.stream()
-                .map(UserTags::getTagName)
-                .toList());
+    /**
+     * 后台重新生成推荐，同一缓存key在集群内只有一个任务执行
+     */
+    private void revalidateAsync(Long userId, List<UserTags> hotTags, String cacheKey) {
+        if (!revalidating.add(cacheKey)) {
+            return;
+        }
+        try {
+            applicationTaskExecutor.execute(() -> {
+                RLock lock = redissonClient.getLock(RECOMMENDATION_LOCK_KEY_PREFIX + cacheKey);
+                boolean locked = false;
+                try {
+                    locked = lock.tryLock();
+                    if (locked && getCached(cacheKey) == null) {
+                        generateAndCache(userId, hotTags, cacheKey);
+                    }
+                } catch (Exception e) {
+                    log.warn("后台重新生成推荐失败，userId: {}, cacheKey: {}", userId, cacheKey, e);
+                } finally {
+                    if (locked && lock.isHeldByCurrentThread()) {
+                        lock.unlock();
+                    }
+                    revalidating.remove(cacheKey);
+                }
+            });
+        } catch (Exception e) {
+            revalidating.remove(cacheKey);
+            log.warn("提交后台推荐生成任务失败，userId: {}, cacheKey: {}", userId, cacheKey, e);
+        }
+    }
 
-        // 5. 构建响应结果
-        Map<String, Object> result = new HashMap<>();
-        result.put("userId", userId);
-        result.put("total", hotTags.size());
-        result.put("generatedQuestions", generatedQuestions);
+    /**
+     * 调用AI生成推荐并写入缓存（当前权重区间 + 最近一次推荐）
+     */
+    private Map<String, Object> generateAndCache(Long userId, List<UserTags> hotTags, String cacheKey) {
+        // 缓存未命中，生成新的推荐（自己的热门标签 + 相似用户的热门标签）
+        List<String> tagNames = new ArrayList<>(tagNames(hotTags));
+        tagNames.addAll(similarUserTags(userId, tagNames));
+        List<String> generatedQuestions = generateQuestionsFromTags(tagNames);
+
+        // 构建响应结果
+        Map<String, Object> result = buildResult(userId, hotTags, generatedQuestions);
 
-        // 6. 将结果存入Redis缓存
+        // 将结果存入Redis缓存
         try {
-            RBucket<Object> bucket = redissonClient.getBucket(cacheKey);
-            bucket.set(result);
-            Instant expireTime = Instant.now().plus(Duration.ofDays(1));
-            bucket.expire(expireTime);
+            redissonClient.getBucket(cacheKey).set(result, Duration.ofHours(CACHE_EXPIRE_HOURS));
+            redissonClient.getBucket(RECOMMENDATION_CACHE_KEY_PREFIX + userId + LATEST_SUFFIX)
+                    .set(result, Duration.ofDays(LATEST_EXPIRE_DAYS));
             log.info("推荐结果已缓存，userId: {}, cacheKey: {}, expire: {}小时",
                     userId, cacheKey, CACHE_EXPIRE_HOURS);
         } catch (Exception e) {
@@ -99,6 +218,64 @@ public class RecommendationService {
         return result;
     }
 
+    private Map<String, Object> getCached(String cacheKey) {
+        try {
+            RBucket<Map<String, Object>> bucket = redissonClient.getBucket(cacheKey);
+            return bucket.get();
+        } catch (Exception e) {
+            log.warn("从Redis获取缓存失败，继续生成新推荐，cacheKey: {}, error: {}", cacheKey, e.getMessage());
+            return null;
+        }
+    }
+
+    private Map<String, Object> buildResult(Long userId, List<UserTags> hotTags, List<String> generatedQuestions) {
+        Map<String, Object> result = new HashMap<>();
+        result.put("userId", userId);
+        result.put("total", hotTags.size());
+        result.put("generatedQuestions", new ArrayList<>(generatedQuestions));
+        return result;
+    }
+
+    /**
+     * 相似用户的热门标签中当前用户还没有的标签，按 相似用户排名 * 标签排名 加权累计后取前similarTags个
+     *
+     * @param userId  用户ID
+     * @param ownTags 用户自己的标签
+     * @return 补充的标签，相似用户索引不可用时为空
+     */
+    private List<String> similarUserTags(Long userId, List<String> ownTags) {
+        if (similarTags <= 0 || similarUsers <= 0) {
+            return List.of();
+        }
+        try {
+            List<Long> similar = similarUserService.findSimilarUsers(userId, similarUsers);
+            Map<String, Double> scores = new HashMap<>();
+            for (int i = 0; i < similar.size(); i++) {
+                List<UserTags> tags = userTagIndex.topTags(similar.get(i), ownTags.size() + similarTags);
+                for (int j = 0; j < tags.size(); j++) {
+                    String tagName = tags.get(j).getTagName();
+                    if (!ownTags.contains(tagName)) {
+                        scores.merge(tagName, 1.0 / (i + 1) / (j + 1), Double::sum);
+                    }
+                }
+            }
+            return scores.entrySet().stream()
+                    .sorted(Map.Entry.<String, Double>comparingByValue().reversed())
+                    .limit(similarTags)
+                    .map(Map.Entry::getKey)
+                    .toList();
+        } catch (Exception e) {
+            log.warn("获取相似用户标签失败，只按用户自己的标签推荐，userId: {}", userId, e);
+            return List.of();
+        }
+    }
+
+    private List<String> tagNames(List<UserTags> hotTags) {
+        return hotTags.stream()
+                .map(UserTags::getTagName)
+                .toList();
+    }
+
     /**
      * 计算用户标签权重key（用于缓存标识）
      * 当用户标签权重变化不大时，可以复用缓存
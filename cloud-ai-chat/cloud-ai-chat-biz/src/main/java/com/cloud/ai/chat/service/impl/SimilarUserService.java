@@ -0,0 +1,286 @@
+package com.cloud.ai.chat.service.impl;
+
+import com.cloud.ai.chat.domain.UserTags;
+import com.cloud.ai.chat.repository.UserTagsRepository;
+import com.cloud.common.redis.tag.TagDecay;
+import com.cloud.common.redis.tag.UserTagIndex;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.BatchResult;
+import org.redisson.api.RBatch;
+import org.redisson.api.RFuture;
+import org.redisson.api.RLock;
+import org.redisson.api.RScoredSortedSetAsync;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+import org.redisson.client.protocol.ScoredEntry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * @author shengjie.tang
+ * @version 1.0.0
+ * @description: 相似用户索引（个性化推荐从相似用户的热门标签中补充推荐标签）
+ * <p>
+ * 替代按标签自连接的相似用户查询，离线构建、在线只读Redis：
+ * 1. 倒排表：标签 -> 用户（按衰减后的标签权重保留前postingSize个），保存为有序集合
+ * 2. 相似用户表：用户 -> 相似用户（按共同标签的 min(双方权重) 之和保留前topN个），保存为有序集合
+ * 3. 定时全量刷新（集群内单实例执行），按用户ID顺序流式扫描两遍标签表，内存只保存截断后的倒排表
+ * 4. 刷新后才有标签的新用户，查询时用其Top标签与倒排表实时计算
+ * @date 2025/11/25 15:00
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class SimilarUserService {
+
+    private static final String POSTING_KEY_PREFIX = "user:similar:posting:";
+    private static final String SIMILAR_KEY_PREFIX = "user:similar:users:";
+    private static final String REFRESH_LOCK_KEY = "user:similar:refresh:lock";
+    private static final int WRITE_BATCH_SIZE = 500;
+
+    /**
+     * 实时计算时使用的用户标签数
+     */
+    private static final int ONLINE_TAG_LIMIT = 10;
+
+    private final UserTagsRepository userTagsRepository;
+    private final UserTagIndex<UserTags> userTagIndex;
+    private final RedissonClient redissonClient;
+
+    /**
+     * 每个标签倒排表保留的用户数
+     */
+    @Value("${user.tag.similar.posting-size:200}")
+    private int postingSize;
+
+    /**
+     * 每个用户保留的相似用户数
+     */
+    @Value("${user.tag.similar.top-n:50}")
+    private int topN;
+
+    /**
+     * 索引过期时间（小时），应大于刷新间隔，刷新失败时旧索引仍可用
+     */
+    @Value("${user.tag.similar.expire-hours:48}")
+    private long expireHours;
+
+    /**
+     * 查找相似用户（按相似度倒序）
+     *
+     * @param userId 用户ID
+     * @param limit  返回数量
+     */
+    public List<Long> findSimilarUsers(Long userId, int limit) {
+        try {
+            Collection<String> similar = redissonClient
+                    .<String>getScoredSortedSet(SIMILAR_KEY_PREFIX + userId, StringCodec.INSTANCE)
+                    .valueRangeReversed(0, limit - 1);
+            if (!similar.isEmpty()) {
+                return similar.stream().map(Long::valueOf).toList();
+            }
+            return computeOnline(userId, limit);
+        } catch (Exception e) {
+            log.warn("查询相似用户失败，userId: {}", userId, e);
+            return List.of();
+        }
+    }
+
+    /**
+     * 每天凌晨全量刷新相似用户索引
+     */
+    @Scheduled(cron = "${user.tag.similar.refresh-cron:0 30 3 * * ?}")
+    public void refresh() {
+        RLock lock = redissonClient.getLock(REFRESH_LOCK_KEY);
+        if (!lock.tryLock()) {
+            log.info("相似用户索引正在其它实例刷新，跳过");
+            return;
+        }
+        try {
+            long start = System.currentTimeMillis();
+            LocalDateTime periodStart = TagDecay.currentDecayPeriod();
+
+            // 第一遍：构建截断的倒排表
+            Map<String, PriorityQueue<Posting>> postings = new HashMap<>();
+            userTagsRepository.streamDecayedWeights(periodStart, rs -> {
+                Posting posting = new Posting(rs.getLong("user_id"), rs.getDouble("weight"));
+                PriorityQueue<Posting> queue = postings.computeIfAbsent(rs.getString("tag_name"),
+                        tag -> new PriorityQueue<>((a, b) -> Double.compare(a.weight(), b.weight())));
+                queue.offer(posting);
+                if (queue.size() > postingSize) {
+                    queue.poll();
+                }
+            });
+            Map<String, List<Posting>> postingLists = new HashMap<>(postings.size() * 2);
+            postings.forEach((tag, queue) -> postingLists.put(tag, new ArrayList<>(queue)));
+            postings.clear();
+            writePostings(postingLists);
+
+            // 第二遍：逐个用户计算相似用户
+            SimilarWriter writer = new SimilarWriter();
+            UserTagGroup group = new UserTagGroup();
+            userTagsRepository.streamDecayedWeights(periodStart, rs -> {
+                long userId = rs.getLong("user_id");
+                if (group.userId != null && group.userId != userId) {
+                    writer.add(group.userId, score(group.userId, group.weights, postingLists));
+                    group.weights.clear();
+                }
+                group.userId = userId;
+                group.weights.put(rs.getString("tag_name"), rs.getDouble("weight"));
+            });
+            if (group.userId != null) {
+                writer.add(group.userId, score(group.userId, group.weights, postingLists));
+            }
+            writer.flush();
+
+            log.info("相似用户索引刷新完成，标签数: {}, 用户数: {}, 耗时: {}ms",
+                    postingLists.size(), writer.users, System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            log.error("相似用户索引刷新失败", e);
+        } finally {
+            if (lock.isHeldByCurrentThread()) {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * 刷新后才有标签的用户：用其Top标签读取倒排表实时计算（不写回，等下一次刷新）
+     */
+    private List<Long> computeOnline(Long userId, int limit) {
+        List<UserTags> tags = userTagIndex.topTags(userId, ONLINE_TAG_LIMIT);
+        if (tags.isEmpty()) {
+            return List.of();
+        }
+        RBatch batch = redissonClient.createBatch();
+        Map<String, RFuture<Collection<ScoredEntry<String>>>> futures = new HashMap<>();
+        for (UserTags tag : tags) {
+            futures.put(tag.getTagName(), batch.<String>getScoredSortedSet(POSTING_KEY_PREFIX + tag.getTagName(),
+                    StringCodec.INSTANCE).entryRangeReversedAsync(0, -1));
+        }
+        batch.execute();
+
+        Map<String, Double> weights = new HashMap<>();
+        Map<String, List<Posting>> postingLists = new HashMap<>();
+        for (UserTags tag : tags) {
+            weights.put(tag.getTagName(), tag.getTotalWeight().doubleValue());
+            postingLists.put(tag.getTagName(), futures.get(tag.getTagName()).toCompletableFuture().join().stream()
+                    .map(entry -> new Posting(Long.parseLong(entry.getValue()), entry.getScore()))
+                    .toList());
+        }
+        return score(userId, weights, postingLists).entrySet().stream()
+                .sorted(Map.Entry.<Long, Double>comparingByValue().reversed())
+                .limit(limit)
+                .map(Map.Entry::getKey)
+                .toList();
+    }
+
+    /**
+     * 相似度 = 共同标签上 min(双方权重) 之和，只保留前topN个
+     */
+    private Map<Long, Double> score(Long userId, Map<String, Double> weights, Map<String, List<Posting>> postingLists) {
+        Map<Long, Double> scores = new HashMap<>();
+        weights.forEach((tag, weight) -> {
+            List<Posting> postingList = postingLists.get(tag);
+            if (postingList == null) {
+                return;
+            }
+            for (Posting posting : postingList) {
+                if (posting.userId() != userId) {
+                    scores.merge(posting.userId(), Math.min(weight, posting.weight()), Double::sum);
+                }
+            }
+        });
+        if (scores.size() <= topN) {
+            return scores;
+        }
+        Map<Long, Double> top = new HashMap<>(topN * 2);
+        scores.entrySet().stream()
+                .sorted(Map.Entry.<Long, Double>comparingByValue().reversed())
+                .limit(topN)
+                .forEach(entry -> top.put(entry.getKey(), entry.getValue()));
+        return top;
+    }
+
+    private void writePostings(Map<String, List<Posting>> postingLists) {
+        Duration expire = Duration.ofHours(expireHours);
+        RBatch batch = redissonClient.createBatch();
+        int pending = 0;
+        for (Map.Entry<String, List<Posting>> entry : postingLists.entrySet()) {
+            Map<String, Double> members = new HashMap<>(entry.getValue().size() * 2);
+            entry.getValue().forEach(posting -> members.put(String.valueOf(posting.userId()), posting.weight()));
+            replace(batch.getScoredSortedSet(POSTING_KEY_PREFIX + entry.getKey(), StringCodec.INSTANCE), members, expire);
+            if (++pending >= WRITE_BATCH_SIZE) {
+                batch.execute();
+                batch = redissonClient.createBatch();
+                pending = 0;
+            }
+        }
+        if (pending > 0) {
+            batch.execute();
+        }
+    }
+
+    private static void replace(RScoredSortedSetAsync<String> set, Map<String, Double> members, Duration expire) {
+        set.deleteAsync();
+        if (!members.isEmpty()) {
+            set.addAllAsync(members);
+            set.expireAsync(expire);
+        }
+    }
+
+    /**
+     * 倒排表中的一项
+     */
+    private record Posting(long userId, double weight) {
+    }
+
+    /**
+     * 流式扫描时当前用户的标签
+     */
+    private static class UserTagGroup {
+        private Long userId;
+        private final Map<String, Double> weights = new HashMap<>();
+    }
+
+    /**
+     * 分批写入相似用户表
+     */
+    private class SimilarWriter {
+        private final Duration expire = Duration.ofHours(expireHours);
+        private RBatch batch = redissonClient.createBatch();
+        private int pending;
+        private long users;
+
+        void add(Long userId, Map<Long, Double> scores) {
+            Map<String, Double> members = new HashMap<>(scores.size() * 2);
+            scores.forEach((similarUserId, score) -> members.put(String.valueOf(similarUserId), score));
+            replace(batch.getScoredSortedSet(SIMILAR_KEY_PREFIX + userId, StringCodec.INSTANCE), members, expire);
+            users++;
+            if (++pending >= WRITE_BATCH_SIZE) {
+                flush();
+            }
+        }
+
+        void flush() {
+            if (pending == 0) {
+                return;
+            }
+            BatchResult<?> result = batch.execute();
+            log.debug("写入相似用户索引，批次命令数: {}", result.getResponses().size());
+            batch = redissonClient.createBatch();
+            pending = 0;
+        }
+    }
+}
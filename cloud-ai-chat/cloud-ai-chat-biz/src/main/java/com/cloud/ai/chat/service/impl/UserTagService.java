@@ -3,23 +3,30 @@ package com.cloud.ai.chat.service.impl;
 
 import com.cloud.ai.chat.domain.UserProfile;
 import com.cloud.ai.chat.domain.UserTags;
+import com.cloud.ai.chat.repository.ChatTagsRepository;
 import com.cloud.ai.chat.repository.UserProfileRepository;
 import com.cloud.ai.chat.repository.UserTagsRepository;
 import com.cloud.ai.chat.service.OccupationService;
 import com.cloud.ai.chat.util.ValidationUtils;
+import com.cloud.common.redis.tag.PopularTagCounter;
+import com.cloud.common.redis.tag.TagDecay;
+import com.cloud.common.redis.tag.UserTagIndex;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.CollectionUtils;
 
 import java.math.BigDecimal;
-import java.math.RoundingMode;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
@@ -35,8 +42,11 @@ import java.util.stream.Collectors;
 public class UserTagService {
 
     private final UserTagsRepository userTagsRepository;
+    private final ChatTagsRepository chatTagsRepository;
     private final UserProfileRepository profileRepository;
     private final OccupationService occupationService;
+    private final UserTagIndex<UserTags> userTagIndex;
+    private final PopularTagCounter popularTagCounter;
 
 
     /**
@@ -127,16 +137,24 @@ public class UserTagService {
         log.info("基于聊天内容更新标签，userId: {}, chatTags: {}", userId, chatTags);
 
 
-        List<UserTags> userTags = userTagsRepository.findTop5ByUserIdOrderByTotalWeightDesc(userId);
+        List<String> tagNames = chatTags.stream()
+                .map(ValidationUtils::cleanTagName)
+                .filter(Objects::nonNull)
+                .distinct()
+                .toList();
+        if (tagNames.isEmpty()) {
+            return;
+        }
+
+        // 只读取本次涉及的标签；读出的是按当前周期衰减后的权重，保存时即物化衰减
+        LocalDateTime periodStart = TagDecay.currentDecayPeriod();
+        List<UserTags> userTags = userTagsRepository.findDecayedByUserIdAndTagNameIn(userId, tagNames, periodStart);
         Map<String, UserTags> tagMap = userTags.stream().collect(Collectors.toMap(UserTags::getTagName, Function.identity()));
+        Map<String, Double> before = popularTagCounter.snapshot(userTags);
 
         List<UserTags> tagsToSave = new ArrayList<>();
 
-        for (String tagName : chatTags) {
-            String cleanTagName = ValidationUtils.cleanTagName(tagName);
-            if (cleanTagName == null) {
-                continue;
-            }
+        for (String cleanTagName : tagNames) {
             ValidationUtils.validateTagName(cleanTagName);
 
             UserTags existingTag = tagMap.get(cleanTagName);
@@ -162,14 +180,51 @@ public class UserTagService {
                 newTag.setTagName(cleanTagName);
                 newTag.setSourceType(UserTags.chatSource);
                 newTag.setChatWeight(UserTags.CHAT_WEIGHT);
+                newTag.setLastDecayedAt(periodStart);
                 calculateTotalWeight(newTag);
 
                 tagsToSave.add(newTag);
             }
         }
 
-        // 批量保存
+        // 批量保存，提交后增量更新Top-K索引和热门标签计数
         userTagsRepository.saveAll(tagsToSave);
+        userTagIndex.update(userId, tagsToSave);
+        popularTagCounter.record(before, tagsToSave);
+    }
+
+    /**
+     * 批量写入一轮对话提取的聊天标签
+     * <p>
+     * 会话标签频率与用户标签权重各用一条upsert语句完成，语句数与标签数无关；
+     * 两条语句在同一事务中提交，行级累加由数据库原子完成，同一用户并发的多轮对话不会互相覆盖
+     *
+     * @param userId      用户ID
+     * @param sessionId   会话ID
+     * @param tagNames    清洗、校验后的标签名（去重且有序）
+     * @param profileTags 用户画像标签，用于判断是否重叠
+     * @return 更新后的用户标签（权重为当前周期的值）
+     */
+    @Transactional
+    public List<UserTags> applyChatTags(Long userId, String sessionId, Collection<String> tagNames,
+                                        Collection<String> profileTags) {
+        List<String> names = new ArrayList<>(tagNames);
+        if (names.isEmpty()) {
+            return List.of();
+        }
+        Set<String> profileTagSet = new HashSet<>(profileTags);
+        List<Boolean> overlaps = names.stream().map(profileTagSet::contains).toList();
+
+        LocalDateTime periodStart = TagDecay.currentDecayPeriod();
+        // 变更前的权重只用于累加热门标签计数，与upsert之间的并发偏差由定时校准修正
+        Map<String, Double> before = popularTagCounter.snapshot(
+                userTagsRepository.findDecayedByUserIdAndTagNameIn(userId, names, periodStart));
+
+        chatTagsRepository.incrementSessionTags(userId, sessionId, names);
+        List<UserTags> updated = userTagsRepository.upsertChatTagWeights(userId, names, overlaps, periodStart);
+        userTagIndex.update(userId, updated);
+        popularTagCounter.record(before, updated);
+        return updated;
     }
 
     /**
@@ -177,21 +232,28 @@ public class UserTagService {
      */
     private void createOrUpdateProfileTag(Long userId, String tagName, BigDecimal weight) {
         ValidationUtils.validateTagName(tagName);
-        Optional<UserTags> existingTag = userTagsRepository.findByUserIdAndTagName(userId, tagName);
+        LocalDateTime periodStart = TagDecay.currentDecayPeriod();
+        Optional<UserTags> existingTag = userTagsRepository.findDecayedByUserIdAndTagName(userId, tagName, periodStart);
 
         if (existingTag.isPresent()) {
-            // 更新现有标签的基础权重
+            // 更新现有标签的基础权重（其余权重按当前周期物化衰减）
             UserTags tag = existingTag.get();
+            Map<String, Double> before = popularTagCounter.snapshot(List.of(tag));
             setBaseWeight(tag, weight);
             userTagsRepository.save(tag);
+            userTagIndex.update(userId, List.of(tag));
+            popularTagCounter.record(before, List.of(tag));
         } else {
             // 创建新标签
             UserTags tag = new UserTags();
             tag.setUserId(userId);
             tag.setTagName(tagName);
             tag.setSourceType(UserTags.profileSource);
+            tag.setLastDecayedAt(periodStart);
             setBaseWeight(tag, weight);
             userTagsRepository.save(tag);
+            userTagIndex.update(userId, List.of(tag));
+            popularTagCounter.record(Map.of(), List.of(tag));
         }
     }
 
@@ -200,7 +262,7 @@ public class UserTagService {
      * 获取用户的所有标签（前5个）
      */
     public List<UserTags> getUserTags(Long userId) {
-        return userTagsRepository.findTop5ByUserIdOrderByTotalWeightDesc(userId);
+        return userTagIndex.topTags(userId, 5);
     }
 
     /**
@@ -208,10 +270,7 @@ public class UserTagService {
      */
     public List<UserTags> getHotTags(Long userId, int limit) {
         ValidationUtils.validateRecommendationLimit(limit);
-        return userTagsRepository.findTop5ByUserIdOrderByTotalWeightDesc(userId)
-                .stream()
-                .limit(limit)
-                .toList();
+        return userTagIndex.topTags(userId, limit);
     }
 
     /**
@@ -242,32 +301,6 @@ public class UserTagService {
         return tagNames;
     }
 
-    /**
-     * 每月权重衰减任务
-     * 每月1号凌晨2点执行
-     */
-    @Scheduled(cron = "0 0 2 1 * ?")
-    @Transactional
-    public void monthlyWeightDecay() {
-        log.info("开始执行每月权重衰减任务");
-
-        List<UserTags> allTags = userTagsRepository.findAll();
-        int updatedCount = 0;
-
-        for (UserTags tag : allTags) {
-            // 衰减所有权重
-            tag.setBaseWeight(tag.getBaseWeight().multiply(UserTags.DECAY_FACTOR).setScale(2, RoundingMode.HALF_UP));
-            tag.setChatWeight(tag.getChatWeight().multiply(UserTags.DECAY_FACTOR).setScale(2, RoundingMode.HALF_UP));
-            tag.setFusionWeight(tag.getFusionWeight().multiply(UserTags.DECAY_FACTOR).setScale(2, RoundingMode.HALF_UP));
-
-            calculateTotalWeight(tag);
-            userTagsRepository.save(tag);
-            updatedCount++;
-        }
-
-        log.info("权重衰减任务完成，共更新 {} 个标签", updatedCount);
-    }
-
     /**
      * 年龄标签生成（移除性别标签，避免标签污染）
      */
@@ -0,0 +1,163 @@
+package com.cloud.ai.chat.document;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+/**
+ * @author shengjie.tang
+ * @version 1.0.0
+ * @description: 语义分块器测试
+ * @date 2025/11/28 10:00
+ */
+class SemanticChunkerTest {
+
+    private static final String EMOJI = "😀";
+
+    @Test
+    void keepsParagraphAndLineBreaks() {
+        String text = "第一段第一句。  第一段第二句。\r\n第一段第二行。\n\n\n第二段。\f第三段。";
+
+        List<String> chunks = SemanticChunker.split(text, 1000, 200);
+
+        assertThat(chunks).containsExactly("第一段第一句。 第一段第二句。\n第一段第二行。\n\n第二段。\n\n第三段。");
+    }
+
+    @Test
+    void splitsOnParagraphBoundaries() {
+        String first = "甲".repeat(30) + "。";
+        String second = "乙".repeat(30) + "。";
+
+        List<String> chunks = SemanticChunker.split(first + "\n\n" + second, 40, 0);
+
+        assertThat(chunks).containsExactly(first, second);
+    }
+
+    @Test
+    void packsSentencesWithinMaxChunkSize() {
+        List<String> chunks = SemanticChunker.split(sentences(100), 50, 0);
+
+        assertThat(chunks).hasSizeGreaterThan(1).allSatisfy(chunk -> assertThat(chunk).hasSizeLessThanOrEqualTo(50));
+        // 不重叠时每个句子恰好出现一次
+        assertThat(String.join(" ", chunks)).isEqualTo(sentences(100));
+    }
+
+    @Test
+    void startsNextChunkWithTrailingSentencesOfPreviousChunk() {
+        List<String> chunks = SemanticChunker.split(sentences(100), 50, 20);
+
+        assertThat(chunks).hasSizeGreaterThan(1);
+        for (int i = 1; i < chunks.size(); i++) {
+            String previous = chunks.get(i - 1);
+            String current = chunks.get(i);
+            assertThat(current).hasSizeLessThanOrEqualTo(50);
+            // 重叠部分：上一块末尾不超过20个字符的完整句子
+            int overlap = Math.min(previous.length(), current.length());
+            while (overlap > 0 && !previous.endsWith(current.substring(0, overlap))) {
+                overlap--;
+            }
+            assertThat(overlap).isBetween(1, 20);
+            assertThat(current.charAt(overlap - 1)).isEqualTo('。');
+        }
+        assertThat(chunks.get(chunks.size() - 1)).endsWith("句子99。");
+    }
+
+    @Test
+    void splitsOversizeUnitByCharactersWithOverlap() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 250; i++) {
+            text.append((char) ('a' + i % 26));
+        }
+
+        List<String> chunks = SemanticChunker.split(text, 100, 20);
+
+        assertThat(chunks).containsExactly(text.substring(0, 100), text.substring(80, 180), text.substring(160, 250));
+    }
+
+    @Test
+    void neverSplitsSurrogatePairs() {
+        String text = EMOJI.repeat(60);
+
+        List<String> chunks = SemanticChunker.split(text, 11, 4);
+
+        assertThat(chunks).hasSizeGreaterThan(1).allSatisfy(chunk -> {
+            assertThat(chunk).hasSizeLessThanOrEqualTo(11);
+            assertThat(hasUnpairedSurrogate(chunk)).isFalse();
+        });
+        assertThat(String.join("", chunks)).contains(text.substring(0, 10));
+    }
+
+    @Test
+    void makesProgressWhenOverlapIsOneLessThanMaxChunkSize() {
+        // 切点落在代理对中间时回退一个字符，end - overlap 为0，必须仍然前进
+        String text = "a" + EMOJI.repeat(30);
+
+        List<String> chunks = assertTimeoutPreemptively(Duration.ofSeconds(5),
+                () -> SemanticChunker.split(text, 11, 10));
+
+        assertThat(chunks).isNotEmpty().allSatisfy(chunk -> {
+            assertThat(chunk).hasSizeLessThanOrEqualTo(11);
+            assertThat(hasUnpairedSurrogate(chunk)).isFalse();
+        });
+        assertThat(chunks.get(0)).startsWith("a");
+        assertThat(chunks.get(chunks.size() - 1)).endsWith(EMOJI);
+    }
+
+    @Test
+    void keepsSurrogatePairWhenMaxChunkSizeIsOne() {
+        List<String> chunks = assertTimeoutPreemptively(Duration.ofSeconds(5),
+                () -> SemanticChunker.split(EMOJI.repeat(3), 1, 0));
+
+        assertThat(chunks).containsExactly(EMOJI, EMOJI, EMOJI);
+    }
+
+    @Test
+    void streamingAppendMatchesSplit() {
+        String text = sentences(50) + "\n\n" + "x".repeat(120) + "\n" + sentences(20);
+        List<String> chunks = new ArrayList<>();
+        SemanticChunker chunker = new SemanticChunker(60, 15, chunks::add);
+
+        char[] chars = text.toCharArray();
+        for (int start = 0; start < chars.length; start += 7) {
+            chunker.append(chars, start, Math.min(7, chars.length - start));
+        }
+        chunker.finish();
+
+        assertThat(chunks).isEqualTo(SemanticChunker.split(text, 60, 15));
+        assertThat(chunker.getChunkCount()).isEqualTo(chunks.size());
+    }
+
+    @Test
+    void returnsNoChunksForBlankText() {
+        assertThat(SemanticChunker.split(null, 100, 10)).isEmpty();
+        assertThat(SemanticChunker.split(" \n\n\t ", 100, 10)).isEmpty();
+    }
+
+    @Test
+    void rejectsInvalidSizes() {
+        assertThatThrownBy(() -> SemanticChunker.split("a", 0, 0)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> SemanticChunker.split("a", 10, -1)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> SemanticChunker.split("a", 10, 10)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static String sentences(int count) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                text.append(' ');
+            }
+            text.append("句子").append(i).append('。');
+        }
+        return text.toString();
+    }
+
+    private static boolean hasUnpairedSurrogate(String text) {
+        return text.codePoints().anyMatch(codePoint -> Character.isSurrogate((char) codePoint) && codePoint <= 0xFFFF);
+    }
+}
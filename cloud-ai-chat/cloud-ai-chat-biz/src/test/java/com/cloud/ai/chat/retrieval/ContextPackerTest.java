@@ -0,0 +1,68 @@
+package com.cloud.ai.chat.retrieval;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author shengjie.tang
+ * @version 1.0.0
+ * @description: 上下文装填的去重叠与截断测试
+ * @date 2025/11/28 10:00
+ */
+class ContextPackerTest {
+
+    private static final String OVERLAP = "相邻分块共有的这一段重叠文字足够长。";
+
+    @Test
+    void trimsOverlapAtStartOfText() {
+        String chosen = "上一块的内容。" + OVERLAP;
+        String text = OVERLAP + "下一块的新内容。";
+
+        assertThat(ContextPacker.trimOverlap(text, chosen, 10, 200)).isEqualTo("下一块的新内容。");
+    }
+
+    @Test
+    void trimsOverlapAtEndOfText() {
+        String chosen = OVERLAP + "下一块的新内容。";
+        String text = "上一块的内容。" + OVERLAP;
+
+        assertThat(ContextPacker.trimOverlap(text, chosen, 10, 200)).isEqualTo("上一块的内容。");
+    }
+
+    @Test
+    void keepsTextWhenOverlapIsShorterThanMinimum() {
+        String chosen = "上一块的内容。重叠";
+        String text = "重叠下一块的新内容。";
+
+        assertThat(ContextPacker.trimOverlap(text, chosen, 10, 200)).isEqualTo(text);
+    }
+
+    @Test
+    void ignoresOverlapLongerThanMaximum() {
+        String chosen = "上一块的内容。" + OVERLAP;
+        String text = OVERLAP + "下一块的新内容。";
+
+        assertThat(ContextPacker.trimOverlap(text, chosen, 5, OVERLAP.length() - 1)).isEqualTo(text);
+    }
+
+    @Test
+    void keepsTextWithinBudget() {
+        assertThat(ContextPacker.truncate("一二三", 3)).isEqualTo("一二三");
+    }
+
+    @Test
+    void truncatesToBudget() {
+        assertThat(ContextPacker.truncate("一二三四五", 3)).isEqualTo("一二三…");
+        assertThat(ContextPacker.truncate("一二三四五", 0)).isEmpty();
+    }
+
+    @Test
+    void truncateDoesNotSplitSurrogatePairs() {
+        // 😀 估算为1个token，预算2时只能保留“一”和完整的表情
+        String truncated = ContextPacker.truncate("一😀二三", 2);
+
+        assertThat(truncated).isEqualTo("一😀…");
+        assertThat(ContextPacker.truncate("😀😀😀", 1)).isEqualTo("😀…");
+    }
+}
@@ -0,0 +1,59 @@
+package com.cloud.ai.chat.retrieval;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+/**
+ * @author shengjie.tang
+ * @version 1.0.0
+ * @description: 混合检索倒数排名融合测试
+ * @date 2025/11/28 10:00
+ */
+class HybridRetrieverTest {
+
+    @Test
+    void ranksDocumentsFoundByBothRetrieversFirst() {
+        List<Document> fused = HybridRetriever.fuse(
+                List.of(document("a"), document("b"), document("c")),
+                List.of(document("c"), document("a")), 60, 2);
+
+        assertThat(fused).extracting(Document::getId).containsExactly("a", "c");
+        Document first = fused.get(0);
+        assertThat(first.getMetadata()).containsEntry("vectorRank", 1).containsEntry("lexicalRank", 2)
+                .containsEntry("source", "a.txt");
+        assertThat(first.getScore()).isCloseTo(1.0 / 61 + 1.0 / 62, within(1e-12));
+        assertThat(first.getText()).isEqualTo("text-a");
+    }
+
+    @Test
+    void keepsVectorOrderWhenLexicalResultsAreEmpty() {
+        List<Document> fused = HybridRetriever.fuse(
+                List.of(document("a"), document("b"), document("c")), List.of(), 60, 5);
+
+        assertThat(fused).extracting(Document::getId).containsExactly("a", "b", "c");
+        assertThat(fused).allSatisfy(document -> assertThat(document.getMetadata()).doesNotContainKey("lexicalRank"));
+    }
+
+    @Test
+    void includesDocumentsFoundOnlyByLexicalSearch() {
+        List<Document> fused = HybridRetriever.fuse(
+                List.of(document("a")), List.of(document("b")), 60, 5);
+
+        assertThat(fused).extracting(Document::getId).containsExactlyInAnyOrder("a", "b");
+        assertThat(fused.get(1).getMetadata()).doesNotContainKey("vectorRank");
+    }
+
+    private static Document document(String id) {
+        return Document.builder()
+                .id(id)
+                .text("text-" + id)
+                .metadata(Map.of("source", id + ".txt"))
+                .build();
+    }
+}
@@ -0,0 +1,32 @@
+package com.cloud.common.redis.cache;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+/**
+ * 两级缓存跨节点失效通知
+ *
+ * @author shengjie.tang
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CacheInvalidationMessage implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 发送方实例ID，接收方忽略自己发出的通知
+     */
+    private String instanceId;
+
+    private String cacheName;
+
+    /**
+     * 失效的缓存键，为null时表示清空整个缓存
+     */
+    private String key;
+}
@@ -0,0 +1,185 @@
+package com.cloud.common.redis.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RBucket;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.Codec;
+import org.springframework.cache.support.AbstractValueAdaptingCache;
+import org.springframework.cache.support.NullValue;
+
+import java.time.Duration;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 两级缓存
+ * <p>
+ * 1. L1：Caffeine本地缓存，有界（maximumSize）且带过期时间
+ * 2. L2：Redis（Redisson RBucket），带过期时间，多实例共享
+ * 3. 读：L1 -> L2 -> 加载，L2命中回填L1；同一实例同一键并发加载只执行一次
+ * 4. 写/删除：先更新L2再更新L1，并广播失效通知，其它实例删除各自的L1
+ * 5. Redis不可用时降级为仅使用L1
+ *
+ * @author shengjie.tang
+ */
+@Slf4j
+public class TwoTierCache extends AbstractValueAdaptingCache {
+
+    /**
+     * L2中null值的占位符
+     */
+    private static final String NULL_MARKER = "__cache_null__";
+
+    private final String name;
+    private final String keyPrefix;
+    private final Duration ttl;
+    private final Cache<String, Object> local;
+    private final RedissonClient redissonClient;
+    private final Codec codec;
+    private final TwoTierCacheManager cacheManager;
+
+    private final LongAdder remoteHits = new LongAdder();
+    private final LongAdder remoteMisses = new LongAdder();
+
+    public TwoTierCache(String name, TwoTierCacheProperties.CacheSpec spec, String keyPrefix,
+                        RedissonClient redissonClient, Codec codec, TwoTierCacheManager cacheManager) {
+        super(spec.getAllowNullValues());
+        this.name = name;
+        this.keyPrefix = keyPrefix + name + ":";
+        this.ttl = spec.getTtl();
+        this.local = Caffeine.newBuilder()
+                .maximumSize(spec.getMaximumSize())
+                .expireAfterWrite(spec.effectiveLocalTtl())
+                .recordStats()
+                .build();
+        this.redissonClient = redissonClient;
+        this.codec = codec;
+        this.cacheManager = cacheManager;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public Cache<String, Object> getNativeCache() {
+        return local;
+    }
+
+    @Override
+    protected Object lookup(Object key) {
+        String cacheKey = cacheKey(key);
+        Object value = local.getIfPresent(cacheKey);
+        if (value != null) {
+            return value;
+        }
+        value = getRemote(cacheKey);
+        if (value != null) {
+            local.put(cacheKey, value);
+        }
+        return value;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        Object value = local.get(cacheKey(key), cacheKey -> {
+            Object remote = getRemote(cacheKey);
+            if (remote != null) {
+                return remote;
+            }
+            Object loaded;
+            try {
+                loaded = toStoreValue(valueLoader.call());
+            } catch (Exception e) {
+                throw new ValueRetrievalException(key, valueLoader, e);
+            }
+            putRemote(cacheKey, loaded);
+            return loaded;
+        });
+        return (T) fromStoreValue(value);
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        String cacheKey = cacheKey(key);
+        Object storeValue = toStoreValue(value);
+        putRemote(cacheKey, storeValue);
+        local.put(cacheKey, storeValue);
+        cacheManager.publishInvalidation(name, cacheKey);
+    }
+
+    @Override
+    public void evict(Object key) {
+        String cacheKey = cacheKey(key);
+        try {
+            redissonClient.getBucket(keyPrefix + cacheKey, codec).delete();
+        } catch (Exception e) {
+            log.warn("删除L2缓存失败: cache={}, key={}", name, cacheKey, e);
+        }
+        local.invalidate(cacheKey);
+        cacheManager.publishInvalidation(name, cacheKey);
+    }
+
+    @Override
+    public void clear() {
+        try {
+            redissonClient.getKeys().deleteByPattern(keyPrefix + "*");
+        } catch (Exception e) {
+            log.warn("清空L2缓存失败: cache={}", name, e);
+        }
+        local.invalidateAll();
+        cacheManager.publishInvalidation(name, null);
+    }
+
+    /**
+     * 仅删除本地L1（收到其它实例的失效通知时调用）
+     */
+    void evictLocal(String cacheKey) {
+        if (cacheKey == null) {
+            local.invalidateAll();
+        } else {
+            local.invalidate(cacheKey);
+        }
+    }
+
+    public long getRemoteHits() {
+        return remoteHits.sum();
+    }
+
+    public long getRemoteMisses() {
+        return remoteMisses.sum();
+    }
+
+    private Object getRemote(String cacheKey) {
+        try {
+            RBucket<Object> bucket = redissonClient.getBucket(keyPrefix + cacheKey, codec);
+            Object value = bucket.get();
+            if (value == null) {
+                remoteMisses.increment();
+                return null;
+            }
+            remoteHits.increment();
+            return NULL_MARKER.equals(value) ? NullValue.INSTANCE : value;
+        } catch (Exception e) {
+            log.warn("读取L2缓存失败，降级为仅使用本地缓存: cache={}, key={}", name, cacheKey, e);
+            return null;
+        }
+    }
+
+    private void putRemote(String cacheKey, Object storeValue) {
+        try {
+            Object value = storeValue instanceof NullValue ? NULL_MARKER : storeValue;
+            redissonClient.getBucket(keyPrefix + cacheKey, codec).set(value, ttl);
+        } catch (Exception e) {
+            log.warn("写入L2缓存失败: cache={}, key={}", name, cacheKey, e);
+        }
+    }
+
+    private String cacheKey(Object key) {
+        return String.valueOf(key);
+    }
+}
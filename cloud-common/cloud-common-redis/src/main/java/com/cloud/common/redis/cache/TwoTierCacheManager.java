@@ -0,0 +1,130 @@
+package com.cloud.common.redis.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RTopic;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.Codec;
+import org.redisson.codec.JsonJacksonCodec;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.cache.CacheManager;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * 两级缓存管理器（Caffeine L1 + Redisson L2）
+ * <p>
+ * 1. 每个缓存独立配置过期时间与本地最大条目数（cloud.cache.caches.*）
+ * 2. 写入/删除时通过Redis topic广播失效通知，其它实例删除本地L1，保证多实例一致
+ * 3. 启动时创建所有已声明的缓存；dynamic=true时未声明的缓存按defaults按需创建
+ *
+ * @author shengjie.tang
+ */
+@Slf4j
+public class TwoTierCacheManager implements CacheManager, InitializingBean, DisposableBean {
+
+    private final RedissonClient redissonClient;
+    private final TwoTierCacheProperties properties;
+    private final Codec codec;
+    private final String instanceId = UUID.randomUUID().toString();
+
+    private final ConcurrentMap<String, TwoTierCache> caches = new ConcurrentHashMap<>();
+    private final List<Consumer<TwoTierCache>> cacheListeners = new CopyOnWriteArrayList<>();
+
+    private RTopic topic;
+    private int listenerId = -1;
+
+    public TwoTierCacheManager(RedissonClient redissonClient, TwoTierCacheProperties properties) {
+        this.redissonClient = redissonClient;
+        this.properties = properties;
+        // L2值需要支持LocalDateTime等java.time类型
+        ObjectMapper objectMapper = new ObjectMapper();
+        objectMapper.registerModule(new JavaTimeModule());
+        this.codec = new JsonJacksonCodec(objectMapper);
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        topic = redissonClient.getTopic(properties.getInvalidationTopic(), codec);
+        listenerId = topic.addListener(CacheInvalidationMessage.class, (channel, message) -> onInvalidation(message));
+        properties.getCaches().keySet().forEach(this::getCache);
+        log.info("两级缓存已启动，caches: {}, dynamic: {}", caches.keySet(), properties.isDynamic());
+    }
+
+    @Override
+    public void destroy() {
+        if (topic != null && listenerId != -1) {
+            topic.removeListener(listenerId);
+        }
+    }
+
+    @Override
+    public TwoTierCache getCache(String name) {
+        TwoTierCache cache = caches.get(name);
+        if (cache != null) {
+            return cache;
+        }
+        if (!properties.isDynamic() && !properties.getCaches().containsKey(name)) {
+            return null;
+        }
+        return caches.computeIfAbsent(name, this::createCache);
+    }
+
+    @Override
+    public Collection<String> getCacheNames() {
+        return Collections.unmodifiableSet(caches.keySet());
+    }
+
+    /**
+     * 注册缓存创建监听（对已存在的缓存立即回调），用于绑定指标等
+     */
+    public void addCacheListener(Consumer<TwoTierCache> listener) {
+        cacheListeners.add(listener);
+        caches.values().forEach(listener);
+    }
+
+    /**
+     * 广播失效通知
+     *
+     * @param cacheName 缓存名称
+     * @param key       缓存键，为null时表示清空
+     */
+    void publishInvalidation(String cacheName, String key) {
+        if (topic == null) {
+            return;
+        }
+        try {
+            topic.publish(new CacheInvalidationMessage(instanceId, cacheName, key));
+        } catch (Exception e) {
+            log.warn("发布缓存失效通知失败: cache={}, key={}", cacheName, key, e);
+        }
+    }
+
+    private TwoTierCache createCache(String name) {
+        TwoTierCacheProperties.CacheSpec spec = properties.resolve(name);
+        TwoTierCache cache = new TwoTierCache(name, spec, properties.getKeyPrefix(), redissonClient, codec, this);
+        cacheListeners.forEach(listener -> listener.accept(cache));
+        log.debug("创建两级缓存: name={}, ttl={}, localTtl={}, maximumSize={}",
+                name, spec.getTtl(), spec.effectiveLocalTtl(), spec.getMaximumSize());
+        return cache;
+    }
+
+    private void onInvalidation(CacheInvalidationMessage message) {
+        if (instanceId.equals(message.getInstanceId())) {
+            return;
+        }
+        TwoTierCache cache = caches.get(message.getCacheName());
+        if (cache != null) {
+            cache.evictLocal(message.getKey());
+        }
+    }
+}
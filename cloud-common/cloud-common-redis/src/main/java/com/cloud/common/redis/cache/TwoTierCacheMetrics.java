@@ -0,0 +1,42 @@
+package com.cloud.common.redis.cache;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+/**
+ * 两级缓存指标
+ * <p>
+ * L1：cache.gets{result=hit|miss}、cache.evictions、cache.size 等（tier=local）
+ * L2：cache.remote.gets{result=hit|miss}
+ *
+ * @author shengjie.tang
+ */
+public class TwoTierCacheMetrics implements MeterBinder {
+
+    private final TwoTierCacheManager cacheManager;
+
+    public TwoTierCacheMetrics(TwoTierCacheManager cacheManager) {
+        this.cacheManager = cacheManager;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        cacheManager.addCacheListener(cache -> bind(registry, cache));
+    }
+
+    private void bind(MeterRegistry registry, TwoTierCache cache) {
+        CaffeineCacheMetrics.monitor(registry, cache.getNativeCache(), cache.getName(), Tags.of("tier", "local"));
+
+        FunctionCounter.builder("cache.remote.gets", cache, TwoTierCache::getRemoteHits)
+                .tags("cache", cache.getName(), "result", "hit")
+                .description("L2缓存命中次数")
+                .register(registry);
+        FunctionCounter.builder("cache.remote.gets", cache, TwoTierCache::getRemoteMisses)
+                .tags("cache", cache.getName(), "result", "miss")
+                .description("L2缓存未命中次数")
+                .register(registry);
+    }
+}
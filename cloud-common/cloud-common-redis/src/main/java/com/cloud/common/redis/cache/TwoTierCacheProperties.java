@@ -0,0 +1,120 @@
+package com.cloud.common.redis.cache;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 两级缓存配置
+ * <pre>
+ * cloud:
+ *   cache:
+ *     enabled: true
+ *     defaults:
+ *       ttl: 30m
+ *       maximum-size: 1000
+ *     caches:
+ *       occupations:
+ *         ttl: 1h
+ *         maximum-size: 200
+ * </pre>
+ *
+ * @author shengjie.tang
+ */
+@Data
+@ConfigurationProperties(prefix = "cloud.cache")
+public class TwoTierCacheProperties {
+
+    /**
+     * 是否启用两级缓存（同时开启Spring Cache注解支持）
+     */
+    private boolean enabled = false;
+
+    /**
+     * 是否允许按需创建未在caches中声明的缓存（使用defaults配置）
+     */
+    private boolean dynamic = true;
+
+    /**
+     * L2 Redis键前缀，完整键为 {keyPrefix}{cacheName}:{key}
+     */
+    private String keyPrefix = "cache:";
+
+    /**
+     * 跨节点失效通知的Redis topic
+     */
+    private String invalidationTopic = "cache:invalidation";
+
+    /**
+     * 默认缓存配置
+     */
+    private CacheSpec defaults = new CacheSpec(Duration.ofMinutes(30), null, 1000L, true);
+
+    /**
+     * 按缓存名称的配置，未设置的项继承defaults
+     */
+    private Map<String, CacheSpec> caches = new LinkedHashMap<>();
+
+    /**
+     * 获取指定缓存的生效配置
+     */
+    public CacheSpec resolve(String cacheName) {
+        CacheSpec spec = caches.get(cacheName);
+        return spec == null ? defaults : spec.inherit(defaults);
+    }
+
+    @Data
+    public static class CacheSpec {
+
+        /**
+         * L2过期时间
+         */
+        private Duration ttl;
+
+        /**
+         * L1过期时间，为空时与ttl一致；不应大于ttl
+         */
+        private Duration localTtl;
+
+        /**
+         * L1最大条目数
+         */
+        private Long maximumSize;
+
+        /**
+         * 是否缓存null值
+         */
+        private Boolean allowNullValues;
+
+        public CacheSpec() {
+        }
+
+        public CacheSpec(Duration ttl, Duration localTtl, Long maximumSize, Boolean allowNullValues) {
+            this.ttl = ttl;
+            this.localTtl = localTtl;
+            this.maximumSize = maximumSize;
+            this.allowNullValues = allowNullValues;
+        }
+
+        /**
+         * L1实际使用的过期时间
+         */
+        public Duration effectiveLocalTtl() {
+            if (localTtl == null || localTtl.compareTo(ttl) > 0) {
+                return ttl;
+            }
+            return localTtl;
+        }
+
+        CacheSpec inherit(CacheSpec parent) {
+            return new CacheSpec(
+                    ttl != null ? ttl : parent.getTtl(),
+                    localTtl != null ? localTtl : parent.getLocalTtl(),
+                    maximumSize != null ? maximumSize : parent.getMaximumSize(),
+                    allowNullValues != null ? allowNullValues : parent.getAllowNullValues());
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.cloud.common.redis.config;
+
+import com.cloud.common.redis.cache.TwoTierCacheManager;
+import com.cloud.common.redis.cache.TwoTierCacheMetrics;
+import com.cloud.common.redis.cache.TwoTierCacheProperties;
+import org.redisson.api.RedissonClient;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 两级缓存配置
+ * 服务只需配置 cloud.cache.enabled=true 及各缓存的过期时间/容量，即可在@Cacheable等注解中使用
+ *
+ * @author shengjie.tang
+ */
+@Configuration
+@EnableCaching
+@EnableConfigurationProperties(TwoTierCacheProperties.class)
+@ConditionalOnProperty(prefix = "cloud.cache", name = "enabled", havingValue = "true")
+public class TwoTierCacheConfig {
+
+    @Bean
+    public TwoTierCacheManager cacheManager(RedissonClient redissonClient, TwoTierCacheProperties properties) {
+        return new TwoTierCacheManager(redissonClient, properties);
+    }
+
+    /**
+     * 存在Micrometer时注册缓存指标，由Actuator自动绑定到MeterRegistry
+     */
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnClass(name = "io.micrometer.core.instrument.binder.MeterBinder")
+    static class TwoTierCacheMetricsConfig {
+
+        @Bean
+        public TwoTierCacheMetrics twoTierCacheMetrics(TwoTierCacheManager cacheManager) {
+            return new TwoTierCacheMetrics(cacheManager);
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.cloud.common.redis.tag;
+
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+
+/**
+ * @author shengjie.tang
+ * @version 1.0.0
+ * @description: 全局热门标签
+ * @date 2025/11/26 10:00
+ */
+@Data
+@Builder
+public class PopularTag implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private String tagName;
+
+    /**
+     * 拥有该标签的用户数
+     */
+    private Long userCount;
+
+    /**
+     * 全部用户该标签按当前周期衰减后的总权重之和
+     */
+    private BigDecimal totalWeight;
+}
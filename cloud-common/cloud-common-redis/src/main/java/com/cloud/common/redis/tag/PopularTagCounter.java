@@ -0,0 +1,271 @@
+package com.cloud.common.redis.tag;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RBatch;
+import org.redisson.api.RLock;
+import org.redisson.api.RScript;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+import org.redisson.client.protocol.ScoredEntry;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @author shengjie.tang
+ * @version 1.0.0
+ * @description: 全局热门标签计数（Redis有序集合）
+ * <p>
+ * 1. 两个有序集合：标签 -> 用户数、标签 -> 换算到基准周期的权重之和，读取Top-N为 ZREVRANGE + ZMSCORE，与标签总数无关
+ * 2. 标签新增、权重变更在事务提交后增量累加；权重按统一因子衰减，换算后的权重之和不随衰减变化，
+ *    读取时再还原为当前周期的值，衰减不需要改写计数
+ * 3. 定时用全表聚合校准计数（写入临时键后原子替换），修正并发、异常或删除标签造成的偏差；
+ *    计数不存在时不做增量累加，读取时校准重建
+ * 4. 计数键在各服务间共用，定时校准只由一个服务调度 {@link #scheduledReconcile()}
+ * @date 2025/11/26 10:00
+ */
+@RequiredArgsConstructor
+@Slf4j
+public class PopularTagCounter {
+
+    private static final String USERS_KEY = "{user:tags:popular}:users";
+    private static final String WEIGHT_KEY = "{user:tags:popular}:weight";
+    private static final String USERS_TMP_KEY = "{user:tags:popular}:users:tmp";
+    private static final String WEIGHT_TMP_KEY = "{user:tags:popular}:weight:tmp";
+    private static final String RECONCILE_LOCK_KEY = "user:tags:popular:lock";
+    private static final int WRITE_BATCH_SIZE = 1000;
+
+    /**
+     * 空计数占位成员，用户数为-1（总是排在最后）；没有任何标签时也能命中计数，不会每次回源数据库
+     */
+    private static final String EMPTY_MEMBER = "";
+
+    /**
+     * 增量累加：计数存在时才写入，ARGV = [(标签, 用户数增量, 权重增量)...]，用户数归零的标签移除
+     */
+    private static final String RECORD_SCRIPT = """
+            if redis.call('exists', KEYS[1]) == 0 then
+                return 0
+            end
+            for i = 1, #ARGV, 3 do
+                local users = tonumber(redis.call('zincrby', KEYS[1], ARGV[i + 1], ARGV[i]))
+                if users <= 0 then
+                    redis.call('zrem', KEYS[1], ARGV[i])
+                    redis.call('zrem', KEYS[2], ARGV[i])
+                else
+                    redis.call('zincrby', KEYS[2], ARGV[i + 2], ARGV[i])
+                end
+            end
+            return 1
+            """;
+
+    /**
+     * 校准：临时键原子替换正式键，KEYS = [用户数, 权重, 用户数临时键, 权重临时键]
+     */
+    private static final String SWAP_SCRIPT = """
+            redis.call('rename', KEYS[3], KEYS[1])
+            if redis.call('exists', KEYS[4]) == 1 then
+                redis.call('rename', KEYS[4], KEYS[2])
+            else
+                redis.call('del', KEYS[2])
+            end
+            return 1
+            """;
+
+    private final UserTagStore<?> userTagStore;
+    private final RedissonClient redissonClient;
+
+    /**
+     * 获取全局热门标签（按用户数倒序）
+     */
+    public List<PopularTag> topTags(int limit) {
+        try {
+            Collection<ScoredEntry<String>> entries = redissonClient
+                    .<String>getScoredSortedSet(USERS_KEY, StringCodec.INSTANCE)
+                    .entryRangeReversed(0, limit);
+            if (entries.isEmpty()) {
+                return top(reconcile(), limit);
+            }
+
+            List<String> tagNames = new ArrayList<>(limit);
+            List<Double> userCounts = new ArrayList<>(limit);
+            for (ScoredEntry<String> entry : entries) {
+                if (!EMPTY_MEMBER.equals(entry.getValue()) && tagNames.size() < limit) {
+                    tagNames.add(entry.getValue());
+                    userCounts.add(entry.getScore());
+                }
+            }
+            if (tagNames.isEmpty()) {
+                return new ArrayList<>();
+            }
+            List<Double> weights = redissonClient
+                    .<String>getScoredSortedSet(WEIGHT_KEY, StringCodec.INSTANCE)
+                    .getScore(tagNames);
+
+            LocalDateTime periodStart = TagDecay.currentDecayPeriod();
+            List<PopularTag> tags = new ArrayList<>(tagNames.size());
+            for (int i = 0; i < tagNames.size(); i++) {
+                Double weight = weights.get(i);
+                tags.add(toPopularTag(tagNames.get(i), userCounts.get(i).longValue(),
+                        weight != null ? weight : 0, periodStart));
+            }
+            return tags;
+        } catch (Exception e) {
+            log.warn("读取热门标签计数失败，回源数据库", e);
+            return top(aggregate(), limit);
+        }
+    }
+
+    /**
+     * 变更前的标签快照（标签名 -> 换算后的权重），与变更后的标签一起传给 {@link #record}
+     */
+    public Map<String, Double> snapshot(Collection<? extends WeightedTag> tags) {
+        Map<String, Double> snapshot = new HashMap<>(tags.size() * 2);
+        for (WeightedTag tag : tags) {
+            snapshot.put(tag.getTagName(), TagDecay.normalizedWeight(tag));
+        }
+        return snapshot;
+    }
+
+    /**
+     * 标签新增或权重变更后增量累加热门标签计数（存在事务时在提交后执行）
+     *
+     * @param before 变更前的快照，不在其中的标签视为新增
+     * @param after  变更后的标签
+     */
+    public void record(Map<String, Double> before, Collection<? extends WeightedTag> after) {
+        List<Object> args = new ArrayList<>(after.size() * 3);
+        for (WeightedTag tag : after) {
+            Double previous = before.get(tag.getTagName());
+            int userDelta = previous == null ? 1 : 0;
+            double weightDelta = TagDecay.normalizedWeight(tag) - (previous == null ? 0 : previous);
+            if (userDelta != 0 || weightDelta != 0) {
+                args.add(tag.getTagName());
+                args.add(String.valueOf(userDelta));
+                args.add(String.valueOf(weightDelta));
+            }
+        }
+        if (args.isEmpty()) {
+            return;
+        }
+        TagTransactions.afterCommit(() -> {
+            try {
+                redissonClient.getScript(StringCodec.INSTANCE).eval(RScript.Mode.READ_WRITE, RECORD_SCRIPT,
+                        RScript.ReturnType.BOOLEAN, List.of(USERS_KEY, WEIGHT_KEY), args.toArray());
+            } catch (Exception e) {
+                log.warn("累加热门标签计数失败，等待下次校准", e);
+            }
+        });
+    }
+
+    /**
+     * 定时用全表聚合校准热门标签计数（集群内单实例执行，其它实例正在校准时跳过）
+     */
+    public void scheduledReconcile() {
+        if (tryReconcile() == null) {
+            log.info("热门标签计数正在其它实例校准，跳过");
+        }
+    }
+
+    /**
+     * 全表聚合后重建计数（计数不存在时的读取路径）
+     *
+     * @return 聚合结果；其它实例正在校准时直接返回聚合结果，不写入计数
+     */
+    private List<PopularTag> reconcile() {
+        List<PopularTag> tags = tryReconcile();
+        return tags != null ? tags : aggregate();
+    }
+
+    /**
+     * @return 聚合结果；其它实例正在校准时返回null
+     */
+    private List<PopularTag> tryReconcile() {
+        RLock lock = redissonClient.getLock(RECONCILE_LOCK_KEY);
+        if (!lock.tryLock()) {
+            return null;
+        }
+        try {
+            long start = System.currentTimeMillis();
+            List<Object[]> rows = userTagStore.aggregateTagPopularity(TagDecay.WEIGHT_BASE_PERIOD);
+
+            redissonClient.getKeys().delete(USERS_TMP_KEY, WEIGHT_TMP_KEY);
+            Map<String, Double> users = new HashMap<>();
+            Map<String, Double> weights = new HashMap<>();
+            users.put(EMPTY_MEMBER, -1d);
+            for (Object[] row : rows) {
+                users.put((String) row[0], ((Number) row[1]).doubleValue());
+                weights.put((String) row[0], ((Number) row[2]).doubleValue());
+                if (users.size() >= WRITE_BATCH_SIZE) {
+                    writeTmp(users, weights);
+                }
+            }
+            writeTmp(users, weights);
+            redissonClient.getScript(StringCodec.INSTANCE).eval(RScript.Mode.READ_WRITE, SWAP_SCRIPT,
+                    RScript.ReturnType.BOOLEAN, List.of(USERS_KEY, WEIGHT_KEY, USERS_TMP_KEY, WEIGHT_TMP_KEY));
+
+            log.info("热门标签计数校准完成，标签数: {}, 耗时: {}ms", rows.size(), System.currentTimeMillis() - start);
+            return toPopularTags(rows);
+        } catch (Exception e) {
+            log.error("热门标签计数校准失败", e);
+            return aggregate();
+        } finally {
+            if (lock.isHeldByCurrentThread()) {
+                lock.unlock();
+            }
+        }
+    }
+
+    private void writeTmp(Map<String, Double> users, Map<String, Double> weights) {
+        if (users.isEmpty()) {
+            return;
+        }
+        RBatch batch = redissonClient.createBatch();
+        batch.<String>getScoredSortedSet(USERS_TMP_KEY, StringCodec.INSTANCE).addAllAsync(users);
+        if (!weights.isEmpty()) {
+            batch.<String>getScoredSortedSet(WEIGHT_TMP_KEY, StringCodec.INSTANCE).addAllAsync(weights);
+        }
+        batch.execute();
+        users.clear();
+        weights.clear();
+    }
+
+    private List<PopularTag> aggregate() {
+        return toPopularTags(userTagStore.aggregateTagPopularity(TagDecay.WEIGHT_BASE_PERIOD));
+    }
+
+    private List<PopularTag> toPopularTags(List<Object[]> rows) {
+        LocalDateTime periodStart = TagDecay.currentDecayPeriod();
+        List<PopularTag> tags = new ArrayList<>(rows.size());
+        for (Object[] row : rows) {
+            tags.add(toPopularTag((String) row[0], ((Number) row[1]).longValue(),
+                    ((Number) row[2]).doubleValue(), periodStart));
+        }
+        return tags;
+    }
+
+    private PopularTag toPopularTag(String tagName, long userCount, double normalizedWeight, LocalDateTime periodStart) {
+        return PopularTag.builder()
+                .tagName(tagName)
+                .userCount(userCount)
+                .totalWeight(BigDecimal.valueOf(TagDecay.weightAt(normalizedWeight, periodStart))
+                        .setScale(2, RoundingMode.HALF_UP))
+                .build();
+    }
+
+    private List<PopularTag> top(List<PopularTag> tags, int limit) {
+        return tags.stream()
+                .sorted(Comparator.comparing(PopularTag::getUserCount).reversed()
+                        .thenComparing(PopularTag::getTagName))
+                .limit(limit)
+                .toList();
+    }
+}
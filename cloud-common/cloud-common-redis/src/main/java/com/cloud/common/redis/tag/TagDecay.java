@@ -0,0 +1,65 @@
+package com.cloud.common.redis.tag;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * @author shengjie.tang
+ * @version 1.0.0
+ * @description: 标签权重衰减
+ * <p>
+ * 权重每月衰减一半，不再定期改写全表：库中保存权重及其所在周期，读取时按经过的月数计算衰减后的值，
+ * 写入时物化为当前周期的值
+ * @date 2025/11/28 10:00
+ */
+public final class TagDecay {
+
+    public static final String DECAY_FACTOR_SQL = "0.5";
+    public static final BigDecimal DECAY_FACTOR = new BigDecimal(DECAY_FACTOR_SQL); // 衰减因子（每月衰减一半，快速使得过期失效热点数据失效）
+    public static final int WEIGHT_BASE_PERIOD = 2025 * 12 + 1; // 权重换算的基准周期（2025年1月）
+
+    private TagDecay() {
+    }
+
+    /**
+     * 当前权重衰减周期（当月1号零点）
+     */
+    public static LocalDateTime currentDecayPeriod() {
+        return LocalDate.now().withDayOfMonth(1).atStartOfDay();
+    }
+
+    /**
+     * 时间所在的衰减周期序号（年*12+月，与SQL中的计算一致）
+     */
+    public static int decayPeriodOf(LocalDateTime time) {
+        return time.getYear() * 12 + time.getMonthValue();
+    }
+
+    /**
+     * 标签权重所在的衰减周期（衰减基准时间为空时以创建时间为准，新建未保存的标签为当前周期）
+     */
+    public static LocalDateTime decayAnchorOf(WeightedTag tag) {
+        if (tag.getLastDecayedAt() != null) {
+            return tag.getLastDecayedAt();
+        }
+        return tag.getCreatedAt() != null ? tag.getCreatedAt() : currentDecayPeriod();
+    }
+
+    /**
+     * 换算到基准周期的总权重：总权重 / 衰减因子^(权重所在周期 - 基准周期)
+     * <p>
+     * 所有标签按同一因子衰减，换算后的值不随时间变化，不同周期写入的标签可以直接比较、累加
+     */
+    public static double normalizedWeight(WeightedTag tag) {
+        int elapsed = decayPeriodOf(decayAnchorOf(tag)) - WEIGHT_BASE_PERIOD;
+        return tag.getTotalWeight().doubleValue() / Math.pow(DECAY_FACTOR.doubleValue(), elapsed);
+    }
+
+    /**
+     * 换算后的权重还原为指定周期的权重
+     */
+    public static double weightAt(double normalizedWeight, LocalDateTime periodStart) {
+        return normalizedWeight * Math.pow(DECAY_FACTOR.doubleValue(), decayPeriodOf(periodStart) - WEIGHT_BASE_PERIOD);
+    }
+}
@@ -0,0 +1,29 @@
+package com.cloud.common.redis.tag;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * @author shengjie.tang
+ * @version 1.0.0
+ * @description: 标签变更写入Redis的时机：存在事务时在提交后执行，避免回滚的变更进入索引和计数
+ * @date 2025/11/28 10:00
+ */
+final class TagTransactions {
+
+    private TagTransactions() {
+    }
+
+    static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
@@ -0,0 +1,281 @@
+package com.cloud.common.redis.tag;
+
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RScript;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+import org.redisson.client.protocol.ScoredEntry;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * @author shengjie.tang
+ * @version 1.0.0
+ * @description: 用户标签Top-K索引（Redis有序集合）
+ * <p>
+ * 1. 每个用户一个有序集合（标签 -> 排序分）和一个哈希（标签 -> 各分量权重），Top-K读取为 ZREVRANGE + HMGET
+ * 2. 权重每月衰减，排序分取“换算到固定基准月的总权重”，同一用户的标签无论何时写入都可以直接比较，
+ *    衰减不需要改写索引；读取时按哈希中的分量和基准时间计算当前周期的权重（与数据库读取一致）
+ * 3. 标签权重变更在事务提交后增量写入索引；索引不存在时只从数据库重建，不做增量写入（避免得到不完整的索引）
+ * 4. 每次增量写入都递增用户的写入代数；重建在读库前记下代数，写入索引时代数已变化说明读库期间有标签变更提交，
+ *    放弃这次结果重新读取，避免把读库时的旧快照写入索引
+ * 5. 索引带过期时间，任何写入/重建都会续期；Redis异常时删除索引，下次读取重建
+ * 6. 索引键在各服务间共用，各服务以自己的用户标签Repository作为 {@link UserTagStore} 注册为Bean
+ * 7. 明细中记录行的最后更新时间作为版本，增量写入只在版本不低于索引中的版本时生效：
+ *    同一标签并发事务的提交后回调可能乱序执行，旧的绝对值不会覆盖新值
+ * @date 2025/11/25 10:00
+ */
+@Slf4j
+public class UserTagIndex<T extends WeightedTag> {
+
+    private static final String INDEX_KEY_PREFIX = "user:tags:{";
+    private static final String RANK_KEY_SUFFIX = "}:rank";
+    private static final String DETAIL_KEY_SUFFIX = "}:detail";
+    private static final String GENERATION_KEY_SUFFIX = "}:gen";
+
+    /**
+     * 重建时遇到并发写入的最大重试次数
+     */
+    private static final int REBUILD_ATTEMPTS = 3;
+
+    /**
+     * 空索引占位成员，排序分为-1（权重非负，总是排在最后）；没有标签的用户也能命中索引，不会每次回源数据库
+     */
+    private static final String EMPTY_MEMBER = "";
+
+    /**
+     * 增量写入：递增写入代数，索引存在时才写入，版本低于索引中明细（最后一段）的标签跳过，
+     * KEYS = [排序, 明细, 写入代数]，ARGV = [过期毫秒, (标签, 排序分, 明细, 版本)...]
+     */
+    private static final String UPDATE_SCRIPT = """
+            redis.call('incr', KEYS[3])
+            redis.call('pexpire', KEYS[3], ARGV[1])
+            if redis.call('exists', KEYS[1]) == 0 then
+                return 0
+            end
+            for i = 2, #ARGV, 4 do
+                local current = redis.call('hget', KEYS[2], ARGV[i])
+                local version = current and tonumber(string.match(current, '[^|]*$'))
+                if not version or version <= tonumber(ARGV[i + 3]) then
+                    redis.call('zadd', KEYS[1], ARGV[i + 1], ARGV[i])
+                    redis.call('hset', KEYS[2], ARGV[i], ARGV[i + 2])
+                end
+            end
+            redis.call('pexpire', KEYS[1], ARGV[1])
+            redis.call('pexpire', KEYS[2], ARGV[1])
+            return 1
+            """;
+
+    /**
+     * 重建：写入代数与读库前一致时清空后写入全部标签，否则放弃，KEYS同上，ARGV = [过期毫秒, 读库前的写入代数, (标签, 排序分, 明细, 版本)...]
+     */
+    private static final String REBUILD_SCRIPT = """
+            if tonumber(redis.call('get', KEYS[3]) or '0') ~= tonumber(ARGV[2]) then
+                return 0
+            end
+            redis.call('del', KEYS[1], KEYS[2])
+            redis.call('zadd', KEYS[1], -1, '')
+            for i = 3, #ARGV, 4 do
+                redis.call('zadd', KEYS[1], ARGV[i + 1], ARGV[i])
+                redis.call('hset', KEYS[2], ARGV[i], ARGV[i + 2])
+            end
+            redis.call('pexpire', KEYS[1], ARGV[1])
+            redis.call('pexpire', KEYS[2], ARGV[1])
+            return 1
+            """;
+
+    private final RedissonClient redissonClient;
+    private final UserTagStore<T> userTagStore;
+
+    /**
+     * 索引过期时间，活跃用户的写入/重建会续期
+     */
+    private final Duration expire;
+
+    public UserTagIndex(RedissonClient redissonClient, UserTagStore<T> userTagStore, Duration expire) {
+        this.redissonClient = redissonClient;
+        this.userTagStore = userTagStore;
+        this.expire = expire;
+    }
+
+    /**
+     * 获取用户按当前权重排序的前K个标签
+     */
+    public List<T> topTags(Long userId, int limit) {
+        try {
+            Collection<ScoredEntry<String>> entries = redissonClient
+                    .<String>getScoredSortedSet(rankKey(userId), StringCodec.INSTANCE)
+                    .entryRangeReversed(0, limit);
+            if (entries.isEmpty()) {
+                return rebuild(userId).stream().limit(limit).toList();
+            }
+
+            Set<String> tagNames = new LinkedHashSet<>();
+            for (ScoredEntry<String> entry : entries) {
+                if (!EMPTY_MEMBER.equals(entry.getValue()) && tagNames.size() < limit) {
+                    tagNames.add(entry.getValue());
+                }
+            }
+            if (tagNames.isEmpty()) {
+                return new ArrayList<>();
+            }
+            Map<String, String> details = redissonClient
+                    .<String, String>getMap(detailKey(userId), StringCodec.INSTANCE)
+                    .getAll(tagNames);
+
+            LocalDateTime periodStart = TagDecay.currentDecayPeriod();
+            List<T> tags = new ArrayList<>(tagNames.size());
+            for (String tagName : tagNames) {
+                String detail = details.get(tagName);
+                if (detail != null) {
+                    tags.add(fromDetail(userId, tagName, detail, periodStart));
+                }
+            }
+            return tags;
+        } catch (Exception e) {
+            log.warn("读取用户标签索引失败，回源数据库，userId: {}", userId, e);
+            return sortByWeight(userTagStore.findDecayedByUserId(userId, TagDecay.currentDecayPeriod()))
+                    .stream().limit(limit).toList();
+        }
+    }
+
+    /**
+     * 标签权重变更后增量更新索引（存在事务时在提交后执行）
+     *
+     * @param userId 用户ID
+     * @param tags   变更后的标签（权重为衰减基准时间所在月的值）
+     */
+    public void update(Long userId, Collection<T> tags) {
+        if (tags.isEmpty()) {
+            return;
+        }
+        List<T> snapshot = List.copyOf(tags);
+        TagTransactions.afterCommit(() -> {
+            try {
+                eval(UPDATE_SCRIPT, userId, List.of(), snapshot);
+            } catch (Exception e) {
+                log.warn("更新用户标签索引失败，删除索引等待重建，userId: {}", userId, e);
+                evict(userId);
+            }
+        });
+    }
+
+    /**
+     * 从数据库重建用户的标签索引
+     * 读库期间有标签变更提交时重新读取，多次冲突后只返回数据库结果，索引留待下次读取重建
+     *
+     * @return 按当前权重倒序的全部标签
+     */
+    public List<T> rebuild(Long userId) {
+        List<T> tags = List.of();
+        for (int attempt = 1; attempt <= REBUILD_ATTEMPTS; attempt++) {
+            long generation = redissonClient.getAtomicLong(generationKey(userId)).get();
+            tags = sortByWeight(userTagStore.findDecayedByUserId(userId, TagDecay.currentDecayPeriod()));
+            if (eval(REBUILD_SCRIPT, userId, List.of(String.valueOf(generation)), tags)) {
+                log.debug("重建用户标签索引，userId: {}, 标签数: {}", userId, tags.size());
+                return tags;
+            }
+        }
+        log.debug("重建用户标签索引时标签持续变更，本次不写入索引，userId: {}", userId);
+        return tags;
+    }
+
+    /**
+     * 删除用户的标签索引（用户标签被删除或索引写入失败时）
+     */
+    public void evict(Long userId) {
+        try {
+            redissonClient.getKeys().delete(rankKey(userId), detailKey(userId));
+        } catch (Exception e) {
+            log.warn("删除用户标签索引失败，userId: {}", userId, e);
+        }
+    }
+
+    /**
+     * @param header 过期时间之后、标签之前的参数
+     * @return 脚本是否写入了索引
+     */
+    private boolean eval(String script, Long userId, List<String> header, List<T> tags) {
+        List<Object> args = new ArrayList<>(tags.size() * 4 + 1 + header.size());
+        args.add(String.valueOf(expire.toMillis()));
+        args.addAll(header);
+        for (T tag : tags) {
+            args.add(tag.getTagName());
+            args.add(String.valueOf(TagDecay.normalizedWeight(tag)));
+            args.add(toDetail(tag));
+            args.add(String.valueOf(version(tag)));
+        }
+        return redissonClient.getScript(StringCodec.INSTANCE).eval(RScript.Mode.READ_WRITE, script,
+                RScript.ReturnType.BOOLEAN, List.of(rankKey(userId), detailKey(userId), generationKey(userId)), args.toArray());
+    }
+
+    /**
+     * 明细：基础权重|聊天权重|融合权重|来源|衰减基准月|版本
+     */
+    private String toDetail(WeightedTag tag) {
+        return tag.getBaseWeight().toPlainString() + '|' + tag.getChatWeight().toPlainString() + '|'
+                + tag.getFusionWeight().toPlainString() + '|' + Objects.toString(tag.getSourceType(), "") + '|'
+                + TagDecay.decayPeriodOf(TagDecay.decayAnchorOf(tag)) + '|' + version(tag);
+    }
+
+    /**
+     * 写入版本：行的最后更新时间（微秒），没有时为0
+     */
+    private static long version(WeightedTag tag) {
+        LocalDateTime lastUpdated = tag.getLastUpdated();
+        if (lastUpdated == null) {
+            return 0;
+        }
+        return lastUpdated.toEpochSecond(ZoneOffset.UTC) * 1_000_000 + lastUpdated.getNano() / 1_000;
+    }
+
+    private T fromDetail(Long userId, String tagName, String detail, LocalDateTime periodStart) {
+        String[] parts = detail.split("\\|", -1);
+        int elapsed = Math.max(0, TagDecay.decayPeriodOf(periodStart) - Integer.parseInt(parts[4]));
+        BigDecimal multiplier = TagDecay.DECAY_FACTOR.pow(elapsed);
+
+        T tag = userTagStore.newTag();
+        tag.setUserId(userId);
+        tag.setTagName(tagName);
+        tag.setBaseWeight(decay(parts[0], multiplier));
+        tag.setChatWeight(decay(parts[1], multiplier));
+        tag.setFusionWeight(decay(parts[2], multiplier));
+        tag.setTotalWeight(tag.getBaseWeight().add(tag.getChatWeight()).add(tag.getFusionWeight()));
+        tag.setSourceType(parts[3].isEmpty() ? null : parts[3]);
+        tag.setLastDecayedAt(periodStart);
+        return tag;
+    }
+
+    private static BigDecimal decay(String weight, BigDecimal multiplier) {
+        return new BigDecimal(weight).multiply(multiplier).setScale(2, RoundingMode.HALF_UP);
+    }
+
+    private List<T> sortByWeight(List<T> tags) {
+        List<T> sorted = new ArrayList<>(tags);
+        sorted.sort((a, b) -> b.getTotalWeight().compareTo(a.getTotalWeight()));
+        return sorted;
+    }
+
+    private String rankKey(Long userId) {
+        return INDEX_KEY_PREFIX + userId + RANK_KEY_SUFFIX;
+    }
+
+    private String detailKey(Long userId) {
+        return INDEX_KEY_PREFIX + userId + DETAIL_KEY_SUFFIX;
+    }
+
+    private String generationKey(Long userId) {
+        return INDEX_KEY_PREFIX + userId + GENERATION_KEY_SUFFIX;
+    }
+}
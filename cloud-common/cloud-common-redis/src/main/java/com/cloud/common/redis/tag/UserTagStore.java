@@ -0,0 +1,28 @@
+package com.cloud.common.redis.tag;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * @author shengjie.tang
+ * @version 1.0.0
+ * @description: 标签索引与热门标签计数回源数据库的查询，由各服务的用户标签Repository实现
+ * @date 2025/11/28 10:00
+ */
+public interface UserTagStore<T extends WeightedTag> {
+
+    /**
+     * 用户的全部标签，权重按periodStart所在周期衰减
+     */
+    List<T> findDecayedByUserId(Long userId, LocalDateTime periodStart);
+
+    /**
+     * 按标签聚合：[标签名, 用户数, 换算到basePeriod的权重之和]
+     */
+    List<Object[]> aggregateTagPopularity(int basePeriod);
+
+    /**
+     * 新建空标签（从索引还原标签时使用）
+     */
+    T newTag();
+}
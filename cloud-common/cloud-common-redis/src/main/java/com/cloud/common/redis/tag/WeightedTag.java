@@ -0,0 +1,55 @@
+package com.cloud.common.redis.tag;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * @author shengjie.tang
+ * @version 1.0.0
+ * @description: 带衰减权重的用户标签，各服务的用户标签实体实现该接口后共用标签索引与热门标签计数
+ * @date 2025/11/28 10:00
+ */
+public interface WeightedTag {
+
+    Long getUserId();
+
+    void setUserId(Long userId);
+
+    String getTagName();
+
+    void setTagName(String tagName);
+
+    BigDecimal getBaseWeight();
+
+    void setBaseWeight(BigDecimal baseWeight);
+
+    BigDecimal getChatWeight();
+
+    void setChatWeight(BigDecimal chatWeight);
+
+    BigDecimal getFusionWeight();
+
+    void setFusionWeight(BigDecimal fusionWeight);
+
+    BigDecimal getTotalWeight();
+
+    void setTotalWeight(BigDecimal totalWeight);
+
+    String getSourceType();
+
+    void setSourceType(String sourceType);
+
+    /**
+     * 权重衰减基准时间：权重是该时间所在周期的值
+     */
+    LocalDateTime getLastDecayedAt();
+
+    void setLastDecayedAt(LocalDateTime lastDecayedAt);
+
+    LocalDateTime getCreatedAt();
+
+    /**
+     * 行的最后更新时间，作为索引增量写入的版本：并发事务的提交后回调乱序执行时，旧版本不覆盖新版本
+     */
+    LocalDateTime getLastUpdated();
+}
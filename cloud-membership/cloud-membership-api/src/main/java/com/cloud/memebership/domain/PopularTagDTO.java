@@ -0,0 +1,24 @@
+package com.cloud.memebership.domain;
+
+
+import lombok.Data;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+
+/**
+ * @author shengjie.tang
+ * @version 1.0.0
+ * @description: 全局热门标签对象
+ * @date 2025/11/26 10:00
+ */
+@Data
+public class PopularTagDTO implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private String tagName;
+
+    private Long userCount;
+
+    private BigDecimal totalWeight;
+}
@@ -0,0 +1,36 @@
+package com.cloud.membership.config;
+
+import com.cloud.common.redis.tag.PopularTagCounter;
+import com.cloud.common.redis.tag.UserTagIndex;
+import com.cloud.membership.domain.UserTags;
+import com.cloud.membership.repository.UserTagsRepository;
+import org.redisson.api.RedissonClient;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * @author shengjie.tang
+ * @version 1.0.0
+ * @description: 用户标签Top-K索引与全局热门标签计数（Redis键与聊天服务共用）
+ * @date 2025/11/28 10:00
+ */
+@Configuration
+public class UserTagIndexConfig {
+
+    /**
+     * @param expireDays 索引过期时间（天），活跃用户的写入/重建会续期
+     */
+    @Bean
+    public UserTagIndex<UserTags> userTagIndex(RedissonClient redissonClient, UserTagsRepository userTagsRepository,
+                                               @Value("${user.tag.index.expire-days:7}") long expireDays) {
+        return new UserTagIndex<>(redissonClient, userTagsRepository, Duration.ofDays(expireDays));
+    }
+
+    @Bean
+    public PopularTagCounter popularTagCounter(RedissonClient redissonClient, UserTagsRepository userTagsRepository) {
+        return new PopularTagCounter(userTagsRepository, redissonClient);
+    }
+}
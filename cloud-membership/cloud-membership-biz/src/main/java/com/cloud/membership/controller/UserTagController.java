@@ -3,8 +3,10 @@ package com.cloud.membership.controller;
 
 import com.cloud.common.core.converter.BeanConverter;
 import com.cloud.common.core.response.Result;
+import com.cloud.common.redis.tag.PopularTag;
 import com.cloud.membership.domain.UserTags;
 import com.cloud.membership.service.impl.UserTagService;
+import com.cloud.memebership.domain.PopularTagDTO;
 import com.cloud.memebership.domain.UserTagDTO;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -54,4 +56,25 @@ public class UserTagController {
         }
     }
 
+    /**
+     * 获取全局热门标签（按拥有该标签的用户数排序）
+     *
+     * @param limit 返回数量限制，默认10个
+     * @return 热门标签列表
+     */
+    @GetMapping("/popular")
+    public Result<List<PopularTagDTO>> getPopularTags(@RequestParam(value = "limit", defaultValue = "10") Integer limit) {
+
+        log.info("获取全局热门标签，limit: {}", limit);
+
+        try {
+            List<PopularTag> popularTags = userTagService.getPopularTags(limit);
+            List<PopularTagDTO> dtoList = BeanConverter.convertList(popularTags, PopularTagDTO.class);
+            return Result.success("获取全局热门标签成功", dtoList);
+        } catch (Exception e) {
+            log.error("获取全局热门标签失败", e);
+            return Result.error("获取全局热门标签失败: " + e.getMessage());
+        }
+    }
+
 }
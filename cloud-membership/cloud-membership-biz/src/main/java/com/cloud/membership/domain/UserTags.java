@@ -1,5 +1,7 @@
 package com.cloud.membership.domain;
 
+import com.cloud.common.redis.tag.TagDecay;
+import com.cloud.common.redis.tag.WeightedTag;
 import jakarta.persistence.*;
 import lombok.Data;
 import org.hibernate.annotations.CreationTimestamp;
@@ -18,7 +20,7 @@ import java.time.LocalDateTime;
 @Data
 @Entity
 @Table(name = "user_tags")
-public class UserTags implements Serializable {
+public class UserTags implements Serializable, WeightedTag {
 
     /**
      * 权重常量
@@ -27,7 +29,7 @@ public class UserTags implements Serializable {
     public static final BigDecimal CHAT_WEIGHT = BigDecimal.ONE;      // 聊天权重
     public static final BigDecimal OVERLAP_WEIGHT = BigDecimal.valueOf(2);   // 重叠权重（基础画像与聊天标签重叠时，为了使得热点标签更突出）
     public static final BigDecimal DEMOGRAPHIC_WEIGHT = BigDecimal.valueOf(0.2); // 人口统计标签权重（年龄标签）
-    public static final BigDecimal DECAY_FACTOR = BigDecimal.valueOf(0.5); // 衰减因子（每月衰减一半，快速使得过期失效热点数据失效）
+    public static final String DECAY_FACTOR_SQL = TagDecay.DECAY_FACTOR_SQL; // 衰减因子，见 TagDecay
 
     /**
      * 来源
@@ -95,11 +97,17 @@ public class UserTags implements Serializable {
     @Column(name = "last_updated")
     private LocalDateTime lastUpdated;
 
+    /**
+     * 权重衰减基准时间：库中的权重是该时间所在月份的值，读取时按之后经过的月数衰减，
+     * 写入时物化为当月的值（为空时以创建时间为准）
+     */
+    @Column(name = "last_decayed_at")
+    private LocalDateTime lastDecayedAt;
+
     /**
      * 创建时间
      */
     @CreationTimestamp
     @Column(name = "created_at")
     private LocalDateTime createdAt;
-
 }
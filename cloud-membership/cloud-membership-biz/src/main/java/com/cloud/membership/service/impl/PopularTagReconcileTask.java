@@ -0,0 +1,24 @@
+package com.cloud.membership.service.impl;
+
+import com.cloud.common.redis.tag.PopularTagCounter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * @author shengjie.tang
+ * @version 1.0.0
+ * @description: 定时校准全局热门标签计数（计数键与聊天服务共用，只在会员服务调度）
+ * @date 2025/11/28 10:00
+ */
+@Component
+@RequiredArgsConstructor
+public class PopularTagReconcileTask {
+
+    private final PopularTagCounter popularTagCounter;
+
+    @Scheduled(cron = "${user.tag.popular.reconcile-cron:0 0 * * * ?}")
+    public void reconcile() {
+        popularTagCounter.scheduledReconcile();
+    }
+}
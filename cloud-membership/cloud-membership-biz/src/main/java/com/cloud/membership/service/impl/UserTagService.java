@@ -1,6 +1,10 @@
 package com.cloud.membership.service.impl;
 
 
+import com.cloud.common.redis.tag.PopularTag;
+import com.cloud.common.redis.tag.PopularTagCounter;
+import com.cloud.common.redis.tag.TagDecay;
+import com.cloud.common.redis.tag.UserTagIndex;
 import com.cloud.membership.domain.UserProfile;
 import com.cloud.membership.domain.UserTags;
 import com.cloud.membership.repository.UserProfileRepository;
@@ -9,16 +13,16 @@ import com.cloud.membership.service.OccupationService;
 import com.cloud.membership.utils.ValidationUtils;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.CollectionUtils;
 
 import java.math.BigDecimal;
-import java.math.RoundingMode;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.function.Function;
 import java.util.stream.Collectors;
@@ -37,6 +41,8 @@ public class UserTagService {
     private final UserTagsRepository userTagsRepository;
     private final UserProfileRepository profileRepository;
     private final OccupationService occupationService;
+    private final UserTagIndex<UserTags> userTagIndex;
+    private final PopularTagCounter popularTagCounter;
 
 
     /**
@@ -127,16 +133,24 @@ public class UserTagService {
         log.info("基于聊天内容更新标签，userId: {}, chatTags: {}", userId, chatTags);
 
 
-        List<UserTags> userTags = userTagsRepository.findTop5ByUserIdOrderByTotalWeightDesc(userId);
+        List<String> tagNames = chatTags.stream()
+                .map(ValidationUtils::cleanTagName)
+                .filter(Objects::nonNull)
+                .distinct()
+                .toList();
+        if (tagNames.isEmpty()) {
+            return;
+        }
+
+        // 只读取本次涉及的标签；读出的是按当前周期衰减后的权重，保存时即物化衰减
+        LocalDateTime periodStart = TagDecay.currentDecayPeriod();
+        List<UserTags> userTags = userTagsRepository.findDecayedByUserIdAndTagNameIn(userId, tagNames, periodStart);
         Map<String, UserTags> tagMap = userTags.stream().collect(Collectors.toMap(UserTags::getTagName, Function.identity()));
+        Map<String, Double> before = popularTagCounter.snapshot(userTags);
 
         List<UserTags> tagsToSave = new ArrayList<>();
 
-        for (String tagName : chatTags) {
-            String cleanTagName = ValidationUtils.cleanTagName(tagName);
-            if (cleanTagName == null) {
-                continue;
-            }
+        for (String cleanTagName : tagNames) {
             ValidationUtils.validateTagName(cleanTagName);
 
             UserTags existingTag = tagMap.get(cleanTagName);
@@ -162,14 +176,17 @@ public class UserTagService {
                 newTag.setTagName(cleanTagName);
                 newTag.setSourceType(UserTags.chatSource);
                 newTag.setChatWeight(UserTags.CHAT_WEIGHT);
+                newTag.setLastDecayedAt(periodStart);
                 calculateTotalWeight(newTag);
 
                 tagsToSave.add(newTag);
             }
         }
 
-        // 批量保存
+        // 批量保存，提交后增量更新Top-K索引和热门标签计数
         userTagsRepository.saveAll(tagsToSave);
+        userTagIndex.update(userId, tagsToSave);
+        popularTagCounter.record(before, tagsToSave);
     }
 
     /**
@@ -177,21 +194,28 @@ public class UserTagService {
      */
     private void createOrUpdateProfileTag(Long userId, String tagName, BigDecimal weight) {
         ValidationUtils.validateTagName(tagName);
-        Optional<UserTags> existingTag = userTagsRepository.findByUserIdAndTagName(userId, tagName);
+        LocalDateTime periodStart = TagDecay.currentDecayPeriod();
+        Optional<UserTags> existingTag = userTagsRepository.findDecayedByUserIdAndTagName(userId, tagName, periodStart);
 
         if (existingTag.isPresent()) {
-            // 更新现有标签的基础权重
+            // 更新现有标签的基础权重（其余权重按当前周期物化衰减）
             UserTags tag = existingTag.get();
+            Map<String, Double> before = popularTagCounter.snapshot(List.of(tag));
             setBaseWeight(tag, weight);
             userTagsRepository.save(tag);
+            userTagIndex.update(userId, List.of(tag));
+            popularTagCounter.record(before, List.of(tag));
         } else {
             // 创建新标签
             UserTags tag = new UserTags();
             tag.setUserId(userId);
             tag.setTagName(tagName);
             tag.setSourceType(UserTags.profileSource);
+            tag.setLastDecayedAt(periodStart);
             setBaseWeight(tag, weight);
             userTagsRepository.save(tag);
+            userTagIndex.update(userId, List.of(tag));
+            popularTagCounter.record(Map.of(), List.of(tag));
         }
     }
 
@@ -200,7 +224,7 @@ public class UserTagService {
      * 获取用户的所有标签（前5个）
      */
     public List<UserTags> getUserTags(Long userId) {
-        return userTagsRepository.findTop5ByUserIdOrderByTotalWeightDesc(userId);
+        return userTagIndex.topTags(userId, 5);
     }
 
     /**
@@ -208,10 +232,15 @@ public class UserTagService {
      */
     public List<UserTags> getHotTags(Long userId, int limit) {
         ValidationUtils.validateRecommendationLimit(limit);
-        return userTagsRepository.findTop5ByUserIdOrderByTotalWeightDesc(userId)
-                .stream()
-                .limit(limit)
-                .toList();
+        return userTagIndex.topTags(userId, limit);
+    }
+
+    /**
+     * 获取全局热门标签（按用户数排序）
+     */
+    public List<PopularTag> getPopularTags(int limit) {
+        ValidationUtils.validateRecommendationLimit(limit);
+        return popularTagCounter.topTags(limit);
     }
 
     /**
@@ -242,32 +271,6 @@ public class UserTagService {
         return tagNames;
     }
 
-    /**
-     * 每月权重衰减任务
-     * 每月1号凌晨2点执行
-     */
-    @Scheduled(cron = "0 0 2 1 * ?")
-    @Transactional
-    public void monthlyWeightDecay() {
-        log.info("开始执行每月权重衰减任务");
-
-        List<UserTags> allTags = userTagsRepository.findAll();
-        int updatedCount = 0;
-
-        for (UserTags tag : allTags) {
-            // 衰减所有权重
-            tag.setBaseWeight(tag.getBaseWeight().multiply(UserTags.DECAY_FACTOR).setScale(2, RoundingMode.HALF_UP));
-            tag.setChatWeight(tag.getChatWeight().multiply(UserTags.DECAY_FACTOR).setScale(2, RoundingMode.HALF_UP));
-            tag.setFusionWeight(tag.getFusionWeight().multiply(UserTags.DECAY_FACTOR).setScale(2, RoundingMode.HALF_UP));
-
-            calculateTotalWeight(tag);
-            userTagsRepository.save(tag);
-            updatedCount++;
-        }
-
-        log.info("权重衰减任务完成，共更新 {} 个标签", updatedCount);
-    }
-
     /**
      * 年龄标签生成（移除性别标签，避免标签污染）
      */
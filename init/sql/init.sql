@@ -32,8 +32,11 @@ ALTER TABLE "public"."vector_store" OWNER TO "postgres";
 -- ----------------------------
 -- Indexes structure for table vector_store
 -- ----------------------------
-CREATE INDEX "vector_store_embedding_idx" ON "public"."vector_store" (
-                                                                      "embedding" "public"."vector_cosine_ops" ASC NULLS LAST
+CREATE INDEX "vector_store_embedding_hnsw_idx" ON "public"."vector_store" USING hnsw (
+    "embedding" "public"."vector_cosine_ops"
+    ) WITH (m = 16, ef_construction = 64);
+CREATE INDEX "vector_store_content_fts_idx" ON "public"."vector_store" USING gin (
+    (to_tsvector('simple'::regconfig, regexp_replace("content", '([A-Za-z0-9]+)', ' \1 ', 'g')))
     );
 CREATE INDEX "vector_store_metadata_idx" ON "public"."vector_store" USING gin (
     "metadata" "pg_catalog"."jsonb_ops"
@@ -278,6 +281,12 @@ CREATE INDEX "idx_chat_sessions_created_at" ON "public"."chat_sessions" USING bt
 CREATE INDEX "idx_chat_sessions_user_id" ON "public"."chat_sessions" USING btree (
     "user_id" "pg_catalog"."int8_ops" ASC NULLS LAST
     );
+-- 会话列表keyset分页：WHERE user_id = ? AND (updated_at, id) < (?, ?) ORDER BY updated_at DESC, id DESC
+CREATE INDEX "idx_chat_sessions_user_updated" ON "public"."chat_sessions" USING btree (
+    "user_id" "pg_catalog"."int8_ops" ASC NULLS LAST,
+    "updated_at" "pg_catalog"."timestamp_ops" DESC NULLS FIRST,
+    "id" "pg_catalog"."int8_ops" DESC NULLS FIRST
+    );
 
 -- ----------------------------
 -- Uniques structure for table chat_sessions
@@ -0,0 +1,29 @@
+/*
+ 向量库索引迁移（已有 vector_store 表）
+
+ 用途：init.sql 之前建的库、以及 ai.chat.vector-store.initialize-schema 为 false 的部署，补建向量索引与混合检索的全文索引
+ 用法：psql -d cms -f migration_vector_indexes.sql
+ 说明：
+   1. CREATE INDEX CONCURRENTLY 不锁写入，但不能在事务中执行，不要加 -1 / --single-transaction
+   2. 已存在同名索引时跳过；并发建索引中途失败会留下无效索引，先 DROP INDEX 再重新执行
+   3. 向量索引对应默认配置（HNSW、m = 16、ef_construction = 64、余弦距离、不量化），配置不同时按 VectorIndexInitializer 的命名与参数调整
+   4. 全文索引的表达式必须与 LexicalRetriever 查询使用的表达式一致（text-search-config 为 simple），否则查询用不上索引
+   5. 全文索引建好后再开启 ai.chat.vector-store.hybrid.enabled
+*/
+
+\set ON_ERROR_STOP on
+
+-- 向量索引
+CREATE INDEX CONCURRENTLY IF NOT EXISTS "vector_store_embedding_hnsw_idx" ON "public"."vector_store" USING hnsw (
+    "embedding" "public"."vector_cosine_ops"
+    ) WITH (m = 16, ef_construction = 64);
+
+-- 混合检索的全文索引
+CREATE INDEX CONCURRENTLY IF NOT EXISTS "vector_store_content_fts_idx" ON "public"."vector_store" USING gin (
+    (to_tsvector('simple'::regconfig, regexp_replace("content", '([A-Za-z0-9]+)', ' \1 ', 'g')))
+    );
+
+-- 按文档ID查询分块（metadata @> ...）
+CREATE INDEX CONCURRENTLY IF NOT EXISTS "vector_store_metadata_idx" ON "public"."vector_store" USING gin (
+    "metadata" "pg_catalog"."jsonb_ops"
+    );
@@ -48,6 +48,7 @@ CREATE TABLE "public"."user_tags" (
     "total_weight" DECIMAL(10,2) NOT NULL DEFAULT 0.00,
     "source_type" varchar(20) COLLATE "pg_catalog"."default" DEFAULT 'CHAT'::character varying,
     "last_updated" timestamp(6) DEFAULT CURRENT_TIMESTAMP,
+    "last_decayed_at" timestamp(6),
     "created_at" timestamp(6) DEFAULT CURRENT_TIMESTAMP
 );
 
@@ -91,6 +92,9 @@ CREATE INDEX "idx_user_tags_tag_name" ON "public"."user_tags" USING btree (
 -- user_profiles constraints
 ALTER TABLE "public"."user_profiles" ADD CONSTRAINT "user_profiles_user_id_key" UNIQUE ("user_id");
 
+-- chat_tags constraints（聊天标签按会话批量upsert依赖该约束）
+ALTER TABLE "public"."chat_tags" ADD CONSTRAINT "chat_tags_user_session_tag_unique" UNIQUE ("user_id", "session_id", "tag_name");
+
 -- user_tags constraints
 ALTER TABLE "public"."user_tags" ADD CONSTRAINT "user_tags_user_tag_unique" UNIQUE ("user_id", "tag_name");
 
@@ -120,6 +124,7 @@ COMMENT ON COLUMN "public"."user_tags"."chat_weight" IS '聊天权重（来自
 COMMENT ON COLUMN "public"."user_tags"."fusion_weight" IS '融合权重（基础画像与聊天标签重叠时的额外权重，DECIMAL类型）';
 COMMENT ON COLUMN "public"."user_tags"."total_weight" IS '总权重（base_weight + chat_weight + fusion_weight，DECIMAL类型）';
 COMMENT ON COLUMN "public"."user_tags"."source_type" IS '标签来源类型（PROFILE-来自用户画像, CHAT-来自聊天内容, FUSION-融合标签）';
+COMMENT ON COLUMN "public"."user_tags"."last_decayed_at" IS '权重衰减基准时间（权重为该月的值，读取时按经过的月数衰减，为空时以创建时间为准）';
 
 
 
@@ -127,3 +132,6 @@ ALTER TABLE "public"."user_profiles"
     ALTER COLUMN "location" TYPE varchar(64) USING "location"::varchar(64);
 
 COMMENT ON COLUMN "public"."user_profiles"."location" IS '居住地';
+
+-- 权重改为读取时衰减：已有数据以当月为衰减基准，避免按创建时间重复衰减
+UPDATE "public"."user_tags" SET "last_decayed_at" = date_trunc('month', now()) WHERE "last_decayed_at" IS NULL;
@@ -0,0 +1,125 @@
+/*
+ 向量索引召回率/延迟基准（合成语料）
+
+ 用途：为 ai.chat.vector-store.index、quantization 与 search.search-effort 选值
+ 用法：psql -d cms -v dims=1024 -v rows=100000 -v queries=100 -v k=4 -f vector_index_benchmark.sql
+ 说明：
+   1. 在临时表中生成随机单位向量作为语料，不影响 vector_store
+   2. 精确结果通过关闭索引扫描的顺序扫描得到，召回率 = ANN结果与精确结果的交集 / k
+   3. 随机向量没有聚类结构，召回率偏保守；有条件时把语料换成 vector_store 的真实向量
+*/
+
+\set ON_ERROR_STOP on
+\if :{?dims} \else \set dims 1024 \endif
+\if :{?rows} \else \set rows 100000 \endif
+\if :{?queries} \else \set queries 100 \endif
+\if :{?k} \else \set k 4 \endif
+
+DROP TABLE IF EXISTS bench_corpus;
+DROP TABLE IF EXISTS bench_query;
+DROP TABLE IF EXISTS bench_truth;
+DROP TABLE IF EXISTS bench_result;
+
+-- 随机单位向量；查询为语料中的向量加少量噪声
+CREATE TEMP TABLE bench_corpus AS
+SELECT g AS id,
+       l2_normalize((SELECT array_agg(random() - 0.5) FROM generate_series(1, :dims) WHERE g > 0)::vector) AS embedding
+FROM generate_series(1, :rows) g;
+
+CREATE TEMP TABLE bench_query AS
+SELECT id AS qid, embedding FROM bench_corpus ORDER BY random() LIMIT :queries;
+UPDATE bench_query SET embedding = l2_normalize(embedding + (SELECT array_agg((random() - 0.5) * 0.1)::vector
+                                                              FROM generate_series(1, :dims) WHERE qid > 0));
+ANALYZE bench_corpus;
+
+-- 精确结果
+SET enable_indexscan = off;
+CREATE TEMP TABLE bench_truth AS
+SELECT q.qid, c.id
+FROM bench_query q
+CROSS JOIN LATERAL (SELECT id FROM bench_corpus ORDER BY embedding <=> q.embedding LIMIT :k) c;
+RESET enable_indexscan;
+
+CREATE TEMP TABLE bench_result (index_type text, build_params text, quantization text, oversample int, effort int,
+                                recall numeric, avg_ms numeric, build_ms numeric, index_mb numeric);
+
+-- p_quantization: none / halfvec / binary；量化时取 k * p_oversample 个候选后按原始向量重排
+CREATE OR REPLACE FUNCTION pg_temp.bench_run(p_index_type text, p_build_params text, p_quantization text, p_oversample int,
+                                             p_setting text, p_efforts int[], p_k int)
+    RETURNS void AS $$
+DECLARE
+    dims int := (SELECT vector_dims(embedding) FROM bench_corpus LIMIT 1);
+    column_expr text;
+    query_expr text;
+    ops text;
+    op text := '<=>';
+    search_sql text;
+    started timestamptz;
+    build_ms numeric;
+    effort int;
+    hits bigint;
+    total_ms numeric;
+    q record;
+    ids bigint[];
+BEGIN
+    CASE p_quantization
+        WHEN 'none' THEN
+            column_expr := 'embedding';
+            query_expr := '$1';
+            ops := 'vector_cosine_ops';
+        WHEN 'halfvec' THEN
+            column_expr := format('(embedding::halfvec(%s))', dims);
+            query_expr := format('$1::halfvec(%s)', dims);
+            ops := 'halfvec_cosine_ops';
+        WHEN 'binary' THEN
+            column_expr := format('(binary_quantize(embedding)::bit(%s))', dims);
+            query_expr := format('binary_quantize($1)::bit(%s)', dims);
+            ops := 'bit_hamming_ops';
+            op := '<~>';
+    END CASE;
+
+    DROP INDEX IF EXISTS bench_corpus_embedding_idx;
+    started := clock_timestamp();
+    EXECUTE format('CREATE INDEX bench_corpus_embedding_idx ON bench_corpus USING %s (%s %s) WITH (%s)',
+                   p_index_type, column_expr, ops, p_build_params);
+    build_ms := extract(epoch FROM clock_timestamp() - started) * 1000;
+
+    search_sql := format('SELECT array_agg(id) FROM (SELECT id FROM (SELECT id, embedding FROM bench_corpus '
+                             || 'ORDER BY %s %s %s LIMIT $2) c ORDER BY embedding <=> $1 LIMIT $3) r',
+                         column_expr, op, query_expr);
+
+    FOREACH effort IN ARRAY p_efforts LOOP
+        PERFORM set_config(p_setting, CASE WHEN p_setting = 'hnsw.ef_search'
+                                               THEN least(1000, greatest(effort, p_k * p_oversample))
+                                           ELSE effort END::text, true);
+        hits := 0;
+        total_ms := 0;
+        FOR q IN SELECT qid, embedding FROM bench_query LOOP
+            started := clock_timestamp();
+            EXECUTE search_sql INTO ids USING q.embedding, p_k * p_oversample, p_k;
+            total_ms := total_ms + extract(epoch FROM clock_timestamp() - started) * 1000;
+            hits := hits + (SELECT count(*) FROM bench_truth t WHERE t.qid = q.qid AND t.id = ANY (ids));
+        END LOOP;
+        INSERT INTO bench_result
+        VALUES (p_index_type, p_build_params, p_quantization, p_oversample, effort,
+                round(hits::numeric / (p_k * (SELECT count(*) FROM bench_query)), 4),
+                round(total_ms / (SELECT count(*) FROM bench_query), 3),
+                round(build_ms),
+                round(pg_relation_size('bench_corpus_embedding_idx') / 1024.0 / 1024.0, 1));
+    END LOOP;
+END;
+$$ LANGUAGE plpgsql;
+
+BEGIN;
+SELECT pg_temp.bench_run('hnsw', 'm = 16, ef_construction = 64', 'none', 1, 'hnsw.ef_search', ARRAY[10, 20, 40, 80, 160, 320], :k);
+SELECT pg_temp.bench_run('hnsw', 'm = 32, ef_construction = 128', 'none', 1, 'hnsw.ef_search', ARRAY[10, 20, 40, 80, 160, 320], :k);
+SELECT pg_temp.bench_run('ivfflat', format('lists = %s', greatest(10, :rows / 1000)), 'none', 1, 'ivfflat.probes', ARRAY[1, 2, 5, 10, 20, 50], :k);
+-- 量化索引 + 原始向量重排（ai.chat.vector-store.quantization）
+SELECT pg_temp.bench_run('hnsw', 'm = 16, ef_construction = 64', 'halfvec', 2, 'hnsw.ef_search', ARRAY[40, 80, 160], :k);
+SELECT pg_temp.bench_run('hnsw', 'm = 16, ef_construction = 64', 'halfvec', 4, 'hnsw.ef_search', ARRAY[40, 80, 160], :k);
+SELECT pg_temp.bench_run('hnsw', 'm = 16, ef_construction = 64', 'binary', 4, 'hnsw.ef_search', ARRAY[40, 80, 160], :k);
+SELECT pg_temp.bench_run('hnsw', 'm = 16, ef_construction = 64', 'binary', 10, 'hnsw.ef_search', ARRAY[40, 80, 160], :k);
+COMMIT;
+
+-- 选值：召回率达到目标（建议 >= 0.95）的配置中取 avg_ms 最小者；index_mb 需小于 shared_buffers
+SELECT * FROM bench_result ORDER BY quantization, index_type, build_params, oversample, effort;